@@ -19,8 +19,6 @@ import static com.android.car.assist.client.CarAssistUtils.isCarCompatibleMessag
 
 import android.animation.Animator;
 import android.animation.AnimatorListenerAdapter;
-import android.animation.AnimatorSet;
-import android.animation.ObjectAnimator;
 import android.app.KeyguardManager;
 import android.app.Notification;
 import android.app.NotificationChannel;
@@ -31,6 +29,9 @@ import android.car.userlib.CarUserManagerHelper;
 import android.content.Context;
 import android.graphics.PixelFormat;
 import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Trace;
 import android.service.notification.NotificationListenerService;
 import android.service.notification.StatusBarNotification;
 import android.util.Log;
@@ -39,19 +40,14 @@ import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewTreeObserver;
 import android.view.WindowManager;
-import android.view.animation.AnimationUtils;
-import android.view.animation.Interpolator;
 import android.widget.FrameLayout;
 
 import androidx.annotation.VisibleForTesting;
 
-import com.android.car.notification.template.BasicNotificationViewHolder;
-import com.android.car.notification.template.CallNotificationViewHolder;
-import com.android.car.notification.template.EmergencyNotificationViewHolder;
-import com.android.car.notification.template.InboxNotificationViewHolder;
+import com.android.car.notification.template.CarNotificationBaseViewHolder;
 import com.android.car.notification.template.MessageNotificationViewHolder;
-import com.android.car.notification.template.NavigationNotificationViewHolder;
 
+import java.io.PrintWriter;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -67,9 +63,6 @@ public class CarHeadsUpNotificationManager
     private final boolean mEnableNavigationHeadsup;
     private final long mDuration;
     private final long mMinDisplayDuration;
-    private final long mEnterAnimationDuration;
-    private final long mAlphaEnterAnimationDuration;
-    private final long mExitAnimationDuration;
     private final int mNotificationHeadsUpCardMarginTop;
 
     private final KeyguardManager mKeyguardManager;
@@ -77,6 +70,15 @@ public class CarHeadsUpNotificationManager
     private final PreprocessingManager mPreprocessingManager;
     private final WindowManager mWindowManager;
     private final LayoutInflater mInflater;
+    private final HeadsUpViewPool mHeadsUpViewPool;
+    private final HeadsUpAnimationEngine mAnimationEngine;
+    private final HeadsUpLatencyTracker mLatencyTracker = new HeadsUpLatencyTracker();
+    private final HeadsUpScheduler mHeadsUpScheduler;
+    private final HeadsUpDeadlineScheduler mDeadlineScheduler = new HeadsUpDeadlineScheduler(
+            new Handler(Looper.getMainLooper()),
+            entry -> animateOutHUN(entry.getStatusBarNotification()));
+    private final HeadsUpScheduler.DropCallback mDropCallback =
+            request -> mLatencyTracker.onCancelled(request.getKey());
 
     private boolean mShouldRestrictMessagePreview;
     private NotificationClickHandlerFactory mClickHandlerFactory;
@@ -103,22 +105,27 @@ public class CarHeadsUpNotificationManager
                 R.dimen.headsup_notification_top_margin);
         mMinDisplayDuration = mContext.getResources().getInteger(
                 R.integer.heads_up_notification_minimum_time);
-        mEnterAnimationDuration =
-                mContext.getResources().getInteger(R.integer.headsup_total_enter_duration_ms);
-        mAlphaEnterAnimationDuration =
-                mContext.getResources().getInteger(R.integer.headsup_alpha_enter_duration_ms);
-        mExitAnimationDuration =
-                mContext.getResources().getInteger(R.integer.headsup_exit_duration_ms);
+        mAnimationEngine = new HeadsUpAnimationEngine(mContext,
+                mContext.getResources().getInteger(R.integer.headsup_total_enter_duration_ms),
+                mContext.getResources().getInteger(R.integer.headsup_alpha_enter_duration_ms),
+                mContext.getResources().getInteger(R.integer.headsup_exit_duration_ms));
         mKeyguardManager = (KeyguardManager) context.getSystemService(Context.KEYGUARD_SERVICE);
         mPreprocessingManager = PreprocessingManager.getInstance(context);
         mWindowManager =
                 (WindowManager) mContext.getSystemService(Context.WINDOW_SERVICE);
         mInflater = LayoutInflater.from(mContext);
+        mHeadsUpViewPool = new HeadsUpViewPool(mInflater, clickHandlerFactory,
+                mContext.getResources().getInteger(R.integer.headsup_notification_view_pool_size));
+        mHeadsUpScheduler = new HeadsUpScheduler(
+                mContext.getResources().getInteger(R.integer.headsup_max_shown_notifications),
+                mContext.getResources().getInteger(R.integer.headsup_max_queued_notifications),
+                mDuration);
         mActiveHeadsUpNotifications = new HashMap<>();
         mHeadsUpPanel = createHeadsUpPanel();
         mHeadsUpContentFrame = mHeadsUpPanel.findViewById(R.id.headsup_content);
         mCarUserManagerHelper = new CarUserManagerHelper(mContext);
         addHeadsUpPanelToDisplay();
+        mHeadsUpViewPool.prefetchWhenIdle();
     }
 
     /**
@@ -161,7 +168,45 @@ public class CarHeadsUpNotificationManager
             StatusBarNotification statusBarNotification,
             NotificationListenerService.RankingMap rankingMap,
             Map<String, StatusBarNotification> activeNotifications) {
+        updateHeadsUp(statusBarNotification, rankingMap, activeNotifications,
+                prepareHeadsUp(statusBarNotification, rankingMap));
+    }
+
+    /**
+     * Decides whether the notification should be shown as a heads-up and, if so, trims it for
+     * driving.
+     *
+     * <p> This does not touch any view and may be called from a background thread. The result is
+     * passed to {@link #updateHeadsUp} on the main thread.
+     *
+     * @return true if the notification should be shown as a heads-up
+     */
+    boolean prepareHeadsUp(
+            StatusBarNotification statusBarNotification,
+            NotificationListenerService.RankingMap rankingMap) {
         if (!shouldShowHeadsUp(statusBarNotification, rankingMap)) {
+            mLatencyTracker.onCancelled(statusBarNotification.getKey());
+            return false;
+        }
+        mPreprocessingManager.optimizeForDriving(statusBarNotification);
+        mLatencyTracker.onStage(statusBarNotification.getKey(), HeadsUpLatencyTracker.STAGE_DECIDE);
+        return true;
+    }
+
+    /**
+     * Shows, updates or hides the heads-up of the notification according to the decision made by
+     * {@link #prepareHeadsUp}, and adds the notification to the active notifications.
+     *
+     * <p> This must be called from the main thread.
+     */
+    void updateHeadsUp(
+            StatusBarNotification statusBarNotification,
+            NotificationListenerService.RankingMap rankingMap,
+            Map<String, StatusBarNotification> activeNotifications,
+            boolean shouldShowHeadsUp) {
+        if (!shouldShowHeadsUp) {
+            mLatencyTracker.onCancelled(statusBarNotification.getKey());
+            mHeadsUpScheduler.removeQueued(statusBarNotification.getKey());
             // check if this is a update to the existing notification and if it should still show
             // as a heads up or not.
             HeadsUpEntry currentActiveHeadsUpNotification = mActiveHeadsUpNotifications.get(
@@ -173,7 +218,7 @@ public class CarHeadsUpNotificationManager
             if (CarNotificationDiff.sameNotificationKey(
                     currentActiveHeadsUpNotification.getStatusBarNotification(),
                     statusBarNotification)
-                    && currentActiveHeadsUpNotification.getHandler().hasMessagesOrCallbacks()) {
+                    && mDeadlineScheduler.isScheduled(currentActiveHeadsUpNotification)) {
                 animateOutHUN(statusBarNotification);
             }
             activeNotifications.put(statusBarNotification.getKey(), statusBarNotification);
@@ -181,8 +226,9 @@ public class CarHeadsUpNotificationManager
         }
         if (!activeNotifications.containsKey(statusBarNotification.getKey()) || canUpdate(
                 statusBarNotification) || alertAgain(statusBarNotification.getNotification())) {
-            showHeadsUp(mPreprocessingManager.optimizeForDriving(statusBarNotification),
-                    rankingMap);
+            scheduleHeadsUp(statusBarNotification, rankingMap);
+        } else {
+            mLatencyTracker.onCancelled(statusBarNotification.getKey());
         }
         activeNotifications.put(statusBarNotification.getKey(), statusBarNotification);
     }
@@ -191,6 +237,10 @@ public class CarHeadsUpNotificationManager
      * This method gets called when an app wants to cancel or withdraw its notification.
      */
     public void maybeRemoveHeadsUp(StatusBarNotification statusBarNotification) {
+        if (mHeadsUpScheduler.removeQueued(statusBarNotification.getKey()) != null) {
+            mLatencyTracker.onCancelled(statusBarNotification.getKey());
+            return;
+        }
         HeadsUpEntry currentActiveHeadsUpNotification = mActiveHeadsUpNotifications.get(
                 statusBarNotification.getKey());
         // if the heads up notification is already removed do nothing.
@@ -208,8 +258,63 @@ public class CarHeadsUpNotificationManager
 
         long earliestRemovalTime = mMinDisplayDuration - totalDisplayDuration;
 
-        currentActiveHeadsUpNotification.getHandler().postDelayed(() ->
-                animateOutHUN(statusBarNotification), earliestRemovalTime);
+        mDeadlineScheduler.schedule(currentActiveHeadsUpNotification, earliestRemovalTime);
+    }
+
+    /**
+     * Shows the heads-up notification if there is room on screen for it, and queues it otherwise.
+     * A queued heads-up notification that outranks a shown one makes it leave early.
+     *
+     * <p> An update of a heads-up notification whose card is animating out is queued as well, and
+     * shown once the card has left, since the card is removed when its animation ends.
+     */
+    private void scheduleHeadsUp(StatusBarNotification statusBarNotification,
+            NotificationListenerService.RankingMap rankingMap) {
+        HeadsUpScheduler.Request request = new HeadsUpScheduler.Request(statusBarNotification,
+                rankingMap, getImportance(statusBarNotification, rankingMap),
+                System.currentTimeMillis());
+        HeadsUpEntry currentActiveHeadsUpNotification = mActiveHeadsUpNotifications.get(
+                statusBarNotification.getKey());
+        boolean isLeaving = currentActiveHeadsUpNotification != null
+                && currentActiveHeadsUpNotification.isAnimatingOut;
+        if (!isLeaving && mHeadsUpScheduler.tryShow(request)) {
+            showHeadsUp(statusBarNotification, rankingMap);
+            return;
+        }
+        HeadsUpScheduler.Request dropped = mHeadsUpScheduler.enqueue(request);
+        if (dropped != null) {
+            mDropCallback.onDropped(dropped);
+        }
+        if (dropped == request || isLeaving) {
+            // the room of a leaving card is freed anyway, no other card needs to leave for it
+            return;
+        }
+        HeadsUpScheduler.Request preempted = mHeadsUpScheduler.getPreempted(request);
+        if (preempted != null) {
+            animateOutHUN(preempted.getStatusBarNotification());
+        }
+    }
+
+    /**
+     * Frees the room of a heads-up notification that left the screen and shows the next queued
+     * heads-up notification, if any.
+     */
+    private void onHeadsUpHidden(String key) {
+        mHeadsUpScheduler.onHidden(key);
+        HeadsUpScheduler.Request next =
+                mHeadsUpScheduler.showNext(System.currentTimeMillis(), mDropCallback);
+        if (next != null) {
+            showHeadsUp(next.getStatusBarNotification(), next.getRankingMap());
+        }
+    }
+
+    private int getImportance(StatusBarNotification statusBarNotification,
+            NotificationListenerService.RankingMap rankingMap) {
+        NotificationListenerService.Ranking ranking = getRanking();
+        if (rankingMap.getRanking(statusBarNotification.getKey(), ranking)) {
+            return ranking.getImportance();
+        }
+        return NotificationManager.IMPORTANCE_UNSPECIFIED;
     }
 
     /**
@@ -304,179 +409,71 @@ public class CarHeadsUpNotificationManager
         mClickHandlerFactory.setHeadsUpNotificationCallBack(
                 () -> animateOutHUN(statusBarNotification));
         currentNotification.setClickHandlerFactory(mClickHandlerFactory);
-        switch (viewType) {
-            case NotificationViewType.CAR_EMERGENCY_HEADSUP: {
-                if (currentNotification.getNotificationView() == null) {
-                    currentNotification.setNotificationView(mInflater.inflate(
-                            R.layout.car_emergency_headsup_notification_template,
-                            null));
-                    mHeadsUpContentFrame.addView(currentNotification.getNotificationView());
-                    currentNotification.setViewHolder(
-                            new EmergencyNotificationViewHolder(
-                                    currentNotification.getNotificationView(),
-                                    mClickHandlerFactory));
-                }
-                currentNotification.getViewHolder().bind(statusBarNotification,
-                        /* isInGroup= */ false, /* isHeadsUp= */ true);
-                break;
-            }
-            case NotificationViewType.NAVIGATION: {
-                if (currentNotification.getNotificationView() == null) {
-                    currentNotification.setNotificationView(mInflater.inflate(
-                            R.layout.navigation_headsup_notification_template,
-                            null));
-                    mHeadsUpContentFrame.addView(currentNotification.getNotificationView());
-                    currentNotification.setViewHolder(
-                            new NavigationNotificationViewHolder(
-                                    currentNotification.getNotificationView(),
-                                    mClickHandlerFactory));
-                }
-                currentNotification.getViewHolder().bind(statusBarNotification,
-                        /* isInGroup= */ false, /* isHeadsUp= */ true);
-                break;
-            }
-            case NotificationViewType.CALL: {
-                if (currentNotification.getNotificationView() == null) {
-                    currentNotification.setNotificationView(mInflater.inflate(
-                            R.layout.call_headsup_notification_template,
-                            null));
-                    mHeadsUpContentFrame.addView(currentNotification.getNotificationView());
-                    currentNotification.setViewHolder(
-                            new CallNotificationViewHolder(
-                                    currentNotification.getNotificationView(),
-                                    mClickHandlerFactory));
-                }
-                currentNotification.getViewHolder().bind(statusBarNotification,
-                        /* isInGroup= */ false, /* isHeadsUp= */ true);
-                break;
-            }
-            case NotificationViewType.CAR_WARNING_HEADSUP: {
-                if (currentNotification.getNotificationView() == null) {
-                    currentNotification.setNotificationView(mInflater.inflate(
-                            R.layout.car_warning_headsup_notification_template,
-                            null));
-                    mHeadsUpContentFrame.addView(currentNotification.getNotificationView());
-                    // Using the basic view holder because they share the same view binding logic
-                    // OEMs should create view holders if needed
-                    currentNotification.setViewHolder(
-                            new BasicNotificationViewHolder(
-                                    currentNotification.getNotificationView(),
-                                    mClickHandlerFactory));
-                }
-                currentNotification.getViewHolder().bind(statusBarNotification, /* isInGroup= */
-                        false, /* isHeadsUp= */ true);
-                break;
-            }
-            case NotificationViewType.CAR_INFORMATION_HEADSUP: {
-                if (currentNotification.getNotificationView() == null) {
-                    currentNotification.setNotificationView(mInflater.inflate(
-                            R.layout.car_information_headsup_notification_template,
-                            null));
-                    mHeadsUpContentFrame.addView(currentNotification.getNotificationView());
-                    // Using the basic view holder because they share the same view binding logic
-                    // OEMs should create view holders if needed
-                    currentNotification.setViewHolder(
-                            new BasicNotificationViewHolder(
-                                    currentNotification.getNotificationView(),
-                                    mClickHandlerFactory));
-                }
-                currentNotification.getViewHolder().bind(statusBarNotification,
-                        /* isInGroup= */ false, /* isHeadsUp= */ true);
-                break;
-            }
-            case NotificationViewType.MESSAGE_HEADSUP: {
-                if (currentNotification.getNotificationView() == null) {
-                    currentNotification.setNotificationView(mInflater.inflate(
-                            R.layout.message_headsup_notification_template,
-                            null));
-                    mHeadsUpContentFrame.addView(currentNotification.getNotificationView());
-                    currentNotification.setViewHolder(
-                            new MessageNotificationViewHolder(
-                                    currentNotification.getNotificationView(),
-                                    mClickHandlerFactory));
-                }
-                if (mShouldRestrictMessagePreview) {
-                    ((MessageNotificationViewHolder) currentNotification.getViewHolder())
-                            .bindRestricted(statusBarNotification, /* isInGroup= */
-                                    false, /* isHeadsUp= */ true);
-                } else {
-                    currentNotification.getViewHolder().bind(statusBarNotification, /* isInGroup= */
-                            false, /* isHeadsUp= */ true);
-                }
-                break;
-            }
-            case NotificationViewType.INBOX_HEADSUP: {
-                if (currentNotification.getNotificationView() == null) {
-                    currentNotification.setNotificationView(mInflater.inflate(
-                            R.layout.inbox_headsup_notification_template,
-                            null));
-                    mHeadsUpContentFrame.addView(currentNotification.getNotificationView());
-                    currentNotification.setViewHolder(
-                            new InboxNotificationViewHolder(
-                                    currentNotification.getNotificationView(),
-                                    mClickHandlerFactory));
-                }
-                currentNotification.getViewHolder().bind(statusBarNotification,
-                        /* isInGroup= */ false, /* isHeadsUp= */ true);
-                break;
-            }
-            case NotificationViewType.BASIC_HEADSUP:
-            default: {
-                if (currentNotification.getNotificationView() == null) {
-                    currentNotification.setNotificationView(mInflater.inflate(
-                            R.layout.basic_headsup_notification_template,
-                            null));
-                    mHeadsUpContentFrame.addView(currentNotification.getNotificationView());
-                    currentNotification.setViewHolder(
-                            new BasicNotificationViewHolder(
-                                    currentNotification.getNotificationView(),
-                                    mClickHandlerFactory));
-                }
-                currentNotification.getViewHolder().bind(statusBarNotification,
-                        /* isInGroup= */ false, /* isHeadsUp= */ true);
-                break;
-            }
+        String key = statusBarNotification.getKey();
+        mLatencyTracker.onViewTypeChosen(key, viewType);
+        if (currentNotification.getNotificationView() == null) {
+            Trace.beginSection("HeadsUpInflate");
+            CarNotificationBaseViewHolder viewHolder = mHeadsUpViewPool.acquire(viewType);
+            Trace.endSection();
+            currentNotification.setViewType(viewType);
+            currentNotification.setViewHolder(viewHolder);
+            currentNotification.setNotificationView(viewHolder.itemView);
+            mHeadsUpContentFrame.addView(viewHolder.itemView);
         }
+        mLatencyTracker.onStage(key, HeadsUpLatencyTracker.STAGE_INFLATE);
+        Trace.beginSection("HeadsUpBind");
+        if (viewType == NotificationViewType.MESSAGE_HEADSUP && mShouldRestrictMessagePreview) {
+            ((MessageNotificationViewHolder) currentNotification.getViewHolder())
+                    .bindRestricted(statusBarNotification, /* isInGroup= */ false,
+                            /* isHeadsUp= */ true);
+        } else {
+            currentNotification.getViewHolder().bind(statusBarNotification,
+                    /* isInGroup= */ false, /* isHeadsUp= */ true);
+        }
+        Trace.endSection();
+        mLatencyTracker.onStage(key, HeadsUpLatencyTracker.STAGE_BIND);
 
         // measure the size of the card and make that area of the screen touchable
-        currentNotification.getNotificationView().getViewTreeObserver()
-                .addOnComputeInternalInsetsListener(
-                        info -> setInternalInsetsInfo(info,
-                                currentNotification, /* panelExpanded= */false));
+        if (currentNotification.getInsetsListener() == null) {
+            ViewTreeObserver.OnComputeInternalInsetsListener insetsListener =
+                    info -> setInternalInsetsInfo(info,
+                            currentNotification, /* panelExpanded= */false);
+            currentNotification.setInsetsListener(insetsListener);
+            currentNotification.getNotificationView().getViewTreeObserver()
+                    .addOnComputeInternalInsetsListener(insetsListener);
+        }
         // Get the height of the notification view after onLayout()
         // in order animate the notification in
         currentNotification.getNotificationView().getViewTreeObserver().addOnGlobalLayoutListener(
                 new ViewTreeObserver.OnGlobalLayoutListener() {
                     @Override
                     public void onGlobalLayout() {
-                        int notificationHeight =
-                                currentNotification.getNotificationView().getHeight();
-
+                        if (currentNotification.getNotificationView() == null) {
+                            // the view was removed and reused before it was laid out
+                            mHeadsUpContentFrame.getViewTreeObserver()
+                                    .removeOnGlobalLayoutListener(this);
+                            mLatencyTracker.onCancelled(key);
+                            return;
+                        }
+                        mLatencyTracker.onStage(key, HeadsUpLatencyTracker.STAGE_LAYOUT);
                         if (shouldShowAnimation) {
-                            currentNotification.getNotificationView().setY(0 - notificationHeight);
-                            currentNotification.getNotificationView().setAlpha(0f);
-
-                            Interpolator yPositionInterpolator = AnimationUtils.loadInterpolator(
-                                    mContext,
-                                    R.interpolator.heads_up_entry_direction_interpolator);
-                            Interpolator alphaInterpolator = AnimationUtils.loadInterpolator(
-                                    mContext,
-                                    R.interpolator.heads_up_entry_alpha_interpolator);
-
-                            ObjectAnimator moveY = ObjectAnimator.ofFloat(
-                                    currentNotification.getNotificationView(), "y", 0f);
-                            moveY.setDuration(mEnterAnimationDuration);
-                            moveY.setInterpolator(yPositionInterpolator);
-
-                            ObjectAnimator alpha = ObjectAnimator.ofFloat(
-                                    currentNotification.getNotificationView(), "alpha", 1f);
-                            alpha.setDuration(mAlphaEnterAnimationDuration);
-                            alpha.setInterpolator(alphaInterpolator);
-
-                            AnimatorSet animatorSet = new AnimatorSet();
-                            animatorSet.playTogether(moveY, alpha);
-                            animatorSet.start();
-
+                            mAnimationEngine.animateIn(currentNotification.getNotificationView(),
+                                    new AnimatorListenerAdapter() {
+                                        @Override
+                                        public void onAnimationStart(Animator animation) {
+                                            mLatencyTracker.onStage(key,
+                                                    HeadsUpLatencyTracker.STAGE_ANIMATION_START);
+                                        }
+
+                                        @Override
+                                        public void onAnimationEnd(Animator animation) {
+                                            mLatencyTracker.onStage(key,
+                                                    HeadsUpLatencyTracker.STAGE_ANIMATION_END);
+                                            mLatencyTracker.onShown(key);
+                                        }
+                                    });
+                        } else {
+                            mLatencyTracker.onShown(key);
                         }
                         currentNotification.getNotificationView().getViewTreeObserver()
                                 .removeOnGlobalLayoutListener(this);
@@ -555,9 +552,7 @@ public class CarHeadsUpNotificationManager
         if (hasFullScreenIntent(statusBarNotification)) {
             return;
         }
-        currentNotification.getHandler().removeCallbacksAndMessages(null);
-        currentNotification.getHandler().postDelayed(() -> animateOutHUN(statusBarNotification),
-                mDuration);
+        mDeadlineScheduler.schedule(currentNotification, mDuration);
     }
 
     /**
@@ -577,41 +572,27 @@ public class CarHeadsUpNotificationManager
         HeadsUpEntry currentHeadsUpNotification = mActiveHeadsUpNotifications.get(
                 statusBarNotification.getKey());
         // view can also be removed when swipped away.
-        if (currentHeadsUpNotification == null) {
+        // the view is already animating out, its animation ends the heads up notification.
+        if (currentHeadsUpNotification == null || currentHeadsUpNotification.isAnimatingOut) {
             return;
         }
-        currentHeadsUpNotification.getHandler().removeCallbacksAndMessages(null);
+        mDeadlineScheduler.cancel(currentHeadsUpNotification);
         currentHeadsUpNotification.getClickHandlerFactory().setHeadsUpNotificationCallBack(null);
+        currentHeadsUpNotification.isAnimatingOut = true;
 
-        Interpolator exitInterpolator = AnimationUtils.loadInterpolator(mContext,
-                R.interpolator.heads_up_exit_direction_interpolator);
-        Interpolator alphaInterpolator = AnimationUtils.loadInterpolator(mContext,
-                R.interpolator.heads_up_exit_alpha_interpolator);
-
-        ObjectAnimator moveY = ObjectAnimator.ofFloat(
-                currentHeadsUpNotification.getNotificationView(), "y",
-                -1 * currentHeadsUpNotification.getNotificationView().getHeight());
-        moveY.setDuration(mExitAnimationDuration);
-        moveY.setInterpolator(exitInterpolator);
-
-        ObjectAnimator alpha = ObjectAnimator.ofFloat(
-                currentHeadsUpNotification.getNotificationView(), "alpha", 1f);
-        alpha.setDuration(mExitAnimationDuration);
-        alpha.setInterpolator(alphaInterpolator);
-
-        AnimatorSet animatorSet = new AnimatorSet();
-        animatorSet.playTogether(moveY, alpha);
-        animatorSet.addListener(new AnimatorListenerAdapter() {
-            @Override
-            public void onAnimationEnd(Animator animation) {
-                removeNotificationFromPanel(currentHeadsUpNotification);
-
-                // Remove HUN after the animation ends to prevent accidental touch on the card
-                // triggering another remove call.
-                mActiveHeadsUpNotifications.remove(statusBarNotification.getKey());
-            }
-        });
-        animatorSet.start();
+        mAnimationEngine.animateOut(currentHeadsUpNotification.getNotificationView(),
+                new AnimatorListenerAdapter() {
+                    @Override
+                    public void onAnimationEnd(Animator animation) {
+                        currentHeadsUpNotification.isAnimatingOut = false;
+                        removeNotificationFromPanel(currentHeadsUpNotification);
+
+                        // Remove HUN after the animation ends to prevent accidental touch on the
+                        // card triggering another remove call.
+                        mActiveHeadsUpNotifications.remove(statusBarNotification.getKey());
+                        onHeadsUpHidden(statusBarNotification.getKey());
+                    }
+                });
     }
 
     /**
@@ -620,10 +601,32 @@ public class CarHeadsUpNotificationManager
      * @param currentHeadsUpNotification The notification to remove
      */
     protected void removeNotificationFromPanel(HeadsUpEntry currentHeadsUpNotification) {
-        mHeadsUpContentFrame.removeView(currentHeadsUpNotification.getNotificationView());
+        View notificationView = currentHeadsUpNotification.getNotificationView();
+        if (notificationView != null && currentHeadsUpNotification.getInsetsListener() != null) {
+            notificationView.getViewTreeObserver().removeOnComputeInternalInsetsListener(
+                    currentHeadsUpNotification.getInsetsListener());
+            currentHeadsUpNotification.setInsetsListener(null);
+        }
+        mHeadsUpContentFrame.removeView(notificationView);
         if (mHeadsUpContentFrame.getChildCount() == 0) {
             mHeadsUpPanel.setVisibility(View.INVISIBLE);
         }
+        recycleNotificationView(currentHeadsUpNotification);
+    }
+
+    /**
+     * Returns the view of a heads-up notification that was removed from the panel to the pool.
+     * Views that are still animating out are returned once the animation ends.
+     */
+    private void recycleNotificationView(HeadsUpEntry currentHeadsUpNotification) {
+        CarNotificationBaseViewHolder viewHolder = currentHeadsUpNotification.getViewHolder();
+        if (viewHolder == null || currentHeadsUpNotification.isAnimatingOut) {
+            return;
+        }
+        currentHeadsUpNotification.setViewHolder(null);
+        currentHeadsUpNotification.setNotificationView(null);
+        mAnimationEngine.cancel(viewHolder.itemView);
+        mHeadsUpViewPool.release(currentHeadsUpNotification.getViewType(), viewHolder);
     }
 
 
@@ -637,9 +640,10 @@ public class CarHeadsUpNotificationManager
         if (currentHeadsUpNotification == null) return;
 
         currentHeadsUpNotification.getClickHandlerFactory().setHeadsUpNotificationCallBack(null);
-        currentHeadsUpNotification.getHandler().removeCallbacksAndMessages(null);
+        mDeadlineScheduler.cancel(currentHeadsUpNotification);
         removeNotificationFromPanel(currentHeadsUpNotification);
         mActiveHeadsUpNotifications.remove(statusBarNotification.getKey());
+        onHeadsUpHidden(statusBarNotification.getKey());
     }
 
     /**
@@ -699,6 +703,8 @@ public class CarHeadsUpNotificationManager
      *
      * <p> Group alert behavior still follows API documentation.
      *
+     * <p> This does not touch any view and may be called from a background thread.
+     *
      * @return true if a notification should be shown as a heads-up
      */
     private boolean shouldShowHeadsUp(
@@ -758,6 +764,25 @@ public class CarHeadsUpNotificationManager
         return new NotificationListenerService.Ranking();
     }
 
+    /**
+     * Returns the tracker of the time it takes to show heads-up notifications.
+     */
+    public HeadsUpLatencyTracker getLatencyTracker() {
+        return mLatencyTracker;
+    }
+
+    @VisibleForTesting
+    boolean isHeadsUpQueued(String key) {
+        return mHeadsUpScheduler.isQueued(key);
+    }
+
+    void dump(PrintWriter pw) {
+        pw.println("CarHeadsUpNotificationManager:");
+        pw.println("  active heads-up notifications: " + mActiveHeadsUpNotifications.size());
+        pw.println("  queued heads-up notifications: " + mHeadsUpScheduler.getQueuedCount());
+        mLatencyTracker.dump(pw);
+    }
+
     @Override
     public void onUxRestrictionsChanged(CarUxRestrictions restrictions) {
         mShouldRestrictMessagePreview =
@@ -773,6 +798,7 @@ public class CarHeadsUpNotificationManager
     @VisibleForTesting
     public void setClickHandlerFactory(NotificationClickHandlerFactory clickHandlerFactory) {
         mClickHandlerFactory = clickHandlerFactory;
+        mHeadsUpViewPool.setClickHandlerFactory(clickHandlerFactory);
     }
 
     /**
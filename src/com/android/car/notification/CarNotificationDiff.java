@@ -15,9 +15,6 @@
  */
 package com.android.car.notification;
 
-import android.app.Notification;
-import android.content.Context;
-import android.os.Bundle;
 import android.service.notification.StatusBarNotification;
 
 import androidx.recyclerview.widget.DiffUtil;
@@ -36,18 +33,14 @@ import java.util.Objects;
  * <li> The order of each StatusBarNotification
  * <li> The identifier of each individual StatusBarNotification contained
  * <li> The content of each individual StatusBarNotification contained
+ * <li> The child titles shown by a group summary
  * </ol>
  */
 class CarNotificationDiff extends DiffUtil.Callback {
-    private final Context mContext;
     private final List<NotificationGroup> mOldList;
     private final List<NotificationGroup> mNewList;
 
-    CarNotificationDiff(
-            Context context,
-            List<NotificationGroup> oldList,
-            List<NotificationGroup> newList) {
-        mContext = context;
+    CarNotificationDiff(List<NotificationGroup> oldList, List<NotificationGroup> newList) {
         mOldList = oldList;
         mNewList = newList;
     }
@@ -149,6 +142,10 @@ class CarNotificationDiff extends DiffUtil.Callback {
             return false;
         }
 
+        if (!Objects.equals(oldItem.getChildTitles(), newItem.getChildTitles())) {
+            return false;
+        }
+
         List<StatusBarNotification> oldChildNotifications = oldItem.getChildNotifications();
         List<StatusBarNotification> newChildNotifications = newItem.getChildNotifications();
 
@@ -169,8 +166,11 @@ class CarNotificationDiff extends DiffUtil.Callback {
      * <p> We are only comparing a subset of the fields that have visible effects on our product.
      * Most of the deprecated fields are not compared.
      * Fields that do not have visible effects, e.g. privacy-related things are ignored for now.
+     *
+     * <p> The fields are compared through the fingerprints kept by
+     * {@link NotificationFingerprintCache}, which are computed once per notification.
      */
-    private boolean sameNotificationContent(
+    static boolean sameNotificationContent(
             StatusBarNotification oldItem, StatusBarNotification newItem) {
 
         if (oldItem == newItem) {
@@ -181,53 +181,6 @@ class CarNotificationDiff extends DiffUtil.Callback {
             return false;
         }
 
-        if (oldItem.isGroup() != newItem.isGroup()
-                || oldItem.isClearable() != newItem.isClearable()
-                || oldItem.isOngoing() != newItem.isOngoing()) {
-            return false;
-        }
-
-        Notification oldNotification = oldItem.getNotification();
-        Notification newNotification = newItem.getNotification();
-
-        if (oldNotification.flags != newNotification.flags
-                || oldNotification.category != newNotification.category
-                || oldNotification.color != newNotification.color
-                || !areBundlesEqual(oldNotification.extras, newNotification.extras)
-                || !Objects.equals(oldNotification.contentIntent, newNotification.contentIntent)
-                || !Objects.equals(oldNotification.deleteIntent, newNotification.deleteIntent)
-                || !Objects.equals(
-                        oldNotification.fullScreenIntent, newNotification.fullScreenIntent)
-                || !Objects.deepEquals(oldNotification.actions, newNotification.actions)) {
-            return false;
-        }
-
-        // Recover builders only until the above if-statements fail
-        Notification.Builder oldBuilder =
-                Notification.Builder.recoverBuilder(mContext, oldNotification);
-        Notification.Builder newBuilder =
-                Notification.Builder.recoverBuilder(mContext, newNotification);
-
-        return !Notification.areStyledNotificationsVisiblyDifferent(oldBuilder, newBuilder);
-    }
-
-    private boolean areBundlesEqual(Bundle oldBundle, Bundle newBundle) {
-        if (oldBundle.size() != newBundle.size()) {
-            return false;
-        }
-
-        for (String key : oldBundle.keySet()) {
-            if (!newBundle.containsKey(key)) {
-                return false;
-            }
-
-            Object oldValue = oldBundle.get(key);
-            Object newValue = newBundle.get(key);
-            if (!Objects.equals(oldValue, newValue)) {
-                return false;
-            }
-        }
-
-        return true;
+        return NotificationFingerprintCache.hasSameContent(oldItem, newItem);
     }
 }
@@ -0,0 +1,131 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.car.notification;
+
+import android.annotation.Nullable;
+import android.os.Handler;
+import android.os.Looper;
+
+import androidx.recyclerview.widget.DiffUtil;
+
+import com.android.internal.annotations.VisibleForTesting;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+
+/**
+ * Calculates the difference between the current and a newly submitted list of
+ * {@link NotificationGroup}s on a background thread using {@link CarNotificationDiff}.
+ *
+ * <p> Every submitted list is assigned a generation. When the diff of a list completes, it is only
+ * committed on the main thread if no newer list has been submitted in the meantime; results of
+ * outdated generations are discarded.
+ *
+ * <p> This class must be used from the main thread. The submitted lists and the notification
+ * groups they contain must not be modified after submission.
+ */
+class CarNotificationListDiffer {
+
+    /** Callback that is notified on the main thread when a new list becomes the current list. */
+    interface Callback {
+        /**
+         * @param oldList the list that was current before.
+         * @param newList the list that is now current.
+         * @param diffResult the difference between the two lists, or {@code null} if the lists
+         * were not diffed because one of them was empty.
+         */
+        void onListCommitted(List<NotificationGroup> oldList, List<NotificationGroup> newList,
+                @Nullable DiffUtil.DiffResult diffResult);
+    }
+
+    // Shared by all adapters so that nested group adapters do not each create a thread.
+    private static final Executor sDiffExecutor = Executors.newSingleThreadExecutor();
+
+    private final Callback mCallback;
+    private final Handler mMainThreadHandler = new Handler(Looper.getMainLooper());
+
+    private Executor mDiffExecutor = sDiffExecutor;
+    private List<NotificationGroup> mCurrentList = Collections.emptyList();
+    private int mMaxScheduledGeneration;
+
+    CarNotificationListDiffer(Callback callback) {
+        mCallback = callback;
+    }
+
+    /**
+     * Returns the list that was most recently committed.
+     */
+    List<NotificationGroup> getCurrentList() {
+        return mCurrentList;
+    }
+
+    /**
+     * Submits a new list to be diffed against the current list. Lists are committed immediately,
+     * without diffing, if either the current or the new list is empty.
+     */
+    void submitList(List<NotificationGroup> newList) {
+        int runGeneration = ++mMaxScheduledGeneration;
+        List<NotificationGroup> oldList = mCurrentList;
+
+        if (oldList.isEmpty() || newList.isEmpty()) {
+            commitList(newList, /* diffResult= */ null);
+            return;
+        }
+
+        mDiffExecutor.execute(() -> {
+            DiffUtil.DiffResult diffResult = DiffUtil.calculateDiff(
+                    new CarNotificationDiff(oldList, newList), /* detectMoves= */ true);
+            mMainThreadHandler.post(() -> {
+                if (runGeneration == mMaxScheduledGeneration) {
+                    commitList(newList, diffResult);
+                }
+            });
+        });
+    }
+
+    /**
+     * Diffs the new list against the current list on the calling thread and commits it before
+     * returning. Lists that are still being diffed in the background are discarded.
+     *
+     * <p> Used for small lists whose views must reflect the new list right away, such as the
+     * children of a group that is bound to a recycled view.
+     */
+    void submitListNow(List<NotificationGroup> newList) {
+        ++mMaxScheduledGeneration;
+        List<NotificationGroup> oldList = mCurrentList;
+
+        DiffUtil.DiffResult diffResult = null;
+        if (!oldList.isEmpty() && !newList.isEmpty()) {
+            diffResult = DiffUtil.calculateDiff(
+                    new CarNotificationDiff(oldList, newList), /* detectMoves= */ true);
+        }
+        commitList(newList, diffResult);
+    }
+
+    @VisibleForTesting
+    void setDiffExecutor(Executor executor) {
+        mDiffExecutor = executor;
+    }
+
+    private void commitList(List<NotificationGroup> newList,
+            @Nullable DiffUtil.DiffResult diffResult) {
+        List<NotificationGroup> oldList = mCurrentList;
+        mCurrentList = newList;
+        mCallback.onListCommitted(oldList, newList, diffResult);
+    }
+}
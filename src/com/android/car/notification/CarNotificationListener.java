@@ -22,33 +22,49 @@ import android.content.Context;
 import android.content.Intent;
 import android.os.Binder;
 import android.os.Handler;
+import android.os.HandlerThread;
 import android.os.IBinder;
+import android.os.Looper;
 import android.os.Message;
+import android.os.Process;
 import android.os.RemoteException;
 import android.os.UserHandle;
 import android.service.notification.NotificationListenerService;
 import android.service.notification.StatusBarNotification;
 import android.util.Log;
 
-import java.util.HashMap;
+import com.android.internal.annotations.VisibleForTesting;
+
+import java.io.FileDescriptor;
+import java.io.PrintWriter;
 import java.util.Map;
-import java.util.Objects;
-import java.util.stream.Collectors;
-import java.util.stream.Stream;
 
 /**
  * NotificationListenerService that fetches all notifications from system.
+ *
+ * <p> Posted and removed notifications are classified on a background ingestion thread: the user
+ * check, the message state, the filtering decision and the heads-up eligibility decision are made
+ * there, in the order the notifications arrived. Only the results are handed to the main thread,
+ * which updates the active notifications, the heads-up views and the notification center.
  */
 public class CarNotificationListener extends NotificationListenerService {
     private static final String TAG = "CarNotificationListener";
     static final String ACTION_LOCAL_BINDING = "local_binding";
     static final int NOTIFY_NOTIFICATION_POSTED = 1;
     static final int NOTIFY_NOTIFICATION_REMOVED = 2;
-    /** Temporary {@link Ranking} object that serves as a reused value holder */
-    final private Ranking mTemporaryRanking = new Ranking();
-
+    /** Sent with a {@link RankingSnapshot.Delta} of the notifications whose ranking changed. */
+    static final int NOTIFY_RANKING_UPDATED = 3;
+    /** Value of {@link Message#arg1} for notifications that are filtered out of the center. */
+    static final int NOTIFICATION_FILTERED = 1;
+    private final Handler mMainThreadHandler = new Handler(Looper.getMainLooper());
+    private HandlerThread mIngestionThread;
+    private Handler mIngestionHandler;
     private Handler mHandler;
-    private RankingMap mRankingMap;
+    private PreprocessingManager mPreprocessingManager;
+    // Written on the main thread, read on the ingestion thread.
+    private volatile RankingMap mRankingMap;
+    // Ranking of the notifications as of the last update, only used on the ingestion thread.
+    private RankingSnapshot mRankingSnapshot;
     private CarHeadsUpNotificationManager mHeadsUpManager;
     private NotificationDataManager mNotificationDataManager;
 
@@ -58,7 +74,7 @@ public class CarNotificationListener extends NotificationListenerService {
      * map is when the {@llink NotificationListenerService} calls the onNotificationRemoved method.
      * New notifications will be added to the map from {@link CarHeadsUpNotificationManager}.
      */
-    private Map<String, StatusBarNotification> mActiveNotifications = new HashMap<>();
+    private final NotificationStore mActiveNotifications = new NotificationStore();
 
     /**
      * Call this if to register this service as a system service and connect to HUN. This is useful
@@ -75,6 +91,8 @@ public class CarNotificationListener extends NotificationListenerService {
             NotificationDataManager notificationDataManager) {
         try {
         mNotificationDataManager = notificationDataManager;
+            mPreprocessingManager = PreprocessingManager.getInstance(context);
+            startIngestionThread();
             registerAsSystemService(context,
                     new ComponentName(context.getPackageName(), getClass().getCanonicalName()),
                     ActivityManager.getCurrentUser());
@@ -96,6 +114,17 @@ public class CarNotificationListener extends NotificationListenerService {
                 app.getClickHandlerFactory(),
                 mNotificationDataManager);
         app.getCarUxRestrictionWrapper().setCarHeadsUpNotificationManager(mHeadsUpManager);
+        mPreprocessingManager = PreprocessingManager.getInstance(/* context= */this);
+        startIngestionThread();
+    }
+
+    @Override
+    public void onDestroy() {
+        if (mIngestionThread != null) {
+            mIngestionThread.quitSafely();
+            mIngestionThread = null;
+        }
+        super.onDestroy();
     }
 
     @Override
@@ -107,57 +136,108 @@ public class CarNotificationListener extends NotificationListenerService {
     @Override
     public void onNotificationPosted(StatusBarNotification sbn, RankingMap rankingMap) {
         Log.d(TAG, "onNotificationPosted: " + sbn);
-        if (!isNotificationForCurrentUser(sbn)) {
-            return;
-        }
-        mRankingMap = rankingMap;
-        notifyNotificationPosted(sbn);
+        mIngestionHandler.post(() -> ingestNotificationPosted(sbn, rankingMap));
     }
 
     @Override
     public void onNotificationRemoved(StatusBarNotification sbn) {
         Log.d(TAG, "onNotificationRemoved: " + sbn);
-        mActiveNotifications.remove(sbn.getKey());
-        mHeadsUpManager.maybeRemoveHeadsUp(sbn);
-        notifyNotificationRemoved(sbn);
+        mIngestionHandler.post(() -> ingestNotificationRemoved(sbn));
     }
 
     @Override
     public void onNotificationRankingUpdate(RankingMap rankingMap) {
-        mRankingMap = rankingMap;
-        for (StatusBarNotification sbn : mActiveNotifications.values()) {
-            if (!mRankingMap.getRanking(sbn.getKey(), mTemporaryRanking)) {
-                continue;
-            }
-            String oldOverrideGroupKey = sbn.getOverrideGroupKey();
-            String newOverrideGroupKey = getOverrideGroupKey(sbn.getKey());
-            if (!Objects.equals(oldOverrideGroupKey, newOverrideGroupKey)) {
-                sbn.setOverrideGroupKey(newOverrideGroupKey);
-            }
+        mIngestionHandler.post(() -> ingestRankingUpdate(rankingMap));
+    }
+
+    /**
+     * Classifies a posted notification on the ingestion thread and hands the result to the main
+     * thread.
+     */
+    @VisibleForTesting
+    void ingestNotificationPosted(StatusBarNotification sbn, RankingMap rankingMap) {
+        if (!isNotificationForCurrentUser(sbn)) {
+            return;
+        }
+        // traced only once it passed the user filter, so that every trace is ended by the
+        // heads-up manager
+        mHeadsUpManager.getLatencyTracker().onPosted(sbn.getKey());
+        mNotificationDataManager.addNewMessageNotification(sbn);
+        if (mRankingSnapshot != null) {
+            mRankingSnapshot.update(sbn.getKey(), rankingMap);
         }
+        boolean shouldShowHeadsUp = mHeadsUpManager.prepareHeadsUp(sbn, rankingMap);
+        boolean isFiltered = mPreprocessingManager.shouldFilter(sbn, rankingMap);
+        mMainThreadHandler.post(() -> {
+            mRankingMap = rankingMap;
+            mHeadsUpManager.updateHeadsUp(sbn, rankingMap, mActiveNotifications,
+                    shouldShowHeadsUp);
+            notifyHandler(NOTIFY_NOTIFICATION_POSTED, sbn, isFiltered);
+        });
     }
 
     /**
-     * Get the override group key of a {@link StatusBarNotification} given its key.
+     * Classifies a removed notification on the ingestion thread and hands the result to the main
+     * thread.
      */
-    @Nullable
-    private String getOverrideGroupKey(String key) {
-        if (mRankingMap != null) {
-            mRankingMap.getRanking(key, mTemporaryRanking);
-            return mTemporaryRanking.getOverrideGroupKey();
+    @VisibleForTesting
+    void ingestNotificationRemoved(StatusBarNotification sbn) {
+        if (mRankingSnapshot != null) {
+            mRankingSnapshot.remove(sbn.getKey());
         }
-        return null;
+        RankingMap rankingMap = mRankingMap;
+        boolean isFiltered =
+                rankingMap != null && mPreprocessingManager.shouldFilter(sbn, rankingMap);
+        mMainThreadHandler.post(() -> {
+            mActiveNotifications.remove(sbn.getKey());
+            mHeadsUpManager.maybeRemoveHeadsUp(sbn);
+            notifyHandler(NOTIFY_NOTIFICATION_REMOVED, sbn, isFiltered);
+        });
     }
 
     /**
-     * Get all active notifications.
+     * Compares the new ranking with the previous one on the ingestion thread and hands the
+     * notifications whose ranking changed to the main thread.
+     */
+    @VisibleForTesting
+    void ingestRankingUpdate(RankingMap rankingMap) {
+        RankingSnapshot snapshot = RankingSnapshot.of(rankingMap);
+        RankingSnapshot.Delta delta = mRankingSnapshot == null
+                ? new RankingSnapshot.Delta() : mRankingSnapshot.diff(snapshot);
+        mRankingSnapshot = snapshot;
+        mMainThreadHandler.post(() -> applyRankingUpdate(rankingMap, delta));
+    }
+
+    private void applyRankingUpdate(RankingMap rankingMap, RankingSnapshot.Delta delta) {
+        mRankingMap = rankingMap;
+        for (String key : delta.getKeys()) {
+            if ((delta.getChanges(key) & RankingSnapshot.Delta.CHANGED_OVERRIDE_GROUP_KEY) == 0) {
+                continue;
+            }
+            mActiveNotifications.setOverrideGroupKey(key, delta.getOverrideGroupKey(key));
+        }
+        if (!delta.isEmpty()) {
+            notifyHandler(NOTIFY_RANKING_UPDATED, delta, /* isFiltered= */ false);
+        }
+    }
+
+    /**
+     * Get all active notifications of the current user.
      *
-     * @return a map of all active notifications with key being the notification key.
+     * @return a read-only view of the active notifications with key being the notification key.
+     * The view is only valid until the active notifications change and must be copied to be kept.
      */
     Map<String, StatusBarNotification> getNotifications() {
-        return mActiveNotifications.entrySet().stream()
-                .filter(x -> (isNotificationForCurrentUser(x.getValue())))
-                .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue));
+        return mActiveNotifications.getNotificationsForUsers(
+                ActivityManager.getCurrentUser(), UserHandle.USER_ALL);
+    }
+
+    /**
+     * Returns the latest immutable snapshot of all active notifications, of all users. This
+     * method may be called from any thread.
+     */
+    NotificationStore.Snapshot getNotificationSnapshot() {
+        return mActiveNotifications.getSnapshot();
     }
 
     @Override
@@ -167,19 +247,48 @@ public class CarNotificationListener extends NotificationListenerService {
 
     @Override
     public void onListenerConnected() {
-        mActiveNotifications = Stream.of(getActiveNotifications()).collect(
-                Collectors.toMap(StatusBarNotification::getKey, sbn -> sbn));
+        mActiveNotifications.clear();
+        for (StatusBarNotification sbn : getActiveNotifications()) {
+            mActiveNotifications.put(sbn.getKey(), sbn);
+        }
         mRankingMap = super.getCurrentRanking();
+        RankingMap rankingMap = mRankingMap;
+        mIngestionHandler.post(() -> mRankingSnapshot = RankingSnapshot.of(rankingMap));
     }
 
     @Override
     public void onListenerDisconnected() {
     }
 
+    @Override
+    protected void dump(FileDescriptor fd, PrintWriter pw, String[] args) {
+        pw.println("active notifications: " + mActiveNotifications.size());
+        if (mHeadsUpManager != null) {
+            mHeadsUpManager.dump(pw);
+        }
+    }
+
     public void setHandler(Handler handler) {
         mHandler = handler;
     }
 
+    /**
+     * Sets the handler that classifies notifications before they are handed to the main thread.
+     */
+    @VisibleForTesting
+    void setIngestionHandler(Handler handler) {
+        mIngestionHandler = handler;
+    }
+
+    private void startIngestionThread() {
+        if (mIngestionThread != null) {
+            return;
+        }
+        mIngestionThread = new HandlerThread(TAG, Process.THREAD_PRIORITY_BACKGROUND);
+        mIngestionThread.start();
+        mIngestionHandler = new Handler(mIngestionThread.getLooper());
+    }
+
     private boolean isNotificationForCurrentUser(StatusBarNotification sbn) {
         // Notifications should only be shown for the current user and the the notifications from
         // the system when CarNotification is running as SystemUI component.
@@ -187,25 +296,14 @@ public class CarNotificationListener extends NotificationListenerService {
                 || sbn.getUser().getIdentifier() == UserHandle.USER_ALL);
     }
 
-    private void notifyNotificationRemoved(StatusBarNotification sbn) {
-        if (mHandler == null) {
-            return;
-        }
-        Message msg = Message.obtain(mHandler);
-        msg.what = NOTIFY_NOTIFICATION_REMOVED;
-        msg.obj = sbn;
-        mHandler.sendMessage(msg);
-    }
-
-    private void notifyNotificationPosted(StatusBarNotification sbn) {
-        mNotificationDataManager.addNewMessageNotification(sbn);
-        mHeadsUpManager.maybeShowHeadsUp(sbn, getCurrentRanking(), mActiveNotifications);
+    private void notifyHandler(int what, Object obj, boolean isFiltered) {
         if (mHandler == null) {
             return;
         }
         Message msg = Message.obtain(mHandler);
-        msg.what = NOTIFY_NOTIFICATION_POSTED;
-        msg.obj = sbn;
+        msg.what = what;
+        msg.arg1 = isFiltered ? NOTIFICATION_FILTERED : 0;
+        msg.obj = obj;
         mHandler.sendMessage(msg);
     }
 
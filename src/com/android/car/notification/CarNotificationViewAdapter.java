@@ -15,21 +15,21 @@
  */
 package com.android.car.notification;
 
-import android.app.Notification;
+import android.annotation.Nullable;
 import android.car.drivingstate.CarUxRestrictions;
 import android.content.Context;
-import android.os.Bundle;
-import android.os.Handler;
 import android.service.notification.StatusBarNotification;
 import android.util.Log;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
 
+import androidx.recyclerview.widget.DiffUtil;
 import androidx.recyclerview.widget.RecyclerView;
 
 import com.android.car.notification.template.BasicNotificationViewHolder;
 import com.android.car.notification.template.CallNotificationViewHolder;
+import com.android.car.notification.template.CarNotificationBaseViewHolder;
 import com.android.car.notification.template.CarNotificationFooterViewHolder;
 import com.android.car.notification.template.CarNotificationHeaderViewHolder;
 import com.android.car.notification.template.EmergencyNotificationViewHolder;
@@ -38,9 +38,15 @@ import com.android.car.notification.template.GroupSummaryNotificationViewHolder;
 import com.android.car.notification.template.InboxNotificationViewHolder;
 import com.android.car.notification.template.MessageNotificationViewHolder;
 import com.android.car.notification.template.ProgressNotificationViewHolder;
+import com.android.internal.annotations.VisibleForTesting;
 
+import java.util.AbstractList;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.RandomAccess;
+import java.util.Set;
+import java.util.concurrent.Executor;
 
 /**
  * Notification data adapter that binds a notification to the corresponding view.
@@ -49,17 +55,18 @@ public class CarNotificationViewAdapter extends RecyclerView.Adapter<RecyclerVie
         implements PreprocessingManager.CallStateListener {
     private static final String TAG = "CarNotificationAdapter";
 
-    // Delay in posting notifyDataSetChanged for the adapter in milliseconds.
-    private static final int NOTIFY_DATASET_CHANGED_DELAY = 100;
+    // Shared by all lists, since the header and footer never change.
+    private static final NotificationGroup NOTIFICATION_HEADER = createNotificationHeader();
+    private static final NotificationGroup NOTIFICATION_FOOTER = createNotificationFooter();
 
     private final Context mContext;
     private final LayoutInflater mInflater;
     private final int mMaxNumberGroupChildrenShown;
     private final boolean mIsGroupNotificationAdapter;
-    private final Handler mHandler = new Handler();
+    private final CarNotificationListDiffer mDiffer;
 
-    // book keeping expanded notification groups
-    private final List<String> mExpandedNotifications = new ArrayList<>();
+    // group keys of the expanded notification groups
+    private final Set<String> mExpandedNotifications = new HashSet<>();
 
     private List<NotificationGroup> mNotifications = new ArrayList<>();
     private RecyclerView.RecycledViewPool mViewPool;
@@ -68,8 +75,6 @@ public class CarNotificationViewAdapter extends RecyclerView.Adapter<RecyclerVie
     private NotificationDataManager mNotificationDataManager;
     private boolean mIsInCall;
 
-    private Runnable mNotifyDataSetChangedRunnable = this::notifyDataSetChanged;
-
     /**
      * Constructor for a notification adapter.
      * Can be used both by the root notification list view, or a grouped notification view.
@@ -83,6 +88,7 @@ public class CarNotificationViewAdapter extends RecyclerView.Adapter<RecyclerVie
         mMaxNumberGroupChildrenShown =
                 mContext.getResources().getInteger(R.integer.max_group_children_number);
         mIsGroupNotificationAdapter = isGroupNotificationAdapter;
+        mDiffer = new CarNotificationListDiffer(this::onNotificationsCommitted);
         setHasStableIds(true);
         if (!mIsGroupNotificationAdapter) {
             mViewPool = new RecyclerView.RecycledViewPool();
@@ -291,117 +297,73 @@ public class CarNotificationViewAdapter extends RecyclerView.Adapter<RecyclerVie
         }
     }
 
+    @Override
+    public void onViewRecycled(RecyclerView.ViewHolder holder) {
+        if (holder instanceof CarNotificationBaseViewHolder) {
+            ((CarNotificationBaseViewHolder) holder).onRecycled();
+        }
+    }
+
     @Override
     public int getItemViewType(int position) {
         NotificationGroup notificationGroup = mNotifications.get(position);
+        int viewType = notificationGroup.getViewType();
 
-        if (notificationGroup.isHeader()) {
-            return NotificationViewType.HEADER;
+        if (viewType == NotificationViewType.HEADER || viewType == NotificationViewType.FOOTER) {
+            return viewType;
         }
 
-        if (notificationGroup.isFooter()) {
-            return NotificationViewType.FOOTER;
-        }
-
-        if (notificationGroup.isGroup()) {
-            if (mExpandedNotifications.contains(notificationGroup.getGroupKey())) {
+        if (viewType == NotificationViewType.GROUP_COLLAPSED) {
+            if (isExpanded(notificationGroup.getGroupKey())) {
                 return NotificationViewType.GROUP_EXPANDED;
             } else {
                 return NotificationViewType.GROUP_COLLAPSED;
             }
-        } else if (mExpandedNotifications.contains(notificationGroup.getGroupKey())) {
-            // when there are 2 notifications left in the expanded notification and one of them is
-            // removed at that time the item type changes from group to normal and hence the
-            // notification should be removed from expanded notifications.
-            setExpanded(notificationGroup.getGroupKey(), false);
         }
 
-        Notification notification =
-                notificationGroup.getSingleNotification().getNotification();
-        Bundle extras = notification.extras;
-
-        String category = notification.category;
-        if (category != null) {
-            switch (category) {
-                case Notification.CATEGORY_CALL:
-                    return NotificationViewType.CALL;
-                case Notification.CATEGORY_CAR_EMERGENCY:
-                    return NotificationViewType.CAR_EMERGENCY;
-                case Notification.CATEGORY_CAR_WARNING:
-                    return NotificationViewType.CAR_WARNING;
-                case Notification.CATEGORY_CAR_INFORMATION:
-                    return mIsGroupNotificationAdapter
-                            ? NotificationViewType.CAR_INFORMATION_IN_GROUP
-                            : NotificationViewType.CAR_INFORMATION;
-                case Notification.CATEGORY_MESSAGE:
-                    return mIsGroupNotificationAdapter
-                            ? NotificationViewType.MESSAGE_IN_GROUP : NotificationViewType.MESSAGE;
-                default:
-                    break;
-            }
-        }
-
-        // progress
-        int progressMax = extras.getInt(Notification.EXTRA_PROGRESS_MAX);
-        boolean isIndeterminate = extras.getBoolean(
-                Notification.EXTRA_PROGRESS_INDETERMINATE);
-        boolean hasValidProgress = isIndeterminate || progressMax != 0;
-        boolean isProgress = extras.containsKey(Notification.EXTRA_PROGRESS)
-                && extras.containsKey(Notification.EXTRA_PROGRESS_MAX)
-                && hasValidProgress
-                && !notification.hasCompletedProgress();
-        if (isProgress) {
-            return mIsGroupNotificationAdapter
-                    ? NotificationViewType.PROGRESS_IN_GROUP : NotificationViewType.PROGRESS;
-        }
-
-        // inbox
-        boolean isInbox = extras.containsKey(Notification.EXTRA_TITLE_BIG)
-                && extras.containsKey(Notification.EXTRA_SUMMARY_TEXT);
-        if (isInbox) {
-            return mIsGroupNotificationAdapter
-                    ? NotificationViewType.INBOX_IN_GROUP : NotificationViewType.INBOX;
-        }
-
-        // group summary
-        boolean isGroupSummary = notificationGroup.getChildTitles() != null;
-        if (isGroupSummary) {
-            return NotificationViewType.GROUP_SUMMARY;
-        }
+        return mIsGroupNotificationAdapter ? getInGroupViewType(viewType) : viewType;
+    }
 
-        // the big text and big picture styles are fallen back to basic template in car
-        // i.e. setting the big text and big picture does not have an effect
-        boolean isBigText = extras.containsKey(Notification.EXTRA_BIG_TEXT);
-        if (isBigText) {
-            Log.i(TAG, "Big text style is not supported as a car notification");
-        }
-        boolean isBigPicture = extras.containsKey(Notification.EXTRA_PICTURE);
-        if (isBigPicture) {
-            Log.i(TAG, "Big picture style is not supported as a car notification");
+    /**
+     * Returns the view type of the template for a notification shown inside of a group.
+     */
+    private static int getInGroupViewType(int viewType) {
+        switch (viewType) {
+            case NotificationViewType.CAR_INFORMATION:
+                return NotificationViewType.CAR_INFORMATION_IN_GROUP;
+            case NotificationViewType.MESSAGE:
+                return NotificationViewType.MESSAGE_IN_GROUP;
+            case NotificationViewType.PROGRESS:
+                return NotificationViewType.PROGRESS_IN_GROUP;
+            case NotificationViewType.INBOX:
+                return NotificationViewType.INBOX_IN_GROUP;
+            case NotificationViewType.BASIC:
+                return NotificationViewType.BASIC_IN_GROUP;
+            default:
+                return viewType;
         }
-
-        // basic, big text, big picture
-        return mIsGroupNotificationAdapter
-                ? NotificationViewType.BASIC_IN_GROUP : NotificationViewType.BASIC;
     }
 
     @Override
     public int getItemCount() {
-        int itemCount = mNotifications.size();
+        return Math.min(mNotifications.size(), getMaxItemCount());
+    }
 
-        if (mIsGroupNotificationAdapter && itemCount > mMaxNumberGroupChildrenShown) {
+    /**
+     * Returns the maximum number of items that can be shown, or {@link Integer#MAX_VALUE} if the
+     * number of items is not limited.
+     */
+    private int getMaxItemCount() {
+        if (mIsGroupNotificationAdapter) {
             return mMaxNumberGroupChildrenShown;
         }
 
-        if (!mIsGroupNotificationAdapter && mCarUxRestrictions != null
+        if (mCarUxRestrictions != null
                 && (mCarUxRestrictions.getActiveRestrictions()
                 & CarUxRestrictions.UX_RESTRICTIONS_LIMIT_CONTENT) != 0) {
-
-            int maxItemCount = mCarUxRestrictions.getMaxCumulativeContentItems();
-
-            return Math.min(itemCount, maxItemCount);
+            return mCarUxRestrictions.getMaxCumulativeContentItems();
         }
-        return itemCount;
+        return Integer.MAX_VALUE;
     }
 
     @Override
@@ -436,6 +398,14 @@ public class CarNotificationViewAdapter extends RecyclerView.Adapter<RecyclerVie
         } else {
             mExpandedNotifications.remove(groupKey);
         }
+
+        // the view type of the group changes, so it needs to be bound again
+        int itemCount = getItemCount();
+        for (int i = 0; i < itemCount; i++) {
+            if (groupKey.equals(mNotifications.get(i).getGroupKey())) {
+                notifyItemChanged(i);
+            }
+        }
     }
 
     /**
@@ -444,6 +414,7 @@ public class CarNotificationViewAdapter extends RecyclerView.Adapter<RecyclerVie
     public void collapseAllGroups() {
         if (!mExpandedNotifications.isEmpty()) {
             mExpandedNotifications.clear();
+            notifyDataSetChanged();
         }
     }
 
@@ -471,25 +442,83 @@ public class CarNotificationViewAdapter extends RecyclerView.Adapter<RecyclerVie
     /**
      * Updates notifications and update views.
      *
+     * <p> Only the items that have been inserted, removed, moved or changed compared to the
+     * previous list are updated. For the top-level list, the difference is calculated on a
+     * background thread and the new list is applied once it is known, see
+     * {@link CarNotificationListDiffer}. A group adapter applies the new list right away, since its
+     * view holder may be recycled and bound to a different group at any time.
+     *
+     * <p> The list is kept by the adapter and must not be modified afterwards.
+     *
      * @param setRecyclerViewListHeaderAndFooter sets the header and footer on the entire list of
      * items within the recycler view. This is NOT the header/footer for the grouped notifications.
      */
     public void setNotifications(List<NotificationGroup> notifications,
             boolean setRecyclerViewListHeaderAndFooter) {
+        List<NotificationGroup> list = setRecyclerViewListHeaderAndFooter
+                ? new HeaderAndFooterList(notifications)
+                : notifications;
+        if (mIsGroupNotificationAdapter) {
+            mDiffer.submitListNow(list);
+            return;
+        }
+        // the list is diffed on a background thread, so it is wrapped rather than copied
+        mDiffer.submitList(list);
+    }
 
-        List<NotificationGroup> notificationGroupList = new ArrayList<>(notifications);
+    /**
+     * Called by {@link CarNotificationListDiffer} on the main thread when a list submitted through
+     * {@link #setNotifications} becomes the current list.
+     */
+    private void onNotificationsCommitted(List<NotificationGroup> oldNotificationGroupList,
+            List<NotificationGroup> notificationGroupList,
+            @Nullable DiffUtil.DiffResult diffResult) {
+        boolean hadNotifications = hasNotifications();
+        mNotifications = notificationGroupList;
+        pruneExpandedNotifications();
 
-        if (setRecyclerViewListHeaderAndFooter) {
-            // add header as the first item of the list.
-            notificationGroupList.add(0, createNotificationHeader());
-            // add footer as the last item of the list.
-            notificationGroupList.add(createNotificationFooter());
+        int maxItemCount = getMaxItemCount();
+        if (diffResult == null
+                || oldNotificationGroupList.size() > maxItemCount
+                || notificationGroupList.size() > maxItemCount) {
+            // positions calculated on the full lists do not match the truncated lists
+            notifyDataSetChanged();
+            return;
         }
 
-        mNotifications = notificationGroupList;
+        diffResult.dispatchUpdatesTo(this);
 
-        mHandler.removeCallbacks(mNotifyDataSetChangedRunnable);
-        mHandler.postDelayed(mNotifyDataSetChangedRunnable, NOTIFY_DATASET_CHANGED_DELAY);
+        boolean hasHeaderAndFooter =
+                !notificationGroupList.isEmpty() && notificationGroupList.get(0).isHeader();
+        if (hasHeaderAndFooter && hadNotifications != hasNotifications()) {
+            // the header and footer are bound differently when the list is empty
+            notifyItemChanged(0);
+            notifyItemChanged(notificationGroupList.size() - 1);
+        }
+    }
+
+    /**
+     * Forgets the expansion state of groups that are no longer shown as groups. For example, when
+     * there are 2 notifications left in an expanded group and one of them is removed, the item
+     * becomes a single notification and should not be expanded if it becomes a group again.
+     */
+    private void pruneExpandedNotifications() {
+        if (mExpandedNotifications.isEmpty()) {
+            return;
+        }
+
+        Set<String> groupKeys = new HashSet<>();
+        for (NotificationGroup notificationGroup : mNotifications) {
+            if (notificationGroup.getViewType() == NotificationViewType.GROUP_COLLAPSED) {
+                groupKeys.add(notificationGroup.getGroupKey());
+            }
+        }
+        mExpandedNotifications.retainAll(groupKeys);
+    }
+
+    @VisibleForTesting
+    void setDiffExecutor(Executor executor) {
+        mDiffer.setDiffExecutor(executor);
     }
 
     /**
@@ -501,14 +530,14 @@ public class CarNotificationViewAdapter extends RecyclerView.Adapter<RecyclerVie
         return getItemCount() > 2;
     }
 
-    private NotificationGroup createNotificationHeader() {
+    private static NotificationGroup createNotificationHeader() {
         NotificationGroup notificationGroupWithHeader = new NotificationGroup();
         notificationGroupWithHeader.setHeader(true);
         notificationGroupWithHeader.setGroupKey("notification_header");
         return notificationGroupWithHeader;
     }
 
-    private NotificationGroup createNotificationFooter() {
+    private static NotificationGroup createNotificationFooter() {
         NotificationGroup notificationGroupWithFooter = new NotificationGroup();
         notificationGroupWithFooter.setFooter(true);
         notificationGroupWithFooter.setGroupKey("notification_footer");
@@ -595,4 +624,33 @@ public class CarNotificationViewAdapter extends RecyclerView.Adapter<RecyclerVie
             }
         }
     }
+
+    /**
+     * Read-only view of a list of notifications with the header prepended and the footer
+     * appended, so that adding them does not copy the list.
+     */
+    private static class HeaderAndFooterList extends AbstractList<NotificationGroup>
+            implements RandomAccess {
+        private final List<NotificationGroup> mNotifications;
+
+        HeaderAndFooterList(List<NotificationGroup> notifications) {
+            mNotifications = notifications;
+        }
+
+        @Override
+        public NotificationGroup get(int index) {
+            if (index == 0) {
+                return NOTIFICATION_HEADER;
+            }
+            if (index == mNotifications.size() + 1) {
+                return NOTIFICATION_FOOTER;
+            }
+            return mNotifications.get(index - 1);
+        }
+
+        @Override
+        public int size() {
+            return mNotifications.size() + 2;
+        }
+    }
 }
@@ -0,0 +1,162 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.car.notification;
+
+import android.annotation.Nullable;
+import android.graphics.Bitmap;
+import android.os.Parcel;
+import android.text.Spanned;
+import android.text.TextUtils;
+
+/**
+ * Streaming 64-bit hash of content, built on the mixing functions of MurmurHash3.
+ *
+ * <p> The hash is meant to tell apart content that is not crafted to collide, such as the fields
+ * of two versions of a notification, with a collision probability low enough for equal hashes
+ * to be taken as equal content. It is not a cryptographic hash.
+ */
+public final class ContentHasher {
+
+    private static final long SEED = 0x9e3779b97f4a7c15L;
+    private static final long C1 = 0x87c37b91114253d5L;
+    private static final long C2 = 0x4cf5ad432745937fL;
+
+    private long mHash = SEED;
+    private long mLength;
+
+    /**
+     * Adds a boolean to the hash.
+     */
+    public ContentHasher putBoolean(boolean value) {
+        return putLong(value ? 1 : 0);
+    }
+
+    /**
+     * Adds an int to the hash.
+     */
+    public ContentHasher putInt(int value) {
+        return putLong(value);
+    }
+
+    /**
+     * Adds a long to the hash.
+     */
+    public ContentHasher putLong(long value) {
+        long k = value * C1;
+        k = Long.rotateLeft(k, 31);
+        k *= C2;
+        mHash ^= k;
+        mHash = Long.rotateLeft(mHash, 27) * 5 + 0x52dce729;
+        mLength++;
+        return this;
+    }
+
+    /**
+     * Adds a range of bytes and its length to the hash.
+     */
+    public ContentHasher putBytes(byte[] bytes, int offset, int length) {
+        putInt(length);
+        int end = offset + length;
+        int i = offset;
+        for (; i + Long.BYTES <= end; i += Long.BYTES) {
+            long value = 0;
+            for (int j = 0; j < Long.BYTES; j++) {
+                value |= (bytes[i + j] & 0xffL) << (j * Byte.SIZE);
+            }
+            putLong(value);
+        }
+        long value = 0;
+        for (int j = 0; i < end; i++, j++) {
+            value |= (bytes[i] & 0xffL) << (j * Byte.SIZE);
+        }
+        return putLong(value);
+    }
+
+    /**
+     * Adds a string to the hash, including the spans of {@link Spanned} text.
+     */
+    public ContentHasher putString(@Nullable CharSequence text) {
+        if (text == null) {
+            return putInt(-1);
+        }
+        int length = text.length();
+        putInt(length);
+        for (int i = 0; i < length; i += 4) {
+            long value = 0;
+            for (int j = 0; j < 4 && i + j < length; j++) {
+                value |= (long) text.charAt(i + j) << (j * Character.SIZE);
+            }
+            putLong(value);
+        }
+        if (text instanceof Spanned) {
+            // spans are hashed in the form they are sent over binder, which carries their styles
+            Parcel parcel = Parcel.obtain();
+            try {
+                TextUtils.writeToParcel(text, parcel, /* parcelableFlags= */ 0);
+                byte[] bytes = parcel.marshall();
+                putBytes(bytes, /* offset= */ 0, bytes.length);
+            } finally {
+                parcel.recycle();
+            }
+        }
+        return this;
+    }
+
+    /**
+     * Adds the size, config and pixels of a bitmap to the hash.
+     */
+    public ContentHasher putBitmap(@Nullable Bitmap bitmap) {
+        if (bitmap == null || bitmap.isRecycled()) {
+            return putInt(-1);
+        }
+        int width = bitmap.getWidth();
+        int height = bitmap.getHeight();
+        putInt(width).putInt(height).putInt(bitmap.getConfig().ordinal());
+
+        Bitmap readableBitmap = bitmap.getConfig() == Bitmap.Config.HARDWARE
+                ? bitmap.copy(Bitmap.Config.ARGB_8888, /* isMutable= */ false)
+                : bitmap;
+        int[] row = new int[width];
+        for (int y = 0; y < height; y++) {
+            readableBitmap.getPixels(row, /* offset= */ 0, width, /* x= */ 0, y, width,
+                    /* height= */ 1);
+            for (int x = 0; x < width; x += 2) {
+                long value = row[x] & 0xffffffffL;
+                if (x + 1 < width) {
+                    value |= (long) row[x + 1] << Integer.SIZE;
+                }
+                putLong(value);
+            }
+        }
+        if (readableBitmap != bitmap) {
+            readableBitmap.recycle();
+        }
+        return this;
+    }
+
+    /**
+     * Returns the hash of everything added so far.
+     */
+    public long hash() {
+        long h = mHash ^ mLength;
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
@@ -0,0 +1,99 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.car.notification;
+
+import android.annotation.Nullable;
+import android.service.notification.NotificationListenerService.Ranking;
+import android.service.notification.NotificationListenerService.RankingMap;
+import android.util.LruCache;
+
+/**
+ * The ranks that notification groups are sorted by when notifications are inserted into the
+ * processed list, cached so that the position of a group does not change every time a later
+ * ranking map is delivered with a posted notification.
+ *
+ * <p> Ranks are read from the ranking map of the current processing session first, and from the
+ * latest ranking map if the session's map does not know the notification yet. The cache is reset
+ * when the session's ranking map is replaced, and the number of cached ranks is bounded, so ranks
+ * of groups that are no longer shown do not accumulate.
+ *
+ * <p> This class is not thread safe and is used from the main thread.
+ */
+class GroupRankCache {
+    private final LruCache<String, Integer> mRanks;
+    private final Ranking mTemporaryRanking = new Ranking();
+    @Nullable
+    private RankingMap mRankingMap;
+
+    GroupRankCache(int maxSize) {
+        mRanks = new LruCache<>(maxSize);
+    }
+
+    /**
+     * Returns the rank of the group's representative notification, caching it by the group key.
+     *
+     * @param group the notification group.
+     * @param rankingMap the ranking map of the current processing session. If it is not the map
+     * that the cached ranks were read from, the cache is reset first.
+     * @param newRankingMap the latest ranking map, used for notifications that the session's
+     * ranking map does not know.
+     */
+    int getRank(NotificationGroup group, RankingMap rankingMap,
+            @Nullable RankingMap newRankingMap) {
+        if (rankingMap != mRankingMap) {
+            mRanks.evictAll();
+            mRankingMap = rankingMap;
+        }
+
+        String groupKey = group.getGroupKey();
+        Integer cachedRank = groupKey == null ? null : mRanks.get(groupKey);
+        if (cachedRank != null) {
+            return cachedRank;
+        }
+
+        String key = group.getNotificationForSorting().getKey();
+        int rank = 0;
+        if (rankingMap.getRanking(key, mTemporaryRanking)
+                || (newRankingMap != null && newRankingMap.getRanking(key, mTemporaryRanking))) {
+            rank = mTemporaryRanking.getRank();
+        }
+        if (groupKey != null) {
+            mRanks.put(groupKey, rank);
+        }
+        return rank;
+    }
+
+    /**
+     * Drops the cached rank of a group that is no longer shown.
+     */
+    void remove(@Nullable String groupKey) {
+        if (groupKey != null) {
+            mRanks.remove(groupKey);
+        }
+    }
+
+    /**
+     * Drops all cached ranks, for example when a new processing session starts.
+     */
+    void clear() {
+        mRanks.evictAll();
+        mRankingMap = null;
+    }
+
+    int size() {
+        return mRanks.size();
+    }
+}
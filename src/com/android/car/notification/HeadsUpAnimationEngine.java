@@ -0,0 +1,134 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.car.notification;
+
+import android.animation.Animator;
+import android.animation.AnimatorSet;
+import android.animation.ObjectAnimator;
+import android.annotation.Nullable;
+import android.content.Context;
+import android.view.View;
+import android.view.animation.AnimationUtils;
+import android.view.animation.Interpolator;
+
+/**
+ * Runs the enter and exit animations of heads-up notification cards.
+ *
+ * <p> The interpolators are loaded once. Each card keeps its own animators, stored as a tag of the
+ * card's view, which are reused for every enter and exit animation of the card while it is pooled
+ * by {@link HeadsUpViewPool}. The animators use the {@link View#Y} and {@link View#ALPHA}
+ * properties instead of looking up the properties by name.
+ *
+ * <p> A card runs at most one animation at a time: starting an animation cancels the running
+ * one, which still notifies its listener.
+ *
+ * <p> This class must be used from the main thread.
+ */
+class HeadsUpAnimationEngine {
+    private final long mEnterDuration;
+    private final long mAlphaEnterDuration;
+    private final long mExitDuration;
+    private final Interpolator mEnterYInterpolator;
+    private final Interpolator mEnterAlphaInterpolator;
+    private final Interpolator mExitYInterpolator;
+    private final Interpolator mExitAlphaInterpolator;
+
+    HeadsUpAnimationEngine(Context context, long enterDuration, long alphaEnterDuration,
+            long exitDuration) {
+        mEnterDuration = enterDuration;
+        mAlphaEnterDuration = alphaEnterDuration;
+        mExitDuration = exitDuration;
+        mEnterYInterpolator = AnimationUtils.loadInterpolator(context,
+                R.interpolator.heads_up_entry_direction_interpolator);
+        mEnterAlphaInterpolator = AnimationUtils.loadInterpolator(context,
+                R.interpolator.heads_up_entry_alpha_interpolator);
+        mExitYInterpolator = AnimationUtils.loadInterpolator(context,
+                R.interpolator.heads_up_exit_direction_interpolator);
+        mExitAlphaInterpolator = AnimationUtils.loadInterpolator(context,
+                R.interpolator.heads_up_exit_alpha_interpolator);
+    }
+
+    /**
+     * Slides the laid out card in from above the top of its parent while fading it in.
+     */
+    void animateIn(View view, @Nullable Animator.AnimatorListener listener) {
+        float height = view.getHeight();
+        view.setY(-height);
+        view.setAlpha(0f);
+
+        CardAnimators animators = prepare(view, listener);
+        animators.mY.setFloatValues(-height, 0f);
+        animators.mY.setDuration(mEnterDuration);
+        animators.mY.setInterpolator(mEnterYInterpolator);
+        animators.mAlpha.setFloatValues(0f, 1f);
+        animators.mAlpha.setDuration(mAlphaEnterDuration);
+        animators.mAlpha.setInterpolator(mEnterAlphaInterpolator);
+        animators.mSet.start();
+    }
+
+    /**
+     * Slides the card out above the top of its parent.
+     */
+    void animateOut(View view, @Nullable Animator.AnimatorListener listener) {
+        CardAnimators animators = prepare(view, listener);
+        animators.mY.setFloatValues(view.getY(), -view.getHeight());
+        animators.mY.setDuration(mExitDuration);
+        animators.mY.setInterpolator(mExitYInterpolator);
+        animators.mAlpha.setFloatValues(view.getAlpha(), 1f);
+        animators.mAlpha.setDuration(mExitDuration);
+        animators.mAlpha.setInterpolator(mExitAlphaInterpolator);
+        animators.mSet.start();
+    }
+
+    /**
+     * Cancels the running animation of the card, if any.
+     */
+    void cancel(View view) {
+        Object tag = view.getTag(R.id.headsup_card_animators);
+        if (tag instanceof CardAnimators) {
+            ((CardAnimators) tag).mSet.cancel();
+        }
+    }
+
+    private CardAnimators prepare(View view, @Nullable Animator.AnimatorListener listener) {
+        Object tag = view.getTag(R.id.headsup_card_animators);
+        CardAnimators animators;
+        if (tag instanceof CardAnimators) {
+            animators = (CardAnimators) tag;
+            animators.mSet.cancel();
+            animators.mSet.removeAllListeners();
+        } else {
+            animators = new CardAnimators(view);
+            view.setTag(R.id.headsup_card_animators, animators);
+        }
+        if (listener != null) {
+            animators.mSet.addListener(listener);
+        }
+        return animators;
+    }
+
+    private static class CardAnimators {
+        final ObjectAnimator mY;
+        final ObjectAnimator mAlpha;
+        final AnimatorSet mSet = new AnimatorSet();
+
+        CardAnimators(View view) {
+            mY = ObjectAnimator.ofFloat(view, View.Y, 0f);
+            mAlpha = ObjectAnimator.ofFloat(view, View.ALPHA, 1f);
+            mSet.playTogether(mY, mAlpha);
+        }
+    }
+}
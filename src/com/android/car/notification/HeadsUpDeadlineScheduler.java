@@ -0,0 +1,184 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.car.notification;
+
+import android.os.Handler;
+import android.os.SystemClock;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Dismiss deadlines of all heads-up notifications, driven by a single {@link Handler}.
+ *
+ * <p> Each {@link HeadsUpEntry} has at most one deadline, which covers the auto-dismiss timeout,
+ * the minimum display time of a removed notification and the restart of the timeout when a
+ * notification alerts again. The deadlines are kept in a min-heap indexed by the entries, so that
+ * scheduling, rescheduling and cancelling a deadline take O(log n), and only one message, for the
+ * earliest deadline, is queued on the handler at any time.
+ *
+ * <p> This class is not thread safe and must be used from the thread of the handler.
+ */
+class HeadsUpDeadlineScheduler {
+    private static final long NOT_POSTED = Long.MAX_VALUE;
+
+    private final Handler mHandler;
+    private final Callback mCallback;
+    private final List<HeadsUpEntry> mHeap = new ArrayList<>();
+    private final Runnable mFireDeadlines = this::fireDeadlines;
+    // Uptime at which mFireDeadlines is posted to run.
+    private long mPostedTime = NOT_POSTED;
+
+    HeadsUpDeadlineScheduler(Handler handler, Callback callback) {
+        mHandler = handler;
+        mCallback = callback;
+    }
+
+    /**
+     * Schedules the deadline of the entry after the given delay, replacing its current deadline.
+     */
+    void schedule(HeadsUpEntry entry, long delayMillis) {
+        entry.setDeadline(SystemClock.uptimeMillis() + delayMillis);
+        int index = entry.getDeadlineIndex();
+        if (index < 0) {
+            entry.setDeadlineIndex(mHeap.size());
+            mHeap.add(entry);
+            siftUp(entry.getDeadlineIndex());
+        } else if (siftUp(index) == index) {
+            siftDown(index);
+        }
+        postEarliestDeadline();
+    }
+
+    /**
+     * Cancels the deadline of the entry, if any.
+     */
+    void cancel(HeadsUpEntry entry) {
+        int index = entry.getDeadlineIndex();
+        if (index < 0) {
+            return;
+        }
+        removeAt(index);
+        if (mHeap.isEmpty()) {
+            mHandler.removeCallbacks(mFireDeadlines);
+            mPostedTime = NOT_POSTED;
+        }
+    }
+
+    boolean isScheduled(HeadsUpEntry entry) {
+        return entry.getDeadlineIndex() >= 0;
+    }
+
+    int size() {
+        return mHeap.size();
+    }
+
+    private void fireDeadlines() {
+        mPostedTime = NOT_POSTED;
+        long now = SystemClock.uptimeMillis();
+        while (!mHeap.isEmpty() && mHeap.get(0).getDeadline() <= now) {
+            HeadsUpEntry entry = mHeap.get(0);
+            removeAt(0);
+            mCallback.onDeadline(entry);
+        }
+        postEarliestDeadline();
+    }
+
+    /**
+     * Makes sure that the handler runs no later than the earliest deadline. A deadline that moved
+     * later keeps the message that was posted for it, which then only posts the next one.
+     */
+    private void postEarliestDeadline() {
+        if (mHeap.isEmpty()) {
+            return;
+        }
+        long earliest = mHeap.get(0).getDeadline();
+        if (earliest >= mPostedTime) {
+            return;
+        }
+        mHandler.removeCallbacks(mFireDeadlines);
+        mHandler.postAtTime(mFireDeadlines, earliest);
+        mPostedTime = earliest;
+    }
+
+    private void removeAt(int index) {
+        HeadsUpEntry removed = mHeap.get(index);
+        HeadsUpEntry last = mHeap.remove(mHeap.size() - 1);
+        removed.setDeadlineIndex(-1);
+        if (last == removed) {
+            return;
+        }
+        mHeap.set(index, last);
+        last.setDeadlineIndex(index);
+        if (siftUp(index) == index) {
+            siftDown(index);
+        }
+    }
+
+    /**
+     * Moves the entry at the index towards the root while it is earlier than its parent.
+     *
+     * @return the new index of the entry.
+     */
+    private int siftUp(int index) {
+        HeadsUpEntry entry = mHeap.get(index);
+        while (index > 0) {
+            int parentIndex = (index - 1) / 2;
+            HeadsUpEntry parent = mHeap.get(parentIndex);
+            if (parent.getDeadline() <= entry.getDeadline()) {
+                break;
+            }
+            place(parent, index);
+            index = parentIndex;
+        }
+        place(entry, index);
+        return index;
+    }
+
+    private void siftDown(int index) {
+        HeadsUpEntry entry = mHeap.get(index);
+        int size = mHeap.size();
+        while (true) {
+            int childIndex = 2 * index + 1;
+            if (childIndex >= size) {
+                break;
+            }
+            if (childIndex + 1 < size && mHeap.get(childIndex + 1).getDeadline()
+                    < mHeap.get(childIndex).getDeadline()) {
+                childIndex++;
+            }
+            HeadsUpEntry child = mHeap.get(childIndex);
+            if (entry.getDeadline() <= child.getDeadline()) {
+                break;
+            }
+            place(child, index);
+            index = childIndex;
+        }
+        place(entry, index);
+    }
+
+    private void place(HeadsUpEntry entry, int index) {
+        mHeap.set(index, entry);
+        entry.setDeadlineIndex(index);
+    }
+
+    /**
+     * Called on the thread of the handler when the deadline of an entry has passed.
+     */
+    interface Callback {
+        void onDeadline(HeadsUpEntry entry);
+    }
+}
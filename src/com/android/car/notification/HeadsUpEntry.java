@@ -18,33 +18,41 @@ package com.android.car.notification;
 
 import android.content.Context;
 import android.os.Handler;
+import android.os.Looper;
 import android.service.notification.StatusBarNotification;
 import android.view.View;
 import android.view.ViewGroup;
+import android.view.ViewTreeObserver;
 import android.widget.FrameLayout;
 
 import com.android.car.notification.template.CarNotificationBaseViewHolder;
 
 /**
  * Class to store the state for Heads Up Notifications. Each notification will have its own post
- * time, handler, and Layout. This class ensures to store it as a separate state so that each Heads
- * up notification can be controlled independently.
+ * time, dismiss deadline, and Layout. This class ensures to store it as a separate state so that
+ * each Heads up notification can be controlled independently.
  */
 public class HeadsUpEntry {
+    private static Handler sMainThreadHandler;
 
     private final StatusBarNotification mStatusBarNotification;
     private long mPostTime;
-    private final Handler mHandler;
+    // Only accessed by HeadsUpDeadlineScheduler.
+    private long mDeadline;
+    private int mDeadlineIndex = -1;
     protected boolean isAlertAgain;
     protected boolean isNewHeadsUp;
+    protected boolean isAnimatingOut;
     private View mNotificationView;
+    @NotificationViewType
+    private int mViewType;
+    private ViewTreeObserver.OnComputeInternalInsetsListener mInsetsListener;
     private NotificationClickHandlerFactory mClickHandlerFactory;
     private CarNotificationBaseViewHolder mCarNotificationBaseViewHolder;
 
     HeadsUpEntry(StatusBarNotification statusBarNotification) {
         mStatusBarNotification = statusBarNotification;
         mPostTime = calculatePostTime();
-        mHandler = new Handler();
     }
 
     /**
@@ -68,14 +76,45 @@ public class HeadsUpEntry {
     }
 
     /**
-     * Handler will used the method {@link Handler#postDelayed(Runnable, long)} which will control
-     * he dismiss time for the Heads Up notification. All the notifications should have their own
-     * handler o control this time.
+     * Returns the handler of the main thread, which is shared by all heads-up notifications.
+     *
+     * <p> Callbacks posted to this handler must be removed individually, never with
+     * {@link Handler#removeCallbacksAndMessages} and a {@code null} token.
+     *
+     * @deprecated the dismiss time of heads-up notifications is controlled by
+     * {@link HeadsUpDeadlineScheduler}, which does not need a handler per entry.
      */
+    @Deprecated
     protected Handler getHandler() {
-        return mHandler;
+        if (sMainThreadHandler == null) {
+            sMainThreadHandler = new Handler(Looper.getMainLooper());
+        }
+        return sMainThreadHandler;
     }
 
+    /**
+     * Uptime of the dismiss deadline, which is only valid while the entry is scheduled by
+     * {@link HeadsUpDeadlineScheduler}.
+     */
+    long getDeadline() {
+        return mDeadline;
+    }
+
+    void setDeadline(long deadline) {
+        mDeadline = deadline;
+    }
+
+    /**
+     * Position of the entry in the heap of {@link HeadsUpDeadlineScheduler}, or -1 if the entry
+     * has no deadline. Must only be changed by the scheduler.
+     */
+    int getDeadlineIndex() {
+        return mDeadlineIndex;
+    }
+
+    void setDeadlineIndex(int deadlineIndex) {
+        mDeadlineIndex = deadlineIndex;
+    }
 
     protected long getPostTime() {
         return mPostTime;
@@ -108,4 +147,29 @@ public class HeadsUpEntry {
     protected CarNotificationBaseViewHolder getViewHolder() {
         return mCarNotificationBaseViewHolder;
     }
+
+    /**
+     * The type of the template that the notification view was created for.
+     */
+    protected void setViewType(@NotificationViewType int viewType) {
+        mViewType = viewType;
+    }
+
+    @NotificationViewType
+    protected int getViewType() {
+        return mViewType;
+    }
+
+    /**
+     * Listener that makes the area of the notification view touchable, which has to be removed
+     * before the view is reused.
+     */
+    protected void setInsetsListener(
+            ViewTreeObserver.OnComputeInternalInsetsListener insetsListener) {
+        mInsetsListener = insetsListener;
+    }
+
+    protected ViewTreeObserver.OnComputeInternalInsetsListener getInsetsListener() {
+        return mInsetsListener;
+    }
 }
@@ -0,0 +1,302 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.car.notification;
+
+import android.os.SystemClock;
+import android.os.Trace;
+import android.util.SparseArray;
+
+import com.android.internal.annotations.GuardedBy;
+import com.android.internal.annotations.VisibleForTesting;
+
+import java.io.PrintWriter;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Measures how long it takes for a posted notification to be shown as a heads-up notification.
+ *
+ * <p> Each heads-up notification is traced from its ingestion by the listener through the stages
+ * that are needed to show it. When it is completely shown, the time from the ingestion to each
+ * stage is added to histograms that are kept per template type. The histograms can be queried
+ * with {@link #getHistogram} and are printed by {@code dumpsys}. While a notification is traced,
+ * an async section named {@value #TRACE_SECTION_NAME} is also emitted to systrace.
+ *
+ * <p> Notifications that are not shown as heads-up notifications, or whose heads-up notification
+ * is replaced before it is shown, are not counted.
+ *
+ * <p> This class is thread safe.
+ */
+public class HeadsUpLatencyTracker {
+    private static final String TRACE_SECTION_NAME = "HeadsUpLatency";
+
+    /** The listener started ingesting the notification of the current user. */
+    public static final int STAGE_INGEST = 0;
+    /** The notification was decided to be shown as a heads-up notification. */
+    public static final int STAGE_DECIDE = 1;
+    /** The card of the heads-up notification was inflated or taken from the pool. */
+    public static final int STAGE_INFLATE = 2;
+    /** The notification was bound to the card. */
+    public static final int STAGE_BIND = 3;
+    /** The card was laid out. */
+    public static final int STAGE_LAYOUT = 4;
+    /** The enter animation of the card started. */
+    public static final int STAGE_ANIMATION_START = 5;
+    /** The enter animation of the card ended. */
+    public static final int STAGE_ANIMATION_END = 6;
+    private static final int STAGE_COUNT = 7;
+    private static final String[] STAGE_NAMES = {
+            "ingest", "decide", "inflate", "bind", "layout", "animation start", "animation end"
+    };
+
+    // Upper bounds of the histogram buckets in milliseconds. The last bucket has no upper bound.
+    private static final long[] BUCKET_UPPER_BOUNDS_MS = {
+            1, 2, 4, 8, 16, 32, 64, 128, 256, 512, 1024
+    };
+    // Heads-up notifications that are never shown must not be kept forever.
+    private static final int MAX_TRACES_IN_FLIGHT = 32;
+    private static final long NOT_REACHED = -1;
+
+    private final LongSupplier mClock;
+    private final Object mLock = new Object();
+    @GuardedBy("mLock")
+    private final Map<String, HeadsUpTrace> mTracesInFlight =
+            new LinkedHashMap<String, HeadsUpTrace>() {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, HeadsUpTrace> eldest) {
+                    if (size() <= MAX_TRACES_IN_FLIGHT) {
+                        return false;
+                    }
+                    endTraceSection(eldest.getKey());
+                    return true;
+                }
+            };
+    // Histograms of the time from the ingestion to each stage, per template type.
+    @GuardedBy("mLock")
+    private final SparseArray<Histogram[]> mHistograms = new SparseArray<>();
+
+    HeadsUpLatencyTracker() {
+        this(SystemClock::elapsedRealtimeNanos);
+    }
+
+    @VisibleForTesting
+    HeadsUpLatencyTracker(LongSupplier clock) {
+        mClock = clock;
+    }
+
+    /**
+     * Starts tracing the notification with the given key, replacing an earlier trace of it.
+     */
+    void onPosted(String key) {
+        long now = mClock.getAsLong();
+        synchronized (mLock) {
+            if (mTracesInFlight.remove(key) != null) {
+                endTraceSection(key);
+            }
+            mTracesInFlight.put(key, new HeadsUpTrace(now));
+            // begun under the lock, so that the section cannot be ended before it is begun
+            Trace.beginAsyncSection(TRACE_SECTION_NAME, key.hashCode());
+        }
+    }
+
+    /**
+     * Records that the heads-up notification of the given key reached a stage, if it is traced.
+     */
+    void onStage(String key, int stage) {
+        long now = mClock.getAsLong();
+        synchronized (mLock) {
+            HeadsUpTrace trace = mTracesInFlight.get(key);
+            if (trace != null) {
+                trace.mTimestamps[stage] = now;
+            }
+        }
+    }
+
+    /**
+     * Records the template type that the heads-up notification of the given key is shown with.
+     */
+    void onViewTypeChosen(String key, @NotificationViewType int viewType) {
+        synchronized (mLock) {
+            HeadsUpTrace trace = mTracesInFlight.get(key);
+            if (trace != null) {
+                trace.mViewType = viewType;
+            }
+        }
+    }
+
+    /**
+     * Finishes tracing the heads-up notification of the given key and adds its latencies to the
+     * histograms of its template type.
+     */
+    void onShown(String key) {
+        synchronized (mLock) {
+            HeadsUpTrace trace = mTracesInFlight.remove(key);
+            if (trace == null) {
+                return;
+            }
+            endTraceSection(key);
+            Histogram[] histograms = mHistograms.get(trace.mViewType);
+            if (histograms == null) {
+                histograms = new Histogram[STAGE_COUNT];
+                for (int stage = 0; stage < STAGE_COUNT; stage++) {
+                    histograms[stage] = new Histogram();
+                }
+                mHistograms.put(trace.mViewType, histograms);
+            }
+            long ingestTime = trace.mTimestamps[STAGE_INGEST];
+            for (int stage = STAGE_INGEST + 1; stage < STAGE_COUNT; stage++) {
+                if (trace.mTimestamps[stage] != NOT_REACHED) {
+                    histograms[stage].add(trace.mTimestamps[stage] - ingestTime);
+                }
+            }
+        }
+    }
+
+    /**
+     * Stops tracing the notification with the given key without counting it, for example because
+     * it is not shown as a heads-up notification.
+     */
+    void onCancelled(String key) {
+        synchronized (mLock) {
+            if (mTracesInFlight.remove(key) != null) {
+                endTraceSection(key);
+            }
+        }
+    }
+
+    /**
+     * Returns a copy of the histogram of the time from the ingestion to the given stage,
+     * for heads-up notifications shown with the given template type.
+     */
+    public Histogram getHistogram(int viewType, int stage) {
+        synchronized (mLock) {
+            Histogram[] histograms = mHistograms.get(viewType);
+            return histograms == null ? new Histogram() : new Histogram(histograms[stage]);
+        }
+    }
+
+    /**
+     * Drops all recorded latencies.
+     */
+    public void reset() {
+        synchronized (mLock) {
+            mHistograms.clear();
+        }
+    }
+
+    void dump(PrintWriter pw) {
+        synchronized (mLock) {
+            pw.println("HeadsUpLatencyTracker:");
+            pw.println("  traces in flight: " + mTracesInFlight.size());
+            for (int i = 0; i < mHistograms.size(); i++) {
+                pw.println("  viewType " + mHistograms.keyAt(i) + ":");
+                Histogram[] histograms = mHistograms.valueAt(i);
+                for (int stage = STAGE_INGEST + 1; stage < STAGE_COUNT; stage++) {
+                    Histogram histogram = histograms[stage];
+                    if (histogram.getCount() == 0) {
+                        continue;
+                    }
+                    pw.println(String.format("    %s: count=%d mean=%.1fms p50<=%s p90<=%s"
+                                    + " p99<=%s", STAGE_NAMES[stage], histogram.getCount(),
+                            histogram.getMeanMillis(), formatBound(histogram.getPercentile(50)),
+                            formatBound(histogram.getPercentile(90)),
+                            formatBound(histogram.getPercentile(99))));
+                }
+            }
+        }
+    }
+
+    private static String formatBound(long boundMillis) {
+        return boundMillis == Long.MAX_VALUE ? "inf" : boundMillis + "ms";
+    }
+
+    private static void endTraceSection(String key) {
+        Trace.endAsyncSection(TRACE_SECTION_NAME, key.hashCode());
+    }
+
+    private static class HeadsUpTrace {
+        final long[] mTimestamps = new long[STAGE_COUNT];
+        @NotificationViewType
+        int mViewType;
+
+        HeadsUpTrace(long ingestTime) {
+            Arrays.fill(mTimestamps, NOT_REACHED);
+            mTimestamps[STAGE_INGEST] = ingestTime;
+        }
+    }
+
+    /**
+     * Histogram of latencies with exponentially growing buckets, from 1ms up to about 1s.
+     */
+    public static class Histogram {
+        private final long[] mBucketCounts;
+        private long mCount;
+        private long mTotalNanos;
+
+        Histogram() {
+            mBucketCounts = new long[BUCKET_UPPER_BOUNDS_MS.length + 1];
+        }
+
+        Histogram(Histogram other) {
+            mBucketCounts = other.mBucketCounts.clone();
+            mCount = other.mCount;
+            mTotalNanos = other.mTotalNanos;
+        }
+
+        void add(long latencyNanos) {
+            long latencyMillis = TimeUnit.NANOSECONDS.toMillis(latencyNanos);
+            int bucket = 0;
+            while (bucket < BUCKET_UPPER_BOUNDS_MS.length
+                    && latencyMillis >= BUCKET_UPPER_BOUNDS_MS[bucket]) {
+                bucket++;
+            }
+            mBucketCounts[bucket]++;
+            mCount++;
+            mTotalNanos += latencyNanos;
+        }
+
+        public long getCount() {
+            return mCount;
+        }
+
+        public double getMeanMillis() {
+            if (mCount == 0) {
+                return 0;
+            }
+            return mTotalNanos / (double) mCount / TimeUnit.MILLISECONDS.toNanos(1);
+        }
+
+        /**
+         * Returns the upper bound in milliseconds of the bucket that contains the given
+         * percentile, or {@link Long#MAX_VALUE} if it is in the last bucket, which has no upper
+         * bound.
+         */
+        public long getPercentile(int percentile) {
+            long rank = (long) Math.ceil(mCount * percentile / 100.0);
+            long seen = 0;
+            for (int bucket = 0; bucket < BUCKET_UPPER_BOUNDS_MS.length; bucket++) {
+                seen += mBucketCounts[bucket];
+                if (seen >= rank) {
+                    return BUCKET_UPPER_BOUNDS_MS[bucket];
+                }
+            }
+            return Long.MAX_VALUE;
+        }
+    }
+}
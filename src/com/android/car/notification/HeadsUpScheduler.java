@@ -0,0 +1,268 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.car.notification;
+
+import android.annotation.Nullable;
+import android.app.Notification;
+import android.service.notification.NotificationListenerService;
+import android.service.notification.StatusBarNotification;
+
+import com.android.internal.annotations.VisibleForTesting;
+
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * Decides which heads-up notifications are on screen when more of them are posted than can be
+ * shown at once.
+ *
+ * <p> At most a configured number of heads-up notifications are shown at the same time. Further
+ * heads-up notifications wait in a bounded queue ordered by {@link #PRIORITY_ORDER}: by category
+ * (emergency, call, navigation, message, other), then by importance, then by post time. When the
+ * queue is full the lowest ranked request is dropped, and requests that waited longer than a
+ * heads-up notification is shown for are dropped when their turn comes.
+ *
+ * <p> When a request outranks a shown heads-up notification that it waits for, that heads-up
+ * notification is returned by {@link #getPreempted} so that it can be hidden early.
+ *
+ * <p> This class is not thread safe and is used from the main thread.
+ */
+class HeadsUpScheduler {
+    /**
+     * Orders requests from the most to the least important.
+     */
+    @VisibleForTesting
+    static final Comparator<Request> PRIORITY_ORDER = (a, b) -> {
+        if (a.mCategoryRank != b.mCategoryRank) {
+            return Integer.compare(b.mCategoryRank, a.mCategoryRank);
+        }
+        if (a.mImportance != b.mImportance) {
+            return Integer.compare(b.mImportance, a.mImportance);
+        }
+        return Long.compare(a.mPostTime, b.mPostTime);
+    };
+
+    private final int mMaxShown;
+    private final int mMaxQueued;
+    private final long mMaxWaitMillis;
+    private final PriorityQueue<Request> mQueue;
+    // The requests that are shown, by notification key.
+    private final Map<String, Request> mShown = new HashMap<>();
+
+    /**
+     * @param maxShown the maximum number of heads-up notifications on screen at the same time.
+     * @param maxQueued the maximum number of heads-up notifications waiting to be shown.
+     * @param maxWaitMillis how long a heads-up notification may wait before it is dropped.
+     */
+    HeadsUpScheduler(int maxShown, int maxQueued, long maxWaitMillis) {
+        mMaxShown = Math.max(1, maxShown);
+        mMaxQueued = Math.max(0, maxQueued);
+        mMaxWaitMillis = maxWaitMillis;
+        mQueue = new PriorityQueue<>(Math.max(1, mMaxQueued), PRIORITY_ORDER);
+    }
+
+    /**
+     * Marks the request as shown if there is room on screen for it. An update of a shown
+     * heads-up notification is shown right away, unless that heads-up notification is leaving;
+     * the update then has to be queued until it has left.
+     *
+     * @return true if the heads-up notification of the request may be shown now.
+     */
+    boolean tryShow(Request request) {
+        Request shown = mShown.get(request.getKey());
+        if (shown != null ? shown.mIsLeaving : mShown.size() >= mMaxShown) {
+            return false;
+        }
+        removeQueued(request.getKey());
+        mShown.put(request.getKey(), request);
+        return true;
+    }
+
+    /**
+     * Queues a request that could not be shown, replacing an earlier request of the same
+     * notification.
+     *
+     * @return the request that was dropped to keep the queue bounded, which may be the given one,
+     * or {@code null} if none was.
+     */
+    @Nullable
+    Request enqueue(Request request) {
+        removeQueued(request.getKey());
+        mQueue.add(request);
+        if (mQueue.size() <= mMaxQueued) {
+            return null;
+        }
+        Request lowest = null;
+        for (Request queued : mQueue) {
+            if (lowest == null || PRIORITY_ORDER.compare(queued, lowest) > 0) {
+                lowest = queued;
+            }
+        }
+        mQueue.remove(lowest);
+        return lowest;
+    }
+
+    /**
+     * Returns the lowest ranked shown request that the given queued request outranks, marking it
+     * as leaving so that it is not returned again, or {@code null} if the request must wait.
+     */
+    @Nullable
+    Request getPreempted(Request request) {
+        Request lowest = null;
+        for (Request shown : mShown.values()) {
+            if (shown.mIsLeaving) {
+                continue;
+            }
+            if (lowest == null || PRIORITY_ORDER.compare(shown, lowest) > 0) {
+                lowest = shown;
+            }
+        }
+        if (lowest == null || PRIORITY_ORDER.compare(request, lowest) >= 0) {
+            return null;
+        }
+        lowest.mIsLeaving = true;
+        return lowest;
+    }
+
+    /**
+     * Frees the room of a heads-up notification that is no longer shown.
+     */
+    void onHidden(String key) {
+        mShown.remove(key);
+    }
+
+    /**
+     * Drops the queued request of a notification, for example because it was removed.
+     *
+     * @return the dropped request, or {@code null} if the notification was not queued.
+     */
+    @Nullable
+    Request removeQueued(String key) {
+        Iterator<Request> iterator = mQueue.iterator();
+        while (iterator.hasNext()) {
+            Request queued = iterator.next();
+            if (queued.getKey().equals(key)) {
+                iterator.remove();
+                return queued;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Takes the highest ranked queued request and marks it as shown if there is room on screen
+     * for it. Requests that waited for too long are dropped and passed to the given callback.
+     *
+     * @return the request to show, or {@code null} if there is none or there is no room.
+     */
+    @Nullable
+    Request showNext(long nowMillis, DropCallback dropCallback) {
+        while (mShown.size() < mMaxShown && !mQueue.isEmpty()) {
+            Request next = mQueue.poll();
+            if (nowMillis - next.mEnqueueTime > mMaxWaitMillis) {
+                dropCallback.onDropped(next);
+                continue;
+            }
+            mShown.put(next.getKey(), next);
+            return next;
+        }
+        return null;
+    }
+
+    boolean isQueued(String key) {
+        for (Request queued : mQueue) {
+            if (queued.getKey().equals(key)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    int getShownCount() {
+        return mShown.size();
+    }
+
+    int getQueuedCount() {
+        return mQueue.size();
+    }
+
+    /**
+     * Returns how a category ranks when heads-up notifications are scheduled, higher ranks first.
+     */
+    static int getCategoryRank(@Nullable String category) {
+        if (category == null) {
+            return 0;
+        }
+        switch (category) {
+            case Notification.CATEGORY_CAR_EMERGENCY:
+                return 4;
+            case Notification.CATEGORY_CALL:
+                return 3;
+            case Notification.CATEGORY_NAVIGATION:
+                return 2;
+            case Notification.CATEGORY_MESSAGE:
+                return 1;
+            default:
+                return 0;
+        }
+    }
+
+    /**
+     * Called with requests that are dropped without being shown.
+     */
+    interface DropCallback {
+        void onDropped(Request request);
+    }
+
+    /**
+     * A heads-up notification that is shown or waits to be shown.
+     */
+    static class Request {
+        private final StatusBarNotification mStatusBarNotification;
+        private final NotificationListenerService.RankingMap mRankingMap;
+        private final int mCategoryRank;
+        private final int mImportance;
+        private final long mPostTime;
+        private final long mEnqueueTime;
+        private boolean mIsLeaving;
+
+        Request(StatusBarNotification statusBarNotification,
+                NotificationListenerService.RankingMap rankingMap, int importance,
+                long enqueueTime) {
+            mStatusBarNotification = statusBarNotification;
+            mRankingMap = rankingMap;
+            mCategoryRank = getCategoryRank(statusBarNotification.getNotification().category);
+            mImportance = importance;
+            mPostTime = statusBarNotification.getPostTime();
+            mEnqueueTime = enqueueTime;
+        }
+
+        String getKey() {
+            return mStatusBarNotification.getKey();
+        }
+
+        StatusBarNotification getStatusBarNotification() {
+            return mStatusBarNotification;
+        }
+
+        NotificationListenerService.RankingMap getRankingMap() {
+            return mRankingMap;
+        }
+    }
+}
@@ -0,0 +1,192 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.car.notification;
+
+import android.os.Looper;
+import android.os.MessageQueue;
+import android.util.SparseArray;
+import android.view.LayoutInflater;
+import android.view.View;
+
+import com.android.car.notification.template.BasicNotificationViewHolder;
+import com.android.car.notification.template.CallNotificationViewHolder;
+import com.android.car.notification.template.CarNotificationBaseViewHolder;
+import com.android.car.notification.template.EmergencyNotificationViewHolder;
+import com.android.car.notification.template.InboxNotificationViewHolder;
+import com.android.car.notification.template.MessageNotificationViewHolder;
+import com.android.car.notification.template.NavigationNotificationViewHolder;
+import com.android.internal.annotations.VisibleForTesting;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * Pool of inflated heads-up notification cards and their view holders, kept per
+ * {@link NotificationViewType} so that showing a heads-up notification does not have to inflate
+ * its template.
+ *
+ * <p> Cards are returned to the pool once they are removed from the heads-up panel. The number of
+ * pooled cards per type is bounded, and cards of the most common types are inflated ahead of time
+ * when the main thread is idle.
+ *
+ * <p> This class must be used from the main thread.
+ */
+class HeadsUpViewPool {
+    // The types of the cards that are inflated ahead of time.
+    private static final int[] PREFETCHED_VIEW_TYPES = {
+            NotificationViewType.BASIC_HEADSUP,
+            NotificationViewType.MESSAGE_HEADSUP,
+            NotificationViewType.CALL
+    };
+
+    private final LayoutInflater mInflater;
+    private final int mMaxPooledViewsPerType;
+    private final SparseArray<Deque<CarNotificationBaseViewHolder>> mPooledViewHolders =
+            new SparseArray<>();
+
+    private NotificationClickHandlerFactory mClickHandlerFactory;
+    private int mNextPrefetchedViewType;
+
+    HeadsUpViewPool(LayoutInflater inflater, NotificationClickHandlerFactory clickHandlerFactory,
+            int maxPooledViewsPerType) {
+        mInflater = inflater;
+        mClickHandlerFactory = clickHandlerFactory;
+        mMaxPooledViewsPerType = maxPooledViewsPerType;
+    }
+
+    /**
+     * Inflates one card of each of the most common types, one card per idle pass of the main
+     * thread.
+     */
+    void prefetchWhenIdle() {
+        if (mMaxPooledViewsPerType <= 0) {
+            return;
+        }
+        Looper.getMainLooper().getQueue().addIdleHandler(new MessageQueue.IdleHandler() {
+            @Override
+            public boolean queueIdle() {
+                if (mNextPrefetchedViewType >= PREFETCHED_VIEW_TYPES.length) {
+                    return false;
+                }
+                int viewType = PREFETCHED_VIEW_TYPES[mNextPrefetchedViewType++];
+                if (getPooledViewHolders(viewType).isEmpty()) {
+                    release(viewType, createViewHolder(viewType));
+                }
+                return mNextPrefetchedViewType < PREFETCHED_VIEW_TYPES.length;
+            }
+        });
+    }
+
+    /**
+     * Returns a card of the given type, reusing a pooled one if possible.
+     */
+    CarNotificationBaseViewHolder acquire(@NotificationViewType int viewType) {
+        CarNotificationBaseViewHolder viewHolder = getPooledViewHolders(viewType).pollFirst();
+        return viewHolder != null ? viewHolder : createViewHolder(viewType);
+    }
+
+    /**
+     * Returns a card that is no longer shown to the pool. The card must have been removed from
+     * its parent.
+     */
+    void release(@NotificationViewType int viewType, CarNotificationBaseViewHolder viewHolder) {
+        Deque<CarNotificationBaseViewHolder> pooledViewHolders = getPooledViewHolders(viewType);
+        if (pooledViewHolders.size() >= mMaxPooledViewsPerType
+                || viewHolder.itemView.getParent() != null) {
+            return;
+        }
+        viewHolder.onRecycled();
+        View itemView = viewHolder.itemView;
+        itemView.setTranslationY(0f);
+        View cardView = itemView.findViewById(R.id.card_view);
+        if (cardView != null) {
+            cardView.animate().cancel();
+            cardView.setOnTouchListener(null);
+            cardView.setTranslationX(0f);
+            cardView.setAlpha(1f);
+        }
+        pooledViewHolders.addFirst(viewHolder);
+    }
+
+    /**
+     * Sets the source of the click handlers of new cards and drops the pooled cards, which use
+     * the previous one.
+     */
+    void setClickHandlerFactory(NotificationClickHandlerFactory clickHandlerFactory) {
+        mClickHandlerFactory = clickHandlerFactory;
+        mPooledViewHolders.clear();
+    }
+
+    @VisibleForTesting
+    int getPooledViewCount(@NotificationViewType int viewType) {
+        return getPooledViewHolders(viewType).size();
+    }
+
+    private Deque<CarNotificationBaseViewHolder> getPooledViewHolders(int viewType) {
+        Deque<CarNotificationBaseViewHolder> pooledViewHolders = mPooledViewHolders.get(viewType);
+        if (pooledViewHolders == null) {
+            pooledViewHolders = new ArrayDeque<>(mMaxPooledViewsPerType);
+            mPooledViewHolders.put(viewType, pooledViewHolders);
+        }
+        return pooledViewHolders;
+    }
+
+    private CarNotificationBaseViewHolder createViewHolder(@NotificationViewType int viewType) {
+        switch (viewType) {
+            case NotificationViewType.CAR_EMERGENCY_HEADSUP:
+                return new EmergencyNotificationViewHolder(
+                        inflate(R.layout.car_emergency_headsup_notification_template),
+                        mClickHandlerFactory);
+            case NotificationViewType.NAVIGATION:
+                return new NavigationNotificationViewHolder(
+                        inflate(R.layout.navigation_headsup_notification_template),
+                        mClickHandlerFactory);
+            case NotificationViewType.CALL:
+                return new CallNotificationViewHolder(
+                        inflate(R.layout.call_headsup_notification_template),
+                        mClickHandlerFactory);
+            case NotificationViewType.CAR_WARNING_HEADSUP:
+                // Using the basic view holder because they share the same view binding logic
+                // OEMs should create view holders if needed
+                return new BasicNotificationViewHolder(
+                        inflate(R.layout.car_warning_headsup_notification_template),
+                        mClickHandlerFactory);
+            case NotificationViewType.CAR_INFORMATION_HEADSUP:
+                // Using the basic view holder because they share the same view binding logic
+                // OEMs should create view holders if needed
+                return new BasicNotificationViewHolder(
+                        inflate(R.layout.car_information_headsup_notification_template),
+                        mClickHandlerFactory);
+            case NotificationViewType.MESSAGE_HEADSUP:
+                return new MessageNotificationViewHolder(
+                        inflate(R.layout.message_headsup_notification_template),
+                        mClickHandlerFactory);
+            case NotificationViewType.INBOX_HEADSUP:
+                return new InboxNotificationViewHolder(
+                        inflate(R.layout.inbox_headsup_notification_template),
+                        mClickHandlerFactory);
+            case NotificationViewType.BASIC_HEADSUP:
+            default:
+                return new BasicNotificationViewHolder(
+                        inflate(R.layout.basic_headsup_notification_template),
+                        mClickHandlerFactory);
+        }
+    }
+
+    private View inflate(int layoutId) {
+        return mInflater.inflate(layoutId, /* root= */ null);
+    }
+}
@@ -26,10 +26,12 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
- * Keeps track of the additional state of notifications. This class is not thread safe and should
- * only be called from the main thread.
+ * Keeps track of the additional state of notifications. The message mute states may be read and
+ * added from the notification ingestion thread; everything else should only be called from the
+ * main thread.
  */
 public class NotificationDataManager {
     private static String TAG = "NotificationDataManager";
@@ -43,7 +45,8 @@ public class NotificationDataManager {
      * button on their notification and should trigger the HUN. Both should update the notification
      * in the Notification Center.
      */
-    private final Map<String, Boolean> mMessageNotificationToMuteStateMap = new HashMap<>();
+    private final Map<String, Boolean> mMessageNotificationToMuteStateMap =
+            new ConcurrentHashMap<>();
 
     /**
      * Map that contains the key of all unseen notifications.
@@ -0,0 +1,255 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.car.notification;
+
+import android.app.Notification;
+import android.app.Person;
+import android.graphics.Bitmap;
+import android.graphics.drawable.Icon;
+import android.os.Bundle;
+import android.service.notification.StatusBarNotification;
+
+import com.android.internal.annotations.VisibleForTesting;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.WeakHashMap;
+
+/**
+ * Cache of fingerprints of the visible content of {@link StatusBarNotification}s.
+ *
+ * <p> A fingerprint is a 64-bit {@link ContentHasher} hash over the fields of a notification that
+ * have visible effects in car: extras (which include the style), actions, intents, color, category
+ * and flags. Text is hashed with its spans and bitmaps with their pixels, so two notifications
+ * with the same fingerprint are taken to be visibly the same.
+ *
+ * <p> Fingerprints are cached by {@link Notification} instance, so that both the old and the new
+ * version of an updated notification keep their fingerprints while they are being diffed.
+ */
+public class NotificationFingerprintCache {
+
+    private static final int TAG_NULL = 0;
+    private static final int TAG_BUNDLE = 1;
+    private static final int TAG_LIST = 2;
+    private static final int TAG_INT_ARRAY = 3;
+    private static final int TAG_LONG_ARRAY = 4;
+    private static final int TAG_BYTE_ARRAY = 5;
+    private static final int TAG_ICON = 6;
+    private static final int TAG_BITMAP = 7;
+    private static final int TAG_PERSON = 8;
+    private static final int TAG_TEXT = 9;
+    private static final int TAG_BOOLEAN = 10;
+    private static final int TAG_INT = 11;
+    private static final int TAG_LONG = 12;
+    private static final int TAG_OTHER = 13;
+
+    // Notifications do not override equals, so the entries are kept per instance and are dropped
+    // once the notification is no longer referenced.
+    private static final Map<Notification, Long> sFingerprints =
+            Collections.synchronizedMap(new WeakHashMap<>());
+
+    private NotificationFingerprintCache() {
+    }
+
+    /**
+     * Returns the fingerprint of the given notification, computing and caching it if needed.
+     */
+    public static long getFingerprint(StatusBarNotification statusBarNotification) {
+        Notification notification = statusBarNotification.getNotification();
+        Long fingerprint = sFingerprints.get(notification);
+        if (fingerprint == null) {
+            fingerprint = computeFingerprint(statusBarNotification);
+            sFingerprints.put(notification, fingerprint);
+        }
+        return fingerprint;
+    }
+
+    /**
+     * Returns true if the two notifications have the same visible content.
+     */
+    public static boolean hasSameContent(
+            StatusBarNotification statusBarNotification1,
+            StatusBarNotification statusBarNotification2) {
+        return statusBarNotification1.isGroup() == statusBarNotification2.isGroup()
+                && getFingerprint(statusBarNotification1)
+                        == getFingerprint(statusBarNotification2);
+    }
+
+    @VisibleForTesting
+    static boolean isCached(StatusBarNotification statusBarNotification) {
+        return sFingerprints.containsKey(statusBarNotification.getNotification());
+    }
+
+    @VisibleForTesting
+    static void clear() {
+        sFingerprints.clear();
+    }
+
+    @VisibleForTesting
+    static long computeFingerprint(StatusBarNotification statusBarNotification) {
+        Notification notification = statusBarNotification.getNotification();
+
+        // isGroup() also depends on the override group key of the StatusBarNotification, so it is
+        // not part of a fingerprint that is cached per Notification; see hasSameContent
+        ContentHasher hasher = new ContentHasher()
+                .putBoolean(statusBarNotification.isClearable())
+                .putBoolean(statusBarNotification.isOngoing())
+                .putInt(notification.flags)
+                .putString(notification.category)
+                .putInt(notification.color)
+                .putInt(Objects.hashCode(notification.contentIntent))
+                .putInt(Objects.hashCode(notification.deleteIntent))
+                .putInt(Objects.hashCode(notification.fullScreenIntent));
+        hashActions(hasher, notification.actions);
+        hashBundle(hasher, notification.extras);
+        return hasher.hash();
+    }
+
+    private static void hashActions(ContentHasher hasher, Notification.Action[] actions) {
+        if (actions == null) {
+            hasher.putInt(-1);
+            return;
+        }
+        hasher.putInt(actions.length);
+        for (Notification.Action action : actions) {
+            if (action == null) {
+                hasher.putInt(-1);
+                continue;
+            }
+            hasher.putString(action.title)
+                    .putInt(Objects.hashCode(action.actionIntent))
+                    .putInt(action.getSemanticAction());
+            hashIcon(hasher, action.getIcon());
+        }
+    }
+
+    /**
+     * Hashes the key-value pairs of a bundle independently of their iteration order.
+     */
+    private static void hashBundle(ContentHasher hasher, Bundle bundle) {
+        if (bundle == null) {
+            hasher.putInt(-1);
+            return;
+        }
+        // the hashes of the entries are summed so that their order does not matter
+        long entries = 0;
+        for (String key : bundle.keySet()) {
+            ContentHasher entryHasher = new ContentHasher().putString(key);
+            hashValue(entryHasher, bundle.get(key));
+            entries += entryHasher.hash();
+        }
+        hasher.putInt(bundle.size()).putLong(entries);
+    }
+
+    /**
+     * Hashes a value of the extras by its content. Values that are recreated every time a
+     * notification is posted, such as nested bundles, icons and bitmaps, are hashed by what they
+     * show rather than by identity. Each kind of value is tagged so that values of different
+     * types do not collide.
+     */
+    private static void hashValue(ContentHasher hasher, Object value) {
+        if (value == null) {
+            hasher.putInt(TAG_NULL);
+        } else if (value instanceof Bundle) {
+            hasher.putInt(TAG_BUNDLE);
+            hashBundle(hasher, (Bundle) value);
+        } else if (value instanceof Object[]) {
+            hasher.putInt(TAG_LIST);
+            hashValues(hasher, Arrays.asList((Object[]) value));
+        } else if (value instanceof List) {
+            hasher.putInt(TAG_LIST);
+            hashValues(hasher, (List<?>) value);
+        } else if (value instanceof int[]) {
+            int[] values = (int[]) value;
+            hasher.putInt(TAG_INT_ARRAY).putInt(values.length);
+            for (int element : values) {
+                hasher.putInt(element);
+            }
+        } else if (value instanceof long[]) {
+            long[] values = (long[]) value;
+            hasher.putInt(TAG_LONG_ARRAY).putInt(values.length);
+            for (long element : values) {
+                hasher.putLong(element);
+            }
+        } else if (value instanceof byte[]) {
+            byte[] values = (byte[]) value;
+            hasher.putInt(TAG_BYTE_ARRAY).putBytes(values, /* offset= */ 0, values.length);
+        } else if (value instanceof Icon) {
+            hasher.putInt(TAG_ICON);
+            hashIcon(hasher, (Icon) value);
+        } else if (value instanceof Bitmap) {
+            hasher.putInt(TAG_BITMAP).putBitmap((Bitmap) value);
+        } else if (value instanceof Person) {
+            Person person = (Person) value;
+            hasher.putInt(TAG_PERSON)
+                    .putString(person.getName())
+                    .putString(person.getKey())
+                    .putString(person.getUri())
+                    .putBoolean(person.isBot())
+                    .putBoolean(person.isImportant());
+            hashIcon(hasher, person.getIcon());
+        } else if (value instanceof CharSequence) {
+            hasher.putInt(TAG_TEXT).putString((CharSequence) value);
+        } else if (value instanceof Boolean) {
+            hasher.putInt(TAG_BOOLEAN).putBoolean((Boolean) value);
+        } else if (value instanceof Integer) {
+            hasher.putInt(TAG_INT).putInt((Integer) value);
+        } else if (value instanceof Long) {
+            hasher.putInt(TAG_LONG).putLong((Long) value);
+        } else {
+            hasher.putInt(TAG_OTHER)
+                    .putString(value.getClass().getName())
+                    .putInt(value.hashCode());
+        }
+    }
+
+    private static void hashValues(ContentHasher hasher, List<?> values) {
+        hasher.putInt(values.size());
+        for (Object value : values) {
+            hashValue(hasher, value);
+        }
+    }
+
+    private static void hashIcon(ContentHasher hasher, Icon icon) {
+        if (icon == null) {
+            hasher.putInt(-1);
+            return;
+        }
+        hasher.putInt(icon.getType());
+        switch (icon.getType()) {
+            case Icon.TYPE_RESOURCE:
+                hasher.putString(icon.getResPackage()).putInt(icon.getResId());
+                break;
+            case Icon.TYPE_URI:
+                hasher.putString(icon.getUriString());
+                break;
+            case Icon.TYPE_BITMAP:
+            case Icon.TYPE_ADAPTIVE_BITMAP:
+                hasher.putBitmap(icon.getBitmap());
+                break;
+            case Icon.TYPE_DATA:
+                hasher.putBytes(icon.getDataBytes(), icon.getDataOffset(), icon.getDataLength());
+                break;
+            default:
+                // the description of an icon includes its source for the remaining types
+                hasher.putString(icon.toString());
+                break;
+        }
+    }
+}
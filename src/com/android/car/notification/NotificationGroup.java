@@ -35,6 +35,8 @@ import java.util.List;
  */
 public class NotificationGroup {
 
+    private static final int VIEW_TYPE_UNRESOLVED = 0;
+
     private String mGroupKey;
     private final List<StatusBarNotification> mNotifications = new ArrayList<>();
     @Nullable
@@ -44,6 +46,8 @@ public class NotificationGroup {
 
     private boolean mIsHeader;
     private boolean mIsFooter;
+    // resolved lazily by getViewType() and reset whenever the group changes
+    private int mViewType = VIEW_TYPE_UNRESOLVED;
 
     public NotificationGroup() {
     }
@@ -55,11 +59,13 @@ public class NotificationGroup {
     public void addNotification(StatusBarNotification statusBarNotification) {
         assertSameGroupKey(statusBarNotification.getGroupKey());
         mNotifications.add(statusBarNotification);
+        mViewType = VIEW_TYPE_UNRESOLVED;
     }
 
     void setGroupSummaryNotification(StatusBarNotification groupSummaryNotification) {
         assertSameGroupKey(groupSummaryNotification.getGroupKey());
         mGroupSummaryNotification = groupSummaryNotification;
+        mViewType = VIEW_TYPE_UNRESOLVED;
     }
 
     void setGroupKey(@NonNull String groupKey) {
@@ -103,6 +109,7 @@ public class NotificationGroup {
      */
     public void setHeader(boolean header) {
         mIsHeader = header;
+        mViewType = VIEW_TYPE_UNRESOLVED;
     }
 
     /**
@@ -117,6 +124,7 @@ public class NotificationGroup {
      */
     public void setFooter(boolean footer) {
         mIsFooter = footer;
+        mViewType = VIEW_TYPE_UNRESOLVED;
     }
 
     /**
@@ -154,6 +162,7 @@ public class NotificationGroup {
      */
     public void setChildTitles(List<String> childTitles) {
         mChildTitles = childTitles;
+        mViewType = VIEW_TYPE_UNRESOLVED;
     }
 
     /**
@@ -214,6 +223,89 @@ public class NotificationGroup {
         }
     }
 
+    /**
+     * Returns the type of the template that shows this notification group as a top level card.
+     *
+     * <p> Grouped notifications are reported as {@link NotificationViewType#GROUP_COLLAPSED} and
+     * notifications as their top level template; it is up to the adapter to switch to the expanded
+     * group and the in group templates. The type is resolved once and kept until the group is
+     * changed.
+     */
+    @NotificationViewType
+    int getViewType() {
+        if (mViewType == VIEW_TYPE_UNRESOLVED) {
+            mViewType = resolveViewType();
+        }
+        return mViewType;
+    }
+
+    @NotificationViewType
+    private int resolveViewType() {
+        if (mIsHeader) {
+            return NotificationViewType.HEADER;
+        }
+
+        if (mIsFooter) {
+            return NotificationViewType.FOOTER;
+        }
+
+        if (isGroup()) {
+            return NotificationViewType.GROUP_COLLAPSED;
+        }
+
+        Notification notification = getSingleNotification().getNotification();
+        Bundle extras = notification.extras;
+
+        String category = notification.category;
+        if (category != null) {
+            switch (category) {
+                case Notification.CATEGORY_CALL:
+                    return NotificationViewType.CALL;
+                case Notification.CATEGORY_CAR_EMERGENCY:
+                    return NotificationViewType.CAR_EMERGENCY;
+                case Notification.CATEGORY_CAR_WARNING:
+                    return NotificationViewType.CAR_WARNING;
+                case Notification.CATEGORY_CAR_INFORMATION:
+                    return NotificationViewType.CAR_INFORMATION;
+                case Notification.CATEGORY_MESSAGE:
+                    return NotificationViewType.MESSAGE;
+                default:
+                    break;
+            }
+        }
+
+        // progress
+        int progressMax = extras.getInt(Notification.EXTRA_PROGRESS_MAX);
+        boolean isIndeterminate = extras.getBoolean(
+                Notification.EXTRA_PROGRESS_INDETERMINATE);
+        boolean hasValidProgress = isIndeterminate || progressMax != 0;
+        boolean isProgress = extras.containsKey(Notification.EXTRA_PROGRESS)
+                && extras.containsKey(Notification.EXTRA_PROGRESS_MAX)
+                && hasValidProgress
+                && !notification.hasCompletedProgress();
+        if (isProgress) {
+            return NotificationViewType.PROGRESS;
+        }
+
+        // inbox
+        boolean isInbox = extras.containsKey(Notification.EXTRA_TITLE_BIG)
+                && extras.containsKey(Notification.EXTRA_SUMMARY_TEXT);
+        if (isInbox) {
+            return NotificationViewType.INBOX;
+        }
+
+        // group summary
+        boolean isGroupSummary = mChildTitles != null;
+        if (isGroupSummary) {
+            return NotificationViewType.GROUP_SUMMARY;
+        }
+
+        // basic, big text, big picture
+        // the big text and big picture styles are fallen back to basic template in car
+        // i.e. setting the big text and big picture does not have an effect
+        return NotificationViewType.BASIC;
+    }
+
     StatusBarNotification getNotificationForSorting() {
         if (mGroupSummaryNotification != null) {
             return getGroupSummaryNotification();
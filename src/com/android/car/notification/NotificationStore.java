@@ -0,0 +1,350 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.car.notification;
+
+import android.annotation.Nullable;
+import android.service.notification.StatusBarNotification;
+import android.util.SparseArray;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * Map of the active notifications by notification key, with secondary indexes by user, package,
+ * group key and category.
+ *
+ * <p> The index lookups return read-only views over the indexes, so that looking up the
+ * notifications of a user or a group does not copy the active notifications. A view is only valid
+ * until the store changes next and must be copied by callers that keep it.
+ *
+ * <p> The group key of a notification changes when its override group key is set. This should be
+ * done through {@link #setOverrideGroupKey} so that the group index stays up to date; the group
+ * index otherwise only catches up when the notification is put again.
+ *
+ * <p> The notifications themselves are kept in an immutable {@link Snapshot} that is replaced on
+ * every change and numbered with a generation. {@link #getSnapshot} may be called from any thread
+ * and returns a consistent view without locking. Everything else should only be called from the
+ * main thread.
+ */
+class NotificationStore extends AbstractMap<String, StatusBarNotification> {
+    private volatile Snapshot mSnapshot = new Snapshot(/* generation= */ 0, new HashMap<>());
+    private final SparseArray<Map<String, StatusBarNotification>> mByUser = new SparseArray<>();
+    private final Map<String, Map<String, StatusBarNotification>> mByPackage = new HashMap<>();
+    private final Map<String, Map<String, StatusBarNotification>> mByGroupKey = new HashMap<>();
+    private final Map<String, Map<String, StatusBarNotification>> mByCategory = new HashMap<>();
+    // The group key each notification is indexed under, which may be outdated if its override
+    // group key was changed directly.
+    private final Map<String, String> mIndexedGroupKeys = new HashMap<>();
+
+    /**
+     * Returns the latest snapshot of the notifications. This method is thread safe.
+     */
+    Snapshot getSnapshot() {
+        return mSnapshot;
+    }
+
+    @Override
+    public StatusBarNotification put(String key, StatusBarNotification notification) {
+        Map<String, StatusBarNotification> notifications = new HashMap<>(mSnapshot.mNotifications);
+        StatusBarNotification oldNotification = notifications.put(key, notification);
+        publish(notifications);
+        if (oldNotification != null) {
+            unindex(oldNotification);
+        }
+        index(notification);
+        return oldNotification;
+    }
+
+    @Override
+    public StatusBarNotification remove(Object key) {
+        if (!mSnapshot.mNotifications.containsKey(key)) {
+            return null;
+        }
+        Map<String, StatusBarNotification> notifications = new HashMap<>(mSnapshot.mNotifications);
+        StatusBarNotification oldNotification = notifications.remove(key);
+        publish(notifications);
+        unindex(oldNotification);
+        return oldNotification;
+    }
+
+    @Override
+    public void clear() {
+        publish(new HashMap<>());
+        mByUser.clear();
+        mByPackage.clear();
+        mByGroupKey.clear();
+        mByCategory.clear();
+        mIndexedGroupKeys.clear();
+    }
+
+    @Override
+    public StatusBarNotification get(Object key) {
+        return mSnapshot.mNotifications.get(key);
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return mSnapshot.mNotifications.containsKey(key);
+    }
+
+    @Override
+    public int size() {
+        return mSnapshot.mNotifications.size();
+    }
+
+    /**
+     * Returns the read-only entries of the latest snapshot. Notifications can only be removed
+     * through {@link #remove}, which keeps the indexes up to date.
+     */
+    @Override
+    public Set<Entry<String, StatusBarNotification>> entrySet() {
+        return mSnapshot.getNotifications().entrySet();
+    }
+
+    /**
+     * Sets the override group key of the notification with the given key and moves it to its new
+     * group.
+     */
+    void setOverrideGroupKey(String key, @Nullable String overrideGroupKey) {
+        StatusBarNotification notification = mSnapshot.mNotifications.get(key);
+        if (notification == null) {
+            return;
+        }
+        // the notification is shared with the current snapshot, so start a new generation
+        publish(mSnapshot.mNotifications);
+        removeFromIndex(mByGroupKey, mIndexedGroupKeys.remove(key), key);
+        notification.setOverrideGroupKey(overrideGroupKey);
+        addToIndex(mByGroupKey, notification.getGroupKey(), notification);
+        mIndexedGroupKeys.put(key, notification.getGroupKey());
+    }
+
+    /**
+     * Returns a read-only view of the notifications of the user.
+     */
+    Map<String, StatusBarNotification> getNotificationsForUser(int userId) {
+        return readOnly(mByUser.get(userId));
+    }
+
+    /**
+     * Returns a read-only view of the notifications of both users, for example the current user
+     * and {@link android.os.UserHandle#USER_ALL}.
+     */
+    Map<String, StatusBarNotification> getNotificationsForUsers(int userId, int otherUserId) {
+        Map<String, StatusBarNotification> notifications = mByUser.get(userId);
+        Map<String, StatusBarNotification> otherNotifications = mByUser.get(otherUserId);
+        if (userId == otherUserId || otherNotifications == null) {
+            return readOnly(notifications);
+        }
+        if (notifications == null) {
+            return readOnly(otherNotifications);
+        }
+        // notification keys contain the user, so the two maps never share a key
+        return new UnionView(notifications, otherNotifications);
+    }
+
+    /**
+     * Returns a read-only view of the notifications posted by the package.
+     */
+    Map<String, StatusBarNotification> getNotificationsForPackage(String packageName) {
+        return readOnly(mByPackage.get(packageName));
+    }
+
+    /**
+     * Returns a read-only view of the notifications with the group key, see
+     * {@link StatusBarNotification#getGroupKey}.
+     */
+    Map<String, StatusBarNotification> getNotificationsInGroup(String groupKey) {
+        return readOnly(mByGroupKey.get(groupKey));
+    }
+
+    /**
+     * Returns a read-only view of the notifications of the category.
+     */
+    Map<String, StatusBarNotification> getNotificationsInCategory(String category) {
+        return readOnly(mByCategory.get(category));
+    }
+
+    private void publish(Map<String, StatusBarNotification> notifications) {
+        mSnapshot = new Snapshot(mSnapshot.mGeneration + 1, notifications);
+    }
+
+    private void index(StatusBarNotification notification) {
+        Map<String, StatusBarNotification> userNotifications =
+                mByUser.get(notification.getUserId());
+        if (userNotifications == null) {
+            userNotifications = new HashMap<>();
+            mByUser.put(notification.getUserId(), userNotifications);
+        }
+        userNotifications.put(notification.getKey(), notification);
+        addToIndex(mByPackage, notification.getPackageName(), notification);
+        addToIndex(mByGroupKey, notification.getGroupKey(), notification);
+        mIndexedGroupKeys.put(notification.getKey(), notification.getGroupKey());
+        addToIndex(mByCategory, notification.getNotification().category, notification);
+    }
+
+    private void unindex(StatusBarNotification notification) {
+        String key = notification.getKey();
+        Map<String, StatusBarNotification> userNotifications =
+                mByUser.get(notification.getUserId());
+        if (userNotifications != null) {
+            userNotifications.remove(key);
+            if (userNotifications.isEmpty()) {
+                mByUser.remove(notification.getUserId());
+            }
+        }
+        removeFromIndex(mByPackage, notification.getPackageName(), key);
+        removeFromIndex(mByGroupKey, mIndexedGroupKeys.remove(key), key);
+        removeFromIndex(mByCategory, notification.getNotification().category, key);
+    }
+
+    private static void addToIndex(Map<String, Map<String, StatusBarNotification>> index,
+            @Nullable String indexKey, StatusBarNotification notification) {
+        if (indexKey != null) {
+            index.computeIfAbsent(indexKey, k -> new HashMap<>())
+                    .put(notification.getKey(), notification);
+        }
+    }
+
+    private static void removeFromIndex(Map<String, Map<String, StatusBarNotification>> index,
+            @Nullable String indexKey, String key) {
+        if (indexKey == null) {
+            return;
+        }
+        Map<String, StatusBarNotification> notifications = index.get(indexKey);
+        if (notifications != null) {
+            notifications.remove(key);
+            if (notifications.isEmpty()) {
+                index.remove(indexKey);
+            }
+        }
+    }
+
+    private static Map<String, StatusBarNotification> readOnly(
+            @Nullable Map<String, StatusBarNotification> notifications) {
+        return notifications == null
+                ? Collections.emptyMap() : Collections.unmodifiableMap(notifications);
+    }
+
+    /**
+     * An immutable version of the active notifications.
+     *
+     * <p> The map of a snapshot never changes. The {@link StatusBarNotification}s are shared with
+     * later snapshots though, and their override group keys may be changed by later generations.
+     */
+    static class Snapshot {
+        private final long mGeneration;
+        private final Map<String, StatusBarNotification> mNotifications;
+
+        private Snapshot(long generation, Map<String, StatusBarNotification> notifications) {
+            mGeneration = generation;
+            mNotifications = notifications;
+        }
+
+        /**
+         * Returns the generation of the snapshot, which increases with every change of the store.
+         */
+        long getGeneration() {
+            return mGeneration;
+        }
+
+        /**
+         * Returns the read-only map of all notifications by notification key.
+         */
+        Map<String, StatusBarNotification> getNotifications() {
+            return Collections.unmodifiableMap(mNotifications);
+        }
+    }
+
+    /**
+     * Read-only view of two maps that do not share any key.
+     */
+    private static class UnionView extends AbstractMap<String, StatusBarNotification> {
+        private final Map<String, StatusBarNotification> mFirst;
+        private final Map<String, StatusBarNotification> mSecond;
+
+        UnionView(Map<String, StatusBarNotification> first,
+                Map<String, StatusBarNotification> second) {
+            mFirst = first;
+            mSecond = second;
+        }
+
+        @Override
+        public StatusBarNotification get(Object key) {
+            StatusBarNotification notification = mFirst.get(key);
+            return notification != null ? notification : mSecond.get(key);
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return mFirst.containsKey(key) || mSecond.containsKey(key);
+        }
+
+        @Override
+        public int size() {
+            return mFirst.size() + mSecond.size();
+        }
+
+        @Override
+        public Set<Entry<String, StatusBarNotification>> entrySet() {
+            return new AbstractSet<Entry<String, StatusBarNotification>>() {
+                @Override
+                public Iterator<Entry<String, StatusBarNotification>> iterator() {
+                    return new UnionIterator(
+                            Collections.unmodifiableMap(mFirst).entrySet().iterator(),
+                            Collections.unmodifiableMap(mSecond).entrySet().iterator());
+                }
+
+                @Override
+                public int size() {
+                    return UnionView.this.size();
+                }
+            };
+        }
+    }
+
+    private static class UnionIterator implements Iterator<Entry<String, StatusBarNotification>> {
+        private final Iterator<Entry<String, StatusBarNotification>> mFirst;
+        private final Iterator<Entry<String, StatusBarNotification>> mSecond;
+
+        UnionIterator(Iterator<Entry<String, StatusBarNotification>> first,
+                Iterator<Entry<String, StatusBarNotification>> second) {
+            mFirst = first;
+            mSecond = second;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return mFirst.hasNext() || mSecond.hasNext();
+        }
+
+        @Override
+        public Entry<String, StatusBarNotification> next() {
+            if (mFirst.hasNext()) {
+                return mFirst.next();
+            }
+            if (mSecond.hasNext()) {
+                return mSecond.next();
+            }
+            throw new NoSuchElementException();
+        }
+    }
+}
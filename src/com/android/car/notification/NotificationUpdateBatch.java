@@ -0,0 +1,102 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.car.notification;
+
+import android.service.notification.StatusBarNotification;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Collects the posted and removed notification events that arrive between two updates of the
+ * notification center.
+ *
+ * <p> Only the latest event of each notification is kept, so a notification that is cancelled and
+ * posted again, or updated several times, results in a single update. Updates are drained in the
+ * order in which their latest event arrived.
+ *
+ * <p> This class is not thread safe and should only be called from the main thread.
+ */
+class NotificationUpdateBatch {
+    private final Map<String, Update> mUpdates = new LinkedHashMap<>();
+
+    /**
+     * Adds an event, replacing the pending event of the same notification.
+     *
+     * @param updateType {@link CarNotificationListener#NOTIFY_NOTIFICATION_POSTED} or
+     * {@link CarNotificationListener#NOTIFY_NOTIFICATION_REMOVED}.
+     * @param isFiltered whether the notification is filtered out of the notification center.
+     */
+    void add(int updateType, StatusBarNotification statusBarNotification, boolean isFiltered) {
+        String key = statusBarNotification.getKey();
+        // remove first so that the update moves to the position of its latest event
+        mUpdates.remove(key);
+        mUpdates.put(key, new Update(updateType, statusBarNotification, isFiltered));
+    }
+
+    boolean isEmpty() {
+        return mUpdates.isEmpty();
+    }
+
+    int size() {
+        return mUpdates.size();
+    }
+
+    /**
+     * Returns the pending updates and clears the batch.
+     */
+    List<Update> drain() {
+        List<Update> updates = new ArrayList<>(mUpdates.values());
+        mUpdates.clear();
+        return updates;
+    }
+
+    /**
+     * Drops the pending updates.
+     */
+    void clear() {
+        mUpdates.clear();
+    }
+
+    /**
+     * The latest event of a notification.
+     */
+    static class Update {
+        private final int mUpdateType;
+        private final StatusBarNotification mStatusBarNotification;
+        private final boolean mIsFiltered;
+
+        Update(int updateType, StatusBarNotification statusBarNotification, boolean isFiltered) {
+            mUpdateType = updateType;
+            mStatusBarNotification = statusBarNotification;
+            mIsFiltered = isFiltered;
+        }
+
+        int getUpdateType() {
+            return mUpdateType;
+        }
+
+        StatusBarNotification getStatusBarNotification() {
+            return mStatusBarNotification;
+        }
+
+        boolean isFiltered() {
+            return mIsFiltered;
+        }
+    }
+}
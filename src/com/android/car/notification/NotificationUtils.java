@@ -16,16 +16,10 @@
 
 package com.android.car.notification;
 
-import android.car.userlib.CarUserManagerHelper;
 import android.content.Context;
-import android.content.pm.PackageInfo;
-import android.content.pm.PackageManager;
 import android.service.notification.StatusBarNotification;
-import android.util.Log;
 
 public class NotificationUtils {
-    private static final String TAG = "NotificationUtils";
-
     private NotificationUtils() {
     }
 
@@ -64,19 +58,8 @@ public class NotificationUtils {
      */
     public static boolean isSystemApp(Context context,
             StatusBarNotification statusBarNotification) {
-        PackageManager packageManager = context.getPackageManager();
-        CarUserManagerHelper carUserManagerHelper = new CarUserManagerHelper(context);
-        PackageInfo packageInfo = null;
-        try {
-            packageInfo = packageManager.getPackageInfoAsUser(
-                    statusBarNotification.getPackageName(), /* flags= */ 0,
-                    carUserManagerHelper.getCurrentForegroundUserId());
-        } catch (PackageManager.NameNotFoundException ex) {
-            Log.e(TAG, "package not found: " + statusBarNotification.getPackageName());
-        }
-        if (packageInfo == null) return false;
-
-        return packageInfo.applicationInfo.isSystemApp();
+        return PackageInfoCache.getInstance(context).isSystemApp(
+                context, statusBarNotification.getPackageName());
     }
 
     /**
@@ -84,41 +67,21 @@ public class NotificationUtils {
      */
     public static boolean isSignedWithPlatformKey(Context context,
             StatusBarNotification statusBarNotification) {
-        PackageManager packageManager = context.getPackageManager();
-        CarUserManagerHelper carUserManagerHelper = new CarUserManagerHelper(context);
-        PackageInfo packageInfo = null;
-        try {
-            packageInfo = packageManager.getPackageInfoAsUser(
-                    statusBarNotification.getPackageName(), /* flags= */ 0,
-                    carUserManagerHelper.getCurrentForegroundUserId());
-        } catch (PackageManager.NameNotFoundException ex) {
-            Log.e(TAG, "package not found: " + statusBarNotification.getPackageName());
-        }
-        if (packageInfo == null) return false;
-
-        return packageInfo.applicationInfo.isSignedWithPlatformKey();
+        return PackageInfoCache.getInstance(context).isSignedWithPlatformKey(
+                context, statusBarNotification.getPackageName());
     }
 
     private static boolean isSystemPrivilegedOrPlatformKeyInner(Context context,
             StatusBarNotification statusBarNotification, boolean checkForPrivilegedApp) {
-        PackageManager packageManager = context.getPackageManager();
-        CarUserManagerHelper carUserManagerHelper = new CarUserManagerHelper(context);
-        PackageInfo packageInfo = null;
-        try {
-            packageInfo = packageManager.getPackageInfoAsUser(
-                    statusBarNotification.getPackageName(), /* flags= */ 0,
-                    carUserManagerHelper.getCurrentForegroundUserId());
-        } catch (PackageManager.NameNotFoundException ex) {
-            Log.e(TAG, "package not found: " + statusBarNotification.getPackageName());
-        }
-        if (packageInfo == null) return false;
+        PackageInfoCache packageInfoCache = PackageInfoCache.getInstance(context);
+        String packageName = statusBarNotification.getPackageName();
 
         // Only include the privilegedApp check if the caller wants this check.
-        boolean isPrivilegedApp =
-                (!checkForPrivilegedApp) || packageInfo.applicationInfo.isPrivilegedApp();
+        boolean isPrivilegedApp = (!checkForPrivilegedApp)
+                || packageInfoCache.isPrivilegedApp(context, packageName);
 
-        return (packageInfo.applicationInfo.isSignedWithPlatformKey() ||
-                (packageInfo.applicationInfo.isSystemApp()
+        return (packageInfoCache.isSignedWithPlatformKey(context, packageName) ||
+                (packageInfoCache.isSystemApp(context, packageName)
                         && isPrivilegedApp));
     }
 }
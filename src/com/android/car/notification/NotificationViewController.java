@@ -1,10 +1,12 @@
 package com.android.car.notification;
 
+import android.app.ActivityManager;
 import android.car.CarNotConnectedException;
 import android.car.drivingstate.CarUxRestrictions;
 import android.os.Build;
 import android.os.Handler;
 import android.os.Message;
+import android.service.notification.NotificationListenerService.RankingMap;
 import android.service.notification.StatusBarNotification;
 import android.util.Log;
 import android.view.View;
@@ -19,15 +21,28 @@ import java.util.List;
 public class NotificationViewController {
 
     private static final String TAG = "NotificationViewControl";
+    // Does not collide with the update types sent by CarNotificationListener.
+    private static final int MSG_APPLY_PENDING_UPDATES = 100;
+
     private final CarNotificationView mCarNotificationView;
     private final PreprocessingManager mPreprocessingManager;
     private final CarNotificationListener mCarNotificationListener;
     private CarUxRestrictionManagerWrapper mUxResitrictionListener;
     private NotificationDataManager mNotificationDataManager;
     private NotificationUpdateHandler mNotificationUpdateHandler = new NotificationUpdateHandler();
+    private final NotificationUpdateBatch mPendingUpdates = new NotificationUpdateBatch();
+    private final RankingSnapshot.Delta mPendingRankingDelta = new RankingSnapshot.Delta();
+    private final int mUpdateBatchWindowMs;
     private boolean mShowLessImportantNotifications;
     private boolean mIsInForeground;
 
+    // State the notification list was last reset to, so that resets without any change in between
+    // can be skipped. The generation is -1 if the list was changed incrementally since.
+    private long mResetGeneration = -1;
+    private RankingMap mResetRankingMap;
+    private int mResetUserId;
+    private boolean mResetShowLessImportantNotifications;
+
     public NotificationViewController(CarNotificationView carNotificationView,
             PreprocessingManager preprocessingManager,
             CarNotificationListener carNotificationListener,
@@ -38,6 +53,8 @@ public class NotificationViewController {
         mCarNotificationListener = carNotificationListener;
         mUxResitrictionListener = uxResitrictionListener;
         mNotificationDataManager = notificationDataManager;
+        mUpdateBatchWindowMs = carNotificationView.getContext().getResources().getInteger(
+                R.integer.notification_update_batch_window_ms);
 
         // Long clicking on the notification center title toggles hiding media, navigation, and
         // less important (< IMPORTANCE_DEFAULT) ongoing foreground service notifications.
@@ -96,49 +113,87 @@ public class NotificationViewController {
      * Reset notifications to the latest state.
      */
     private void resetNotifications(boolean showLessImportantNotifications) {
-        mPreprocessingManager.init(
-                mCarNotificationListener.getNotifications(),
-                mCarNotificationListener.getCurrentRanking());
+        // the active notifications of the listener already contain the pending updates
+        mPendingUpdates.clear();
+        mPendingRankingDelta.clear();
+        mNotificationUpdateHandler.removeMessages(MSG_APPLY_PENDING_UPDATES);
+
+        long generation = mCarNotificationListener.getNotificationSnapshot().getGeneration();
+        RankingMap rankingMap = mCarNotificationListener.getCurrentRanking();
+        int userId = ActivityManager.getCurrentUser();
+        if (generation == mResetGeneration && rankingMap == mResetRankingMap
+                && userId == mResetUserId
+                && showLessImportantNotifications == mResetShowLessImportantNotifications) {
+            // nothing changed since the last reset
+            return;
+        }
 
-        List<NotificationGroup> notificationGroups = mPreprocessingManager.process(
-                showLessImportantNotifications,
-                mCarNotificationListener.getNotifications(),
-                mCarNotificationListener.getCurrentRanking());
+        List<NotificationGroup> notificationGroups = mPreprocessingManager.init(
+                showLessImportantNotifications, mCarNotificationListener.getNotifications(),
+                rankingMap);
 
         mNotificationDataManager.updateUnseenNotification(notificationGroups);
         mCarNotificationView.setNotifications(notificationGroups);
+
+        mResetGeneration = generation;
+        mResetRankingMap = rankingMap;
+        mResetUserId = userId;
+        mResetShowLessImportantNotifications = showLessImportantNotifications;
     }
 
     /**
-     * Update notifications: no grouping/ranking updates will go through.
-     * Insertion, deletion and content update will apply immediately.
+     * Update notifications with the pending updates: insertion, deletion and content update are
+     * applied as a single batch, followed by the pending ranking changes.
      */
-    private void updateNotifications(
-            boolean showLessImportantNotifications, int what, StatusBarNotification sbn) {
-
-        if (mPreprocessingManager.shouldFilter(sbn, mCarNotificationListener.getCurrentRanking())) {
-            // if the new notification should be filtered out, return early
+    private void applyPendingUpdates() {
+        if (mPendingUpdates.isEmpty() && mPendingRankingDelta.isEmpty()) {
+            return;
+        }
+        if (!mIsInForeground) {
+            resetNotifications(mShowLessImportantNotifications);
             return;
         }
 
-        mCarNotificationView.setNotifications(
-                mPreprocessingManager.updateNotifications(
-                        showLessImportantNotifications,
-                        sbn,
-                        what,
-                        mCarNotificationListener.getCurrentRanking()));
+        mResetGeneration = -1;
+        List<NotificationGroup> notificationGroups = null;
+        if (!mPendingUpdates.isEmpty()) {
+            notificationGroups = mPreprocessingManager.updateNotifications(
+                    mShowLessImportantNotifications,
+                    mPendingUpdates.drain(),
+                    mCarNotificationListener.getCurrentRanking());
+        }
+        if (!mPendingRankingDelta.isEmpty()) {
+            notificationGroups = mPreprocessingManager.updateRanking(
+                    mShowLessImportantNotifications,
+                    mPendingRankingDelta,
+                    mCarNotificationListener.getCurrentRanking());
+            mPendingRankingDelta.clear();
+        }
+        mCarNotificationView.setNotifications(notificationGroups);
     }
 
+    /**
+     * Collects the posted and removed notifications and the ranking changes and applies them once
+     * per batch window, so that a burst of events results in a single update of the notification
+     * center.
+     */
     private class NotificationUpdateHandler extends Handler {
         @Override
         public void handleMessage(Message message) {
-            if (mIsInForeground) {
-                updateNotifications(
-                        mShowLessImportantNotifications,
-                        message.what,
-                        (StatusBarNotification) message.obj);
+            if (message.what == MSG_APPLY_PENDING_UPDATES) {
+                applyPendingUpdates();
+                return;
+            }
+
+            if (message.what == CarNotificationListener.NOTIFY_RANKING_UPDATED) {
+                mPendingRankingDelta.merge((RankingSnapshot.Delta) message.obj);
             } else {
-                resetNotifications(mShowLessImportantNotifications);
+                // the filtering decision is made by CarNotificationListener off the main thread
+                mPendingUpdates.add(message.what, (StatusBarNotification) message.obj,
+                        message.arg1 == CarNotificationListener.NOTIFICATION_FILTERED);
+            }
+            if (!hasMessages(MSG_APPLY_PENDING_UPDATES)) {
+                sendEmptyMessageDelayed(MSG_APPLY_PENDING_UPDATES, mUpdateBatchWindowMs);
             }
         }
     }
@@ -0,0 +1,362 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.car.notification;
+
+import android.car.userlib.CarUserManagerHelper;
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.content.pm.ApplicationInfo;
+import android.content.pm.PackageInfo;
+import android.content.pm.PackageManager;
+import android.graphics.drawable.Drawable;
+import android.graphics.drawable.Icon;
+import android.net.Uri;
+import android.os.UserHandle;
+import android.service.notification.StatusBarNotification;
+import android.util.ArrayMap;
+import android.util.Log;
+import android.util.LruCache;
+import android.util.SparseArray;
+
+import androidx.annotation.Nullable;
+
+import com.android.internal.annotations.GuardedBy;
+import com.android.internal.annotations.VisibleForTesting;
+
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Cache of package information of the apps that post notifications, kept per user and package:
+ * privilege flags, application labels and the drawables of small icons.
+ *
+ * <p> Flags and labels are looked up for the current foreground user. A package's entries are
+ * dropped when the package is added, replaced or removed, and the whole cache is dropped when the
+ * foreground user changes.
+ *
+ * <p> This class is thread safe.
+ */
+public class PackageInfoCache {
+    private static final String TAG = "PackageInfoCache";
+
+    private static final int FLAG_PACKAGE_FOUND = 1;
+    private static final int FLAG_SYSTEM_APP = 1 << 1;
+    private static final int FLAG_PRIVILEGED_APP = 1 << 2;
+    private static final int FLAG_SIGNED_WITH_PLATFORM_KEY = 1 << 3;
+
+    private static final int MAX_SMALL_ICONS = 128;
+
+    private static PackageInfoCache sInstance;
+
+    private final Object mLock = new Object();
+    @GuardedBy("mLock")
+    private final SparseArray<Map<String, Integer>> mPackageFlags = new SparseArray<>();
+    // Values are null for packages that were not found.
+    @GuardedBy("mLock")
+    private final SparseArray<Map<String, String>> mAppLabels = new SparseArray<>();
+    @GuardedBy("mLock")
+    private final LruCache<SmallIconKey, Drawable.ConstantState> mSmallIcons =
+            new LruCache<>(MAX_SMALL_ICONS);
+    @GuardedBy("mLock")
+    private int mCurrentUserId;
+    // Incremented on every invalidation so that lookups racing with one are not cached.
+    @GuardedBy("mLock")
+    private int mGeneration;
+
+    @VisibleForTesting
+    final BroadcastReceiver mIntentReceiver = new BroadcastReceiver() {
+        @Override
+        public void onReceive(Context context, Intent intent) {
+            String action = intent.getAction();
+            if (Intent.ACTION_USER_SWITCHED.equals(action)) {
+                onUserSwitched(intent.getIntExtra(Intent.EXTRA_USER_HANDLE, UserHandle.USER_NULL));
+                return;
+            }
+
+            Uri data = intent.getData();
+            if (data != null) {
+                onPackageChanged(data.getSchemeSpecificPart());
+            }
+        }
+    };
+
+    private PackageInfoCache(Context context) {
+        mCurrentUserId = new CarUserManagerHelper(context).getCurrentForegroundUserId();
+
+        IntentFilter packageFilter = new IntentFilter();
+        packageFilter.addAction(Intent.ACTION_PACKAGE_ADDED);
+        packageFilter.addAction(Intent.ACTION_PACKAGE_REPLACED);
+        packageFilter.addAction(Intent.ACTION_PACKAGE_REMOVED);
+        packageFilter.addDataScheme("package");
+        context.registerReceiverAsUser(mIntentReceiver, UserHandle.ALL, packageFilter,
+                /* broadcastPermission= */ null, /* scheduler= */ null);
+
+        IntentFilter userFilter = new IntentFilter(Intent.ACTION_USER_SWITCHED);
+        context.registerReceiverAsUser(mIntentReceiver, UserHandle.ALL, userFilter,
+                /* broadcastPermission= */ null, /* scheduler= */ null);
+    }
+
+    public static synchronized PackageInfoCache getInstance(Context context) {
+        if (sInstance == null) {
+            sInstance = new PackageInfoCache(context.getApplicationContext());
+        }
+        return sInstance;
+    }
+
+    /**
+     * Returns true if the package is a system app for the current user.
+     */
+    public boolean isSystemApp(Context context, String packageName) {
+        return (getPackageFlags(context, packageName) & FLAG_SYSTEM_APP) != 0;
+    }
+
+    /**
+     * Returns true if the package is a privileged app for the current user.
+     */
+    public boolean isPrivilegedApp(Context context, String packageName) {
+        return (getPackageFlags(context, packageName) & FLAG_PRIVILEGED_APP) != 0;
+    }
+
+    /**
+     * Returns true if the package is signed with the platform key.
+     */
+    public boolean isSignedWithPlatformKey(Context context, String packageName) {
+        return (getPackageFlags(context, packageName) & FLAG_SIGNED_WITH_PLATFORM_KEY) != 0;
+    }
+
+    /**
+     * Returns the application label of the package for the current user, or {@code null} if the
+     * package is not found.
+     */
+    @Nullable
+    public String getAppLabel(Context context, String packageName) {
+        int userId;
+        int generation;
+        synchronized (mLock) {
+            userId = mCurrentUserId;
+            generation = mGeneration;
+            Map<String, String> userLabels = mAppLabels.get(userId);
+            if (userLabels != null && userLabels.containsKey(packageName)) {
+                return userLabels.get(packageName);
+            }
+        }
+
+        String label = loadAppLabel(context, packageName, userId);
+
+        synchronized (mLock) {
+            if (generation == mGeneration) {
+                getUserEntries(mAppLabels, userId).put(packageName, label);
+            }
+        }
+        return label;
+    }
+
+    /**
+     * Returns a drawable of the small icon of the notification.
+     *
+     * <p> Resource icons are cached by the user, package and resource of the icon, so that the
+     * package context of the notification is only created and the icon only decoded the first time
+     * an icon is shown. Other icons are loaded on every call.
+     */
+    @Nullable
+    public Drawable getSmallIcon(Context context, StatusBarNotification statusBarNotification) {
+        Icon icon = statusBarNotification.getNotification().getSmallIcon();
+        if (icon == null) {
+            return null;
+        }
+
+        SmallIconKey key = null;
+        int generation;
+        synchronized (mLock) {
+            generation = mGeneration;
+            if (icon.getType() == Icon.TYPE_RESOURCE) {
+                key = new SmallIconKey(statusBarNotification.getUserId(),
+                        statusBarNotification.getPackageName(), icon.getResPackage(),
+                        icon.getResId());
+                Drawable.ConstantState constantState = mSmallIcons.get(key);
+                if (constantState != null) {
+                    return constantState.newDrawable();
+                }
+            }
+        }
+
+        Drawable drawable = icon.loadDrawable(statusBarNotification.getPackageContext(context));
+        if (key == null || drawable == null || drawable.getConstantState() == null) {
+            return drawable;
+        }
+
+        synchronized (mLock) {
+            if (generation == mGeneration) {
+                mSmallIcons.put(key, drawable.getConstantState());
+            }
+        }
+        return drawable;
+    }
+
+    /**
+     * Drops all cached entries.
+     */
+    @VisibleForTesting
+    public void clear() {
+        synchronized (mLock) {
+            clearLocked();
+        }
+    }
+
+    private int getPackageFlags(Context context, String packageName) {
+        int userId;
+        int generation;
+        synchronized (mLock) {
+            userId = mCurrentUserId;
+            generation = mGeneration;
+            Map<String, Integer> userFlags = mPackageFlags.get(userId);
+            Integer flags = userFlags == null ? null : userFlags.get(packageName);
+            if (flags != null) {
+                return flags;
+            }
+        }
+
+        int flags = loadPackageFlags(context, packageName, userId);
+
+        synchronized (mLock) {
+            if (generation == mGeneration) {
+                getUserEntries(mPackageFlags, userId).put(packageName, flags);
+            }
+        }
+        return flags;
+    }
+
+    private int loadPackageFlags(Context context, String packageName, int userId) {
+        PackageInfo packageInfo = null;
+        try {
+            packageInfo = context.getPackageManager().getPackageInfoAsUser(
+                    packageName, /* flags= */ 0, userId);
+        } catch (PackageManager.NameNotFoundException ex) {
+            Log.e(TAG, "package not found: " + packageName);
+        }
+        if (packageInfo == null) {
+            return 0;
+        }
+
+        ApplicationInfo applicationInfo = packageInfo.applicationInfo;
+        int flags = FLAG_PACKAGE_FOUND;
+        if (applicationInfo.isSystemApp()) {
+            flags |= FLAG_SYSTEM_APP;
+        }
+        if (applicationInfo.isPrivilegedApp()) {
+            flags |= FLAG_PRIVILEGED_APP;
+        }
+        if (applicationInfo.isSignedWithPlatformKey()) {
+            flags |= FLAG_SIGNED_WITH_PLATFORM_KEY;
+        }
+        return flags;
+    }
+
+    @Nullable
+    private String loadAppLabel(Context context, String packageName, int userId) {
+        PackageManager packageManager = context.getPackageManager();
+        ApplicationInfo info;
+        try {
+            info = packageManager.getApplicationInfoAsUser(packageName.trim(), /* flags= */ 0,
+                    userId);
+        } catch (PackageManager.NameNotFoundException e) {
+            Log.e(TAG, "Error fetching app label: " + e);
+            return null;
+        }
+        return String.valueOf(packageManager.getApplicationLabel(info));
+    }
+
+    private void onPackageChanged(String packageName) {
+        synchronized (mLock) {
+            for (int i = 0; i < mPackageFlags.size(); i++) {
+                mPackageFlags.valueAt(i).remove(packageName);
+            }
+            for (int i = 0; i < mAppLabels.size(); i++) {
+                mAppLabels.valueAt(i).remove(packageName);
+            }
+            for (SmallIconKey key : mSmallIcons.snapshot().keySet()) {
+                if (packageName.equals(key.mPackageName) || packageName.equals(key.mResPackage)) {
+                    mSmallIcons.remove(key);
+                }
+            }
+            mGeneration++;
+        }
+    }
+
+    private void onUserSwitched(int userId) {
+        synchronized (mLock) {
+            mCurrentUserId = userId;
+            clearLocked();
+        }
+    }
+
+    @GuardedBy("mLock")
+    private void clearLocked() {
+        mPackageFlags.clear();
+        mAppLabels.clear();
+        mSmallIcons.evictAll();
+        mGeneration++;
+    }
+
+    private static <T> Map<String, T> getUserEntries(SparseArray<Map<String, T>> entries,
+            int userId) {
+        Map<String, T> userEntries = entries.get(userId);
+        if (userEntries == null) {
+            userEntries = new ArrayMap<>();
+            entries.put(userId, userEntries);
+        }
+        return userEntries;
+    }
+
+    /**
+     * Identifies a resource icon posted by a package for a user.
+     */
+    private static class SmallIconKey {
+        final int mUserId;
+        final String mPackageName;
+        final String mResPackage;
+        final int mResId;
+
+        SmallIconKey(int userId, String packageName, String resPackage, int resId) {
+            mUserId = userId;
+            mPackageName = packageName;
+            mResPackage = resPackage;
+            mResId = resId;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof SmallIconKey)) {
+                return false;
+            }
+            SmallIconKey other = (SmallIconKey) o;
+            return mUserId == other.mUserId
+                    && mResId == other.mResId
+                    && mPackageName.equals(other.mPackageName)
+                    && Objects.equals(mResPackage, other.mResPackage);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(mUserId, mPackageName, mResPackage, mResId);
+        }
+    }
+}
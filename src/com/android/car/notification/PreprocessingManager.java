@@ -39,11 +39,11 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.SortedMap;
-import java.util.TreeMap;
-import java.util.UUID;
+import java.util.Set;
 
 /**
  * Manager that filters, groups and ranks the notifications in the notification center.
@@ -62,17 +62,37 @@ public class PreprocessingManager {
     }
 
     private static final String TAG = "PreprocessingManager";
+    // Batches of at least this many updates that touch more than half of the notifications are
+    // processed from scratch instead of being applied one by one.
+    private static final int MIN_UPDATES_FOR_REBUILD = 8;
+    // Upper bound of the number of group ranks kept for inserting notifications into the list.
+    private static final int MAX_CACHED_GROUP_RANKS = 256;
 
     private final String mEllipsizedString;
     private final Context mContext;
 
     private static PreprocessingManager sInstance;
 
-    private int mMaxStringLength = Integer.MAX_VALUE;
+    // Read by the notification ingestion thread when trimming heads-up notifications.
+    private volatile int mMaxStringLength = Integer.MAX_VALUE;
     private Map<String, StatusBarNotification> mOldNotifications;
     private List<NotificationGroup> mOldProcessedNotifications;
     private NotificationListenerService.RankingMap mOldRankingMap;
-    private Map<String, Integer> mRanking = new HashMap<>();
+    private final GroupRankCache mRankCache = new GroupRankCache(MAX_CACHED_GROUP_RANKS);
+
+    /**
+     * Index over {@link #mOldProcessedNotifications} that allows a single post, update or removal
+     * to be applied to the affected notification groups only.
+     *
+     * <p> Notifications are indexed by the key they were grouped under at the time they were
+     * processed, see {@link #getGroupingKey}, so that later changes to their override group keys
+     * do not leave stale entries behind.
+     */
+    private final Map<String, String> mGroupingKeys = new HashMap<>();
+    private final Map<String, Map<String, StatusBarNotification>> mVisibleNotifications =
+            new HashMap<>();
+    private final Map<String, List<NotificationGroup>> mProcessedGroups = new HashMap<>();
+    private boolean mIsProcessedWithLessImportantNotifications;
 
     private boolean mIsInCall;
     private List<CallStateListener> mCallStateListeners = new ArrayList<>();
@@ -110,17 +130,25 @@ public class PreprocessingManager {
 
     /**
      * Initialize the data when the UI becomes foreground.
+     *
+     * <p> The notifications are copied, since they are updated incrementally afterwards.
+     *
+     * @param showLessImportantNotifications whether less important notifications should be shown.
+     * @param notifications the notifications to be processed.
+     * @param rankingMap the ranking map for the notifications.
+     * @return the processed notifications in a new read-only list.
      */
-    public void init(Map<String, StatusBarNotification> notifications, RankingMap rankingMap) {
-        mOldNotifications = notifications;
+    public List<NotificationGroup> init(boolean showLessImportantNotifications,
+            Map<String, StatusBarNotification> notifications, RankingMap rankingMap) {
+        mOldNotifications = new HashMap<>(notifications);
         mOldRankingMap = rankingMap;
-        mOldProcessedNotifications =
-                process(/* showLessImportantNotifications = */ false, notifications, rankingMap);
+        rebuild(showLessImportantNotifications);
+        return publishProcessedNotifications();
     }
 
     /**
      * Process the given notifications. In order for DiffUtil to work, the adapter needs a new
-     * data object each time it updates, therefore wrapping the return value in a new list.
+     * data object each time it updates, therefore the return value is a new read-only list.
      *
      * @param showLessImportantNotifications whether less important notifications should be shown.
      * @param notifications the list of notifications to be processed.
@@ -132,7 +160,8 @@ public class PreprocessingManager {
             Map<String, StatusBarNotification> notifications,
             RankingMap rankingMap) {
 
-        return new ArrayList<>(
+        // group() always returns a new list, so it does not need to be copied
+        return Collections.unmodifiableList(
                 rank(group(optimizeForDriving(
                         filter(showLessImportantNotifications,
                                 new ArrayList<>(notifications.values()),
@@ -143,6 +172,11 @@ public class PreprocessingManager {
     /**
      * Create a new list of notifications based on existing list.
      *
+     * <p> Updates and removals are applied as a delta on the notification groups that contain the
+     * given notification; the rest of the list is left untouched and keeps its order. The whole
+     * list is only processed again if the filtering configuration has changed since the last
+     * update.
+     *
      * @param showLessImportantNotifications whether less important notifications should be shown.
      * @param newRankingMap the latest ranking map for the notifications.
      * @return the new notification group list that should be shown to the user.
@@ -153,30 +187,183 @@ public class PreprocessingManager {
             int updateType,
             RankingMap newRankingMap) {
 
+        if (showLessImportantNotifications != mIsProcessedWithLessImportantNotifications) {
+            // the filtering configuration changed, so the whole list needs to be processed again
+            updateNotificationMap(sbn, updateType);
+            rebuild(showLessImportantNotifications);
+            return publishProcessedNotifications();
+        }
+
+        applyUpdate(showLessImportantNotifications, sbn, updateType, newRankingMap);
+        return publishProcessedNotifications();
+    }
+
+    /**
+     * Applies a batch of updates at once.
+     *
+     * <p> Each update is applied as a delta in the same way as
+     * {@link #updateNotifications(boolean, StatusBarNotification, int, RankingMap)}. If the batch
+     * touches a large part of the list, or the filtering configuration has changed, the list is
+     * processed again from scratch instead, which is cheaper than applying many deltas.
+     *
+     * <p> Updates of notifications that are filtered out are skipped, unless they hide a
+     * notification that is currently visible.
+     *
+     * @param showLessImportantNotifications whether less important notifications should be shown.
+     * @param updates the latest update of each changed notification, in the order they arrived.
+     * @param newRankingMap the latest ranking map for the notifications.
+     * @return the new notification group list that should be shown to the user.
+     */
+    List<NotificationGroup> updateNotifications(
+            boolean showLessImportantNotifications,
+            List<NotificationUpdateBatch.Update> updates,
+            RankingMap newRankingMap) {
+
+        if (showLessImportantNotifications != mIsProcessedWithLessImportantNotifications
+                || shouldRebuild(updates.size())) {
+            for (NotificationUpdateBatch.Update update : updates) {
+                updateNotificationMap(update.getStatusBarNotification(), update.getUpdateType());
+            }
+            rebuild(showLessImportantNotifications);
+            return publishProcessedNotifications();
+        }
+
+        for (NotificationUpdateBatch.Update update : updates) {
+            StatusBarNotification sbn = update.getStatusBarNotification();
+            boolean hidesVisibleNotification =
+                    update.getUpdateType() == CarNotificationListener.NOTIFY_NOTIFICATION_POSTED
+                            && mGroupingKeys.containsKey(sbn.getKey());
+            if (update.isFiltered() && !hidesVisibleNotification) {
+                continue;
+            }
+            applyUpdate(showLessImportantNotifications, sbn, update.getUpdateType(),
+                    newRankingMap);
+        }
+        return publishProcessedNotifications();
+    }
+
+    /**
+     * Applies ranking changes to the notification groups that contain the changed notifications.
+     *
+     * <p> Notifications whose importance or override group key changed are filtered and grouped
+     * again in the same way as an update of the notification. Groups of notifications whose rank
+     * or channel changed are ranked again, and the top level list is only sorted again if a rank
+     * changed.
+     *
+     * @param showLessImportantNotifications whether less important notifications should be shown.
+     * @param delta the ranking changes since the last ranking map.
+     * @param newRankingMap the ranking map that contains the changes.
+     * @return the new notification group list that should be shown to the user.
+     */
+    List<NotificationGroup> updateRanking(
+            boolean showLessImportantNotifications,
+            RankingSnapshot.Delta delta,
+            RankingMap newRankingMap) {
+        mOldRankingMap = newRankingMap;
+
+        if (showLessImportantNotifications != mIsProcessedWithLessImportantNotifications
+                || shouldRebuild(delta.size())) {
+            rebuild(showLessImportantNotifications);
+            return publishProcessedNotifications();
+        }
+
+        boolean isRankChanged = false;
+        Set<String> groupingKeysToRerank = new HashSet<>();
+        for (String key : delta.getKeys()) {
+            StatusBarNotification notification = mOldNotifications.get(key);
+            if (notification == null) {
+                continue;
+            }
+            int changes = delta.getChanges(key);
+            isRankChanged |= (changes & RankingSnapshot.Delta.CHANGED_RANK) != 0;
+
+            if ((changes & (RankingSnapshot.Delta.CHANGED_IMPORTANCE
+                    | RankingSnapshot.Delta.CHANGED_OVERRIDE_GROUP_KEY)) != 0) {
+                applyUpdate(showLessImportantNotifications, notification,
+                        CarNotificationListener.NOTIFY_NOTIFICATION_POSTED, newRankingMap);
+                continue;
+            }
+            String groupingKey = mGroupingKeys.get(key);
+            if (groupingKey != null) {
+                groupingKeysToRerank.add(groupingKey);
+            }
+        }
+
+        for (String groupingKey : groupingKeysToRerank) {
+            regroup(groupingKey);
+        }
+        if (isRankChanged) {
+            additionalRank(mOldProcessedNotifications, newRankingMap);
+        }
+        return publishProcessedNotifications();
+    }
+
+    /**
+     * Returns a read-only copy of the processed notifications. The processed list is updated in
+     * place, while the adapter diffs the lists it is given on a background thread, so this is the
+     * one copy that is made per update.
+     */
+    private List<NotificationGroup> publishProcessedNotifications() {
+        return Collections.unmodifiableList(new ArrayList<>(mOldProcessedNotifications));
+    }
+
+    private boolean shouldRebuild(int updateCount) {
+        return updateCount >= MIN_UPDATES_FOR_REBUILD
+                && updateCount * 2 > mOldNotifications.size();
+    }
+
+    /**
+     * Applies an update to the notification map only, for updates that are followed by a
+     * {@link #rebuild}.
+     */
+    private void updateNotificationMap(StatusBarNotification sbn, int updateType) {
         if (updateType == CarNotificationListener.NOTIFY_NOTIFICATION_REMOVED) {
-            // removal of a notification is the same as a normal preprocessing
             mOldNotifications.remove(sbn.getKey());
-            mOldProcessedNotifications =
-                    process(showLessImportantNotifications, mOldNotifications, mOldRankingMap);
+        } else if (updateType == CarNotificationListener.NOTIFY_NOTIFICATION_POSTED) {
+            mOldNotifications.put(sbn.getKey(), sbn);
+        }
+    }
+
+    private void applyUpdate(
+            boolean showLessImportantNotifications,
+            StatusBarNotification sbn,
+            int updateType,
+            RankingMap newRankingMap) {
+        if (updateType == CarNotificationListener.NOTIFY_NOTIFICATION_REMOVED) {
+            StatusBarNotification oldNotification = mOldNotifications.remove(sbn.getKey());
+            if (oldNotification != null) {
+                String groupingKey = removeVisibleNotification(oldNotification);
+                if (groupingKey != null) {
+                    regroup(groupingKey);
+                }
+            }
         }
 
         if (updateType == CarNotificationListener.NOTIFY_NOTIFICATION_POSTED) {
             StatusBarNotification notification = optimizeForDriving(sbn);
-            boolean isUpdate = mOldNotifications.containsKey(notification.getKey());
-            if (isUpdate) {
+            StatusBarNotification oldNotification =
+                    mOldNotifications.put(notification.getKey(), notification);
+            if (oldNotification != null) {
                 // if is an update of the previous notification
-                mOldNotifications.put(notification.getKey(), notification);
-                mOldProcessedNotifications = process(showLessImportantNotifications,
-                        mOldNotifications, mOldRankingMap);
+                String oldGroupingKey = removeVisibleNotification(oldNotification);
+                String newGroupingKey = null;
+                if (showLessImportantNotifications
+                        || !shouldFilter(notification, mOldRankingMap)) {
+                    newGroupingKey = addVisibleNotification(notification);
+                }
+                if (oldGroupingKey != null) {
+                    regroup(oldGroupingKey);
+                }
+                if (newGroupingKey != null && !newGroupingKey.equals(oldGroupingKey)) {
+                    regroup(newGroupingKey);
+                }
             } else {
                 // insert a new notification into the list
-                mOldNotifications.put(notification.getKey(), notification);
-                mOldProcessedNotifications = new ArrayList<>(
-                        additionalRank(additionalGroup(notification), newRankingMap));
+                mOldProcessedNotifications =
+                        additionalRank(additionalGroup(notification), newRankingMap);
             }
+            NotificationFingerprintCache.getFingerprint(notification);
         }
-
-        return mOldProcessedNotifications;
     }
 
     /** Add {@link CallStateListener} in order to be notified when call state is changed. **/
@@ -191,6 +378,11 @@ public class PreprocessingManager {
         mCallStateListeners.remove(listener);
     }
 
+    /** Returns true if the user is currently in a call. **/
+    public boolean isInCall() {
+        return mIsInCall;
+    }
+
     /**
      * Returns true if the current {@link StatusBarNotification} should be filtered out and not
      * added to the list.
@@ -282,7 +474,12 @@ public class PreprocessingManager {
                 case Notification.EXTRA_TITLE_BIG:
                 case Notification.EXTRA_SUMMARY_TEXT:
                     CharSequence value = extras.getCharSequence(key);
-                    extras.putCharSequence(key, trimText(value));
+                    CharSequence trimmedValue = trimText(value);
+                    // notifications are trimmed again on every rebuild, while they may be read
+                    // by a diff in the background, so unchanged texts are not written back
+                    if (!TextUtils.equals(value, trimmedValue)) {
+                        extras.putCharSequence(key, trimmedValue);
+                    }
                 default:
                     continue;
             }
@@ -296,10 +493,11 @@ public class PreprocessingManager {
      */
     @Nullable
     public CharSequence trimText(@Nullable CharSequence text) {
-        if (TextUtils.isEmpty(text) || text.length() < mMaxStringLength) {
+        int maxStringLength = mMaxStringLength;
+        if (TextUtils.isEmpty(text) || text.length() < maxStringLength) {
             return text;
         }
-        int maxLength = mMaxStringLength - mEllipsizedString.length();
+        int maxLength = maxStringLength - mEllipsizedString.length();
         return text.toString().substring(0, maxLength).concat(mEllipsizedString);
     }
 
@@ -317,166 +515,350 @@ public class PreprocessingManager {
      */
     @VisibleForTesting
     List<NotificationGroup> group(List<StatusBarNotification> list) {
-        SortedMap<String, NotificationGroup> groupedNotifications = new TreeMap<>();
+        List<NotificationGroup> validGroupList = new ArrayList<>(list.size());
+        Map<String, NotificationGroup> groupedNotifications = new LinkedHashMap<>();
 
         // First pass: group all notifications according to their groupKey.
         for (int i = 0; i < list.size(); i++) {
             StatusBarNotification statusBarNotification = list.get(i);
             Notification notification = statusBarNotification.getNotification();
 
-            String groupKey;
             if (Notification.CATEGORY_CALL.equals(notification.category)) {
                 // DO NOT group CATEGORY_CALL.
-                groupKey = UUID.randomUUID().toString();
-            } else {
-                groupKey = statusBarNotification.getGroupKey();
+                NotificationGroup callGroup = new NotificationGroup();
+                addToGroup(callGroup, statusBarNotification);
+                groupedNotifications.put(statusBarNotification.getKey(), callGroup);
+                continue;
             }
 
-            if (!groupedNotifications.containsKey(groupKey)) {
-                NotificationGroup notificationGroup = new NotificationGroup();
-                groupedNotifications.put(groupKey, notificationGroup);
+            NotificationGroup notificationGroup = groupedNotifications.computeIfAbsent(
+                    statusBarNotification.getGroupKey(), key -> new NotificationGroup());
+            addToGroup(notificationGroup, statusBarNotification);
+        }
+
+        // Second pass over the groups:
+        // - remove automatically generated group summaries that contain no child notifications.
+        //   This can happen if a notification group only contains less important notifications
+        //   that are filtered out in the previous filter step.
+        // - a notification group without a group summary should be restored back into individual
+        //   notifications.
+        // - if a notification is a group notification, update the timestamp if one of the
+        //   children notifications shows a timestamp.
+        for (NotificationGroup group : groupedNotifications.values()) {
+            StatusBarNotification summaryNotification = group.getGroupSummaryNotification();
+            int childCount = group.getChildCount();
+
+            if (childCount == 0 && summaryNotification != null
+                    && summaryNotification.getOverrideGroupKey() != null) {
+                continue;
             }
-            if (notification.isGroupSummary()) {
-                groupedNotifications.get(groupKey)
-                        .setGroupSummaryNotification(statusBarNotification);
-            } else {
-                groupedNotifications.get(groupKey).addNotification(statusBarNotification);
+
+            if (childCount > 1 && summaryNotification == null) {
+                for (StatusBarNotification notification : group.getChildNotifications()) {
+                    validGroupList.add(new NotificationGroup(notification));
+                }
+                continue;
             }
+
+            if (group.isGroup()) {
+                updateGroupTimestamp(group);
+            }
+            validGroupList.add(group);
         }
 
-        // Second pass: remove automatically generated group summary if it contains no child
-        // notifications. This can happen if a notification group only contains less important
-        // notifications that are filtered out in the previous filter step.
-        List<NotificationGroup> groupList = new ArrayList<>(groupedNotifications.values());
-        groupList.removeIf(
-                notificationGroup -> {
-                    StatusBarNotification summaryNotification =
-                            notificationGroup.getGroupSummaryNotification();
-                    return notificationGroup.getChildCount() == 0
-                            && summaryNotification != null
-                            && summaryNotification.getOverrideGroupKey() != null;
-                });
-
-        // Third pass: a notification group without a group summary should be restored back into
-        // individual notifications.
-        List<NotificationGroup> validGroupList = new ArrayList<>();
-        groupList.forEach(
-                group -> {
-                    if (group.getChildCount() > 1 && group.getGroupSummaryNotification() == null) {
-                        group.getChildNotifications().forEach(
-                                notification -> {
-                                    NotificationGroup newGroup = new NotificationGroup();
-                                    newGroup.addNotification(notification);
-                                    validGroupList.add(newGroup);
-                                });
-                    } else {
-                        validGroupList.add(group);
-                    }
-                });
+        return validGroupList;
+    }
 
-        // Fourth pass: if a notification is a group notification, update the timestamp if one of
-        // the children notifications shows a timestamp.
-        validGroupList.forEach(group -> {
-            if (!group.isGroup()) {
+    private static void addToGroup(NotificationGroup group, StatusBarNotification notification) {
+        if (notification.getNotification().isGroupSummary()) {
+            group.setGroupSummaryNotification(notification);
+        } else {
+            group.addNotification(notification);
+        }
+    }
+
+    /**
+     * Shows the greatest timestamp of the children notifications on the group summary, if one of
+     * them shows a timestamp.
+     *
+     * <p> The summary notification may already be part of a list that is being diffed in the
+     * background, so the timestamp is set on a copy of it rather than on the summary itself.
+     */
+    private static void updateGroupTimestamp(NotificationGroup group) {
+        boolean showWhen = false;
+        long greatestTimestamp = 0;
+        for (StatusBarNotification notification : group.getChildNotifications()) {
+            if (notification.getNotification().showsTime()) {
+                showWhen = true;
+                greatestTimestamp = Math.max(greatestTimestamp,
+                        notification.getNotification().when);
+            }
+        }
+
+        if (!showWhen) {
+            return;
+        }
+        StatusBarNotification summaryNotification = group.getGroupSummaryNotification();
+        if (summaryNotification.getNotification().showsTime()
+                && summaryNotification.getNotification().when == greatestTimestamp) {
+            return;
+        }
+        StatusBarNotification updatedSummaryNotification = summaryNotification.clone();
+        Notification groupSummaryNotification = updatedSummaryNotification.getNotification();
+        groupSummaryNotification.extras.putBoolean(Notification.EXTRA_SHOW_WHEN, true);
+        groupSummaryNotification.when = greatestTimestamp;
+        group.setGroupSummaryNotification(updatedSummaryNotification);
+    }
+
+    /**
+     * Processes all of the notifications from scratch and rebuilds the index that is used to
+     * apply later updates incrementally.
+     */
+    private void rebuild(boolean showLessImportantNotifications) {
+        List<StatusBarNotification> visibleNotifications = optimizeForDriving(
+                filter(showLessImportantNotifications,
+                        new ArrayList<>(mOldNotifications.values()),
+                        mOldRankingMap));
+
+        mGroupingKeys.clear();
+        mVisibleNotifications.clear();
+        for (StatusBarNotification notification : visibleNotifications) {
+            addVisibleNotification(notification);
+        }
+
+        mOldProcessedNotifications = rank(group(visibleNotifications), mOldRankingMap);
+        mRankCache.clear();
+        mIsProcessedWithLessImportantNotifications = showLessImportantNotifications;
+
+        // compute the content fingerprints up front so that diffing the list later is cheap
+        for (StatusBarNotification notification : visibleNotifications) {
+            NotificationFingerprintCache.getFingerprint(notification);
+        }
+
+        mProcessedGroups.clear();
+        for (NotificationGroup group : mOldProcessedNotifications) {
+            indexProcessedGroup(group);
+        }
+    }
+
+    /**
+     * Groups the visible notifications that share the given grouping key again and replaces the
+     * notification groups that were previously created for them.
+     *
+     * <p> If a single group is replaced by a single group, the new group takes the position of the
+     * old one. Otherwise the list is sorted again in the same way new notifications are inserted.
+     */
+    private void regroup(String groupingKey) {
+        List<NotificationGroup> oldGroups = mProcessedGroups.remove(groupingKey);
+        Map<String, StatusBarNotification> members = mVisibleNotifications.get(groupingKey);
+
+        List<NotificationGroup> newGroups = members == null
+                ? Collections.emptyList()
+                : rank(group(new ArrayList<>(members.values())), mOldRankingMap);
+        if (!newGroups.isEmpty()) {
+            newGroups.forEach(NotificationGroup::getViewType);
+            mProcessedGroups.put(groupingKey, newGroups);
+        }
+
+        if (oldGroups != null && oldGroups.size() == 1 && newGroups.size() == 1) {
+            int index = mOldProcessedNotifications.indexOf(oldGroups.get(0));
+            if (index >= 0) {
+                mOldProcessedNotifications.set(index, newGroups.get(0));
                 return;
             }
+        }
 
-            StatusBarNotification groupSummaryNotification = group.getGroupSummaryNotification();
-            boolean showWhen = false;
-            long greatestTimestamp = 0;
-            for (StatusBarNotification notification : group.getChildNotifications()) {
-                if (notification.getNotification().showsTime()) {
-                    showWhen = true;
-                    greatestTimestamp = Math.max(greatestTimestamp,
-                            notification.getNotification().when);
+        if (oldGroups != null) {
+            mOldProcessedNotifications.removeAll(oldGroups);
+            for (NotificationGroup oldGroup : oldGroups) {
+                if (!containsGroupKey(newGroups, oldGroup.getGroupKey())) {
+                    mRankCache.remove(oldGroup.getGroupKey());
                 }
             }
+        }
+        if (!newGroups.isEmpty()) {
+            mOldProcessedNotifications.addAll(newGroups);
+            additionalRank(mOldProcessedNotifications, mOldRankingMap);
+        }
+    }
+
+    /**
+     * Adds a notification that passed the filtering step to the index.
+     *
+     * @return the grouping key the notification is indexed under.
+     */
+    private String addVisibleNotification(StatusBarNotification notification) {
+        String groupingKey = getGroupingKey(notification);
+        mGroupingKeys.put(notification.getKey(), groupingKey);
+        mVisibleNotifications.computeIfAbsent(groupingKey, key -> new HashMap<>())
+                .put(notification.getKey(), notification);
+        return groupingKey;
+    }
 
-            if (showWhen) {
-                groupSummaryNotification.getNotification().extras.putBoolean(
-                        Notification.EXTRA_SHOW_WHEN, true);
-                groupSummaryNotification.getNotification().when = greatestTimestamp;
+    /**
+     * Removes a notification from the index.
+     *
+     * @return the grouping key the notification was indexed under, or {@code null} if it was not
+     * visible.
+     */
+    @Nullable
+    private String removeVisibleNotification(StatusBarNotification notification) {
+        String groupingKey = mGroupingKeys.remove(notification.getKey());
+        if (groupingKey == null) {
+            return null;
+        }
+        Map<String, StatusBarNotification> members = mVisibleNotifications.get(groupingKey);
+        if (members != null) {
+            members.remove(notification.getKey());
+            if (members.isEmpty()) {
+                mVisibleNotifications.remove(groupingKey);
             }
-        });
+        }
+        return groupingKey;
+    }
 
-        return validGroupList;
+    private void indexProcessedGroup(NotificationGroup group) {
+        // resolve the view type here so that the adapter only has to read it
+        group.getViewType();
+        String groupingKey = mGroupingKeys.get(group.getNotificationForSorting().getKey());
+        if (groupingKey != null) {
+            mProcessedGroups.computeIfAbsent(groupingKey, key -> new ArrayList<>()).add(group);
+        }
+    }
+
+    /**
+     * Returns the key that is used to decide which notifications are grouped together. Call
+     * notifications are never grouped, so they are keyed by their own notification key.
+     */
+    private static String getGroupingKey(StatusBarNotification notification) {
+        if (Notification.CATEGORY_CALL.equals(notification.getNotification().category)) {
+            return notification.getKey();
+        }
+        return notification.getGroupKey();
     }
 
     /**
      * Add new NotificationGroup to an existing list of NotificationGroups.
      *
+     * <p> Existing groups are looked up in the index by the grouping key of the notification, and
+     * new groups are appended, since the list is sorted by {@link #additionalRank} afterwards.
+     *
      * @param newNotification the {@link StatusBarNotification} that should be added to the list.
      * @return list of grouped notifications as {@link NotificationGroup}s.
      */
     private List<NotificationGroup> additionalGroup(StatusBarNotification newNotification) {
         Notification notification = newNotification.getNotification();
+        String groupingKey = addVisibleNotification(newNotification);
 
         if (notification.isGroupSummary()) {
             // if child notifications already exist, ignore this insertion
-            for (String key : mOldNotifications.keySet()) {
-                if (hasSameGroupKey(mOldNotifications.get(key), newNotification)) {
-                    return mOldProcessedNotifications;
-                }
+            if (mVisibleNotifications.get(groupingKey).size() > 1) {
+                return mOldProcessedNotifications;
+            }
+            // automatically generated group summaries without children are not shown, see group()
+            if (newNotification.getOverrideGroupKey() != null) {
+                return mOldProcessedNotifications;
             }
             // if child notifications do not exist, insert the summary as a new notification
             NotificationGroup newGroup = new NotificationGroup();
             newGroup.setGroupSummaryNotification(newNotification);
             mOldProcessedNotifications.add(newGroup);
+            indexProcessedGroup(newGroup);
             return mOldProcessedNotifications;
 
         } else {
-            for (int i = 0; i < mOldProcessedNotifications.size(); i++) {
-                NotificationGroup oldGroup = mOldProcessedNotifications.get(i);
-                // if a group already exists
-                if (TextUtils.equals(oldGroup.getGroupKey(), newNotification.getGroupKey())) {
-                    // if a standalone group summary exists, replace the group summary notification
-                    if (oldGroup.getChildCount() == 0) {
-                        mOldProcessedNotifications.add(i, new NotificationGroup(newNotification));
-                        return mOldProcessedNotifications;
-                    }
-                    // if a group already exist with multiple children, insert outside of the group
-                    mOldProcessedNotifications.add(new NotificationGroup(newNotification));
+            NotificationGroup standaloneSummary = findStandaloneSummary(groupingKey);
+            NotificationGroup newGroup = new NotificationGroup(newNotification);
+            indexProcessedGroup(newGroup);
+            // if a standalone group summary exists, replace the group summary notification. The
+            // summary is moved behind the new notification instead of shifting the list.
+            if (standaloneSummary != null) {
+                int index = mOldProcessedNotifications.indexOf(standaloneSummary);
+                if (index >= 0) {
+                    mOldProcessedNotifications.set(index, newGroup);
+                    mOldProcessedNotifications.add(standaloneSummary);
                     return mOldProcessedNotifications;
                 }
             }
-            // if it is a new notification, insert directly
-            mOldProcessedNotifications.add(new NotificationGroup(newNotification));
+            // if it is a new notification, or a group already exists with children, insert
+            // outside of the group
+            mOldProcessedNotifications.add(newGroup);
             return mOldProcessedNotifications;
         }
     }
 
-    private boolean hasSameGroupKey(
-            StatusBarNotification notification1, StatusBarNotification notification2) {
-        return TextUtils.equals(notification1.getGroupKey(), notification2.getGroupKey());
+    /**
+     * Returns the processed group with the given grouping key that only consists of a group
+     * summary notification, if any.
+     */
+    @Nullable
+    private NotificationGroup findStandaloneSummary(String groupingKey) {
+        List<NotificationGroup> groups = mProcessedGroups.get(groupingKey);
+        if (groups == null) {
+            return null;
+        }
+        for (NotificationGroup group : groups) {
+            if (group.getChildCount() == 0) {
+                return group;
+            }
+        }
+        return null;
     }
 
     /**
      * Rank notifications according to the ranking key supplied by the notification.
+     *
+     * <p>The rank of every notification is looked up once before sorting, so that comparisons
+     * do not look up rankings.
      */
     private List<NotificationGroup> rank(List<NotificationGroup> notifications,
             RankingMap rankingMap) {
+        NotificationListenerService.Ranking ranking = new NotificationListenerService.Ranking();
 
-        Collections.sort(notifications, new NotificationComparator(rankingMap));
+        List<RankedItem<NotificationGroup>> rankedGroups = new ArrayList<>(notifications.size());
+        for (NotificationGroup group : notifications) {
+            rankedGroups.add(new RankedItem<>(group,
+                    getRank(rankingMap, group.getNotificationForSorting().getKey(), ranking),
+                    /* sortKey= */ null));
+        }
+        sortByRank(notifications, rankedGroups);
 
         // Rank within each group
-        notifications.forEach(notificationGroup -> {
-            if (notificationGroup.isGroup()) {
-                Collections.sort(
-                        notificationGroup.getChildNotifications(),
-                        new InGroupComparator(rankingMap));
+        for (NotificationGroup group : notifications) {
+            if (!group.isGroup()) {
+                continue;
+            }
+            List<StatusBarNotification> children = group.getChildNotifications();
+            List<RankedItem<StatusBarNotification>> rankedChildren =
+                    new ArrayList<>(children.size());
+            for (StatusBarNotification child : children) {
+                rankedChildren.add(new RankedItem<>(child,
+                        getRank(rankingMap, child.getKey(), ranking),
+                        child.getNotification().getSortKey()));
             }
-        });
+            sortByRank(children, rankedChildren);
+        }
         return notifications;
     }
 
     /**
      * Only rank top-level notification groups because no children should be inserted into a group.
+     *
+     * <p> Groups are sorted by the ranks in {@link #mRankCache}, so that groups that were already
+     * shown keep their relative order until the list is processed again.
      */
     public List<NotificationGroup> additionalRank(
             List<NotificationGroup> notifications, RankingMap newRankingMap) {
-
-        Collections.sort(
-                notifications, new AdditionalNotificationComparator(newRankingMap));
+        if (notifications.size() < 2) {
+            return notifications;
+        }
+        List<RankedItem<NotificationGroup>> rankedGroups = new ArrayList<>(notifications.size());
+        for (NotificationGroup group : notifications) {
+            rankedGroups.add(new RankedItem<>(group,
+                    mRankCache.getRank(group, mOldRankingMap, newRankingMap),
+                    /* sortKey= */ null));
+        }
+        sortByRank(notifications, rankedGroups);
 
         return notifications;
     }
@@ -494,100 +876,60 @@ public class PreprocessingManager {
         }
     }
 
-    /**
-     * Comparator that sorts within the notification group by the sort key. If a sort key is not
-     * supplied, sort by the global ranking order.
-     */
-    private static class InGroupComparator implements Comparator<StatusBarNotification> {
-        private final RankingMap mRankingMap;
-
-        InGroupComparator(RankingMap rankingMap) {
-            mRankingMap = rankingMap;
-        }
-
-        @Override
-        public int compare(StatusBarNotification left, StatusBarNotification right) {
-            if (left.getNotification().getSortKey() != null
-                    && right.getNotification().getSortKey() != null) {
-                return left.getNotification().getSortKey().compareTo(
-                        right.getNotification().getSortKey());
+    private static boolean containsGroupKey(List<NotificationGroup> groups, String groupKey) {
+        for (NotificationGroup group : groups) {
+            if (TextUtils.equals(groupKey, group.getGroupKey())) {
+                return true;
             }
-
-            NotificationListenerService.Ranking leftRanking =
-                    new NotificationListenerService.Ranking();
-            mRankingMap.getRanking(left.getKey(), leftRanking);
-
-            NotificationListenerService.Ranking rightRanking =
-                    new NotificationListenerService.Ranking();
-            mRankingMap.getRanking(right.getKey(), rightRanking);
-
-            return leftRanking.getRank() - rightRanking.getRank();
         }
+        return false;
     }
 
     /**
-     * Comparator that sorts the notification groups by their representative notification's rank.
+     * Sorts the items in place in the order of their ranked counterparts.
      */
-    private class NotificationComparator implements Comparator<NotificationGroup> {
-        private final NotificationListenerService.RankingMap mRankingMap;
-
-        NotificationComparator(NotificationListenerService.RankingMap rankingMap) {
-            mRankingMap = rankingMap;
+    private static <T> void sortByRank(List<T> items, List<RankedItem<T>> rankedItems) {
+        if (rankedItems.size() < 2) {
+            return;
         }
-
-        @Override
-        public int compare(NotificationGroup left, NotificationGroup right) {
-            NotificationListenerService.Ranking leftRanking =
-                    new NotificationListenerService.Ranking();
-            mRankingMap.getRanking(left.getNotificationForSorting().getKey(), leftRanking);
-
-            NotificationListenerService.Ranking rightRanking =
-                    new NotificationListenerService.Ranking();
-            mRankingMap.getRanking(right.getNotificationForSorting().getKey(), rightRanking);
-
-            return leftRanking.getRank() - rightRanking.getRank();
+        Collections.sort(rankedItems, RankedItem.COMPARATOR);
+        for (int i = 0; i < rankedItems.size(); i++) {
+            items.set(i, rankedItems.get(i).mItem);
         }
     }
 
     /**
-     * Comparator that sorts the notification groups by their representative notification's
-     * rank using both of the initial ranking map and the current ranking map.
-     *
-     * <p>Cache the ranking value so that it doesn't change over time.</p>
+     * Returns the rank of the notification with the given key, using the given ranking as scratch
+     * space, or 0 if the ranking map has no ranking for it.
      */
-    private class AdditionalNotificationComparator implements Comparator<NotificationGroup> {
-        private final RankingMap mNewRankingMap;
-
-        AdditionalNotificationComparator(RankingMap newRankingMap) {
-            mNewRankingMap = newRankingMap;
-        }
-
-        @Override
-        public int compare(NotificationGroup left, NotificationGroup right) {
-            int leftRankingNumber = getRanking(left, mNewRankingMap);
-            int rightRankingNumber = getRanking(right, mNewRankingMap);
-            return leftRankingNumber - rightRankingNumber;
-        }
+    private static int getRank(RankingMap rankingMap, String key,
+            NotificationListenerService.Ranking ranking) {
+        return rankingMap.getRanking(key, ranking) ? ranking.getRank() : 0;
     }
 
-    private int getRanking(NotificationGroup group, RankingMap newRankingMap) {
-        int rankingNumber;
-
-        if (mRanking.containsKey(group.getGroupKey())) {
-            rankingNumber = mRanking.get(group.getGroupKey());
-        } else {
-            NotificationListenerService.Ranking rightRanking =
-                    new NotificationListenerService.Ranking();
-            if (!mOldRankingMap.getRanking(
-                    group.getNotificationForSorting().getKey(), rightRanking)) {
-                if (newRankingMap != null) {
-                    newRankingMap.getRanking(
-                            group.getNotificationForSorting().getKey(), rightRanking);
-                }
+    /**
+     * An item to sort together with the rank and sort key extracted from its notification.
+     *
+     * <p>Items are sorted by their sort keys if both of them have one, and by their ranks
+     * otherwise.
+     */
+    private static class RankedItem<T> {
+        static final Comparator<RankedItem<?>> COMPARATOR = (left, right) -> {
+            if (left.mSortKey != null && right.mSortKey != null) {
+                return left.mSortKey.compareTo(right.mSortKey);
             }
-            rankingNumber = rightRanking.getRank();
+            return left.mRank - right.mRank;
+        };
+
+        final T mItem;
+        final int mRank;
+        @Nullable
+        final String mSortKey;
+
+        RankedItem(T item, int rank, @Nullable String sortKey) {
+            mItem = item;
+            mRank = rank;
+            mSortKey = sortKey;
         }
-        mRanking.putIfAbsent(group.getGroupKey(), rankingNumber);
-        return rankingNumber;
     }
 }
@@ -0,0 +1,193 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.car.notification;
+
+import android.annotation.Nullable;
+import android.app.NotificationChannel;
+import android.service.notification.NotificationListenerService.Ranking;
+import android.service.notification.NotificationListenerService.RankingMap;
+import android.util.ArrayMap;
+
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * The ranking attributes of notifications that affect the notification center, copied out of a
+ * {@link RankingMap} so that two ranking maps can be compared by key.
+ *
+ * <p> This class is not thread safe. Snapshots are created and compared on the notification
+ * ingestion thread; the resulting {@link Delta}s are handed to the main thread.
+ */
+class RankingSnapshot {
+    private final Map<String, Entry> mEntries = new ArrayMap<>();
+    private final Ranking mTemporaryRanking = new Ranking();
+
+    /**
+     * Creates a snapshot of all the notifications in the ranking map.
+     */
+    static RankingSnapshot of(@Nullable RankingMap rankingMap) {
+        RankingSnapshot snapshot = new RankingSnapshot();
+        if (rankingMap != null) {
+            for (String key : rankingMap.getOrderedKeys()) {
+                snapshot.update(key, rankingMap);
+            }
+        }
+        return snapshot;
+    }
+
+    /**
+     * Replaces the entry of a single notification with its ranking in the ranking map.
+     */
+    void update(String key, RankingMap rankingMap) {
+        if (!rankingMap.getRanking(key, mTemporaryRanking)) {
+            mEntries.remove(key);
+            return;
+        }
+        NotificationChannel channel = mTemporaryRanking.getChannel();
+        update(key, mTemporaryRanking.getRank(), mTemporaryRanking.getImportance(),
+                mTemporaryRanking.getOverrideGroupKey(), channel == null ? null : channel.getId());
+    }
+
+    /**
+     * Replaces the entry of a single notification with the given ranking attributes.
+     */
+    void update(String key, int rank, int importance, @Nullable String overrideGroupKey,
+            @Nullable String channelId) {
+        mEntries.put(key, new Entry(rank, importance, overrideGroupKey, channelId));
+    }
+
+    void remove(String key) {
+        mEntries.remove(key);
+    }
+
+    /**
+     * Returns the changes of the notifications that are in both this and the newer snapshot.
+     * Notifications that are only in one of them are posted or removed, which is handled
+     * separately.
+     */
+    Delta diff(RankingSnapshot newer) {
+        Delta delta = new Delta();
+        for (Map.Entry<String, Entry> newEntry : newer.mEntries.entrySet()) {
+            Entry oldEntry = mEntries.get(newEntry.getKey());
+            if (oldEntry == null) {
+                continue;
+            }
+            int changes = oldEntry.diff(newEntry.getValue());
+            if (changes != 0) {
+                delta.add(newEntry.getKey(), changes, newEntry.getValue().mOverrideGroupKey);
+            }
+        }
+        return delta;
+    }
+
+    private static class Entry {
+        final int mRank;
+        final int mImportance;
+        @Nullable
+        final String mOverrideGroupKey;
+        @Nullable
+        final String mChannelId;
+
+        Entry(int rank, int importance, @Nullable String overrideGroupKey,
+                @Nullable String channelId) {
+            mRank = rank;
+            mImportance = importance;
+            mOverrideGroupKey = overrideGroupKey;
+            mChannelId = channelId;
+        }
+
+        int diff(Entry other) {
+            int changes = 0;
+            if (mRank != other.mRank) {
+                changes |= Delta.CHANGED_RANK;
+            }
+            if (mImportance != other.mImportance) {
+                changes |= Delta.CHANGED_IMPORTANCE;
+            }
+            if (!Objects.equals(mOverrideGroupKey, other.mOverrideGroupKey)) {
+                changes |= Delta.CHANGED_OVERRIDE_GROUP_KEY;
+            }
+            if (!Objects.equals(mChannelId, other.mChannelId)) {
+                changes |= Delta.CHANGED_CHANNEL;
+            }
+            return changes;
+        }
+    }
+
+    /**
+     * The ranking changes of a set of notifications, as a bit mask of {@code CHANGED_*} flags per
+     * notification key.
+     */
+    static class Delta {
+        static final int CHANGED_RANK = 1;
+        static final int CHANGED_IMPORTANCE = 1 << 1;
+        static final int CHANGED_OVERRIDE_GROUP_KEY = 1 << 2;
+        static final int CHANGED_CHANNEL = 1 << 3;
+
+        private final Map<String, Integer> mChanges = new ArrayMap<>();
+        private final Map<String, String> mOverrideGroupKeys = new ArrayMap<>();
+
+        void add(String key, int changes, @Nullable String overrideGroupKey) {
+            Integer previousChanges = mChanges.get(key);
+            mChanges.put(key, previousChanges == null ? changes : previousChanges | changes);
+            mOverrideGroupKeys.put(key, overrideGroupKey);
+        }
+
+        /**
+         * Adds the changes of a later delta to this one.
+         */
+        void merge(Delta later) {
+            for (Map.Entry<String, Integer> change : later.mChanges.entrySet()) {
+                add(change.getKey(), change.getValue(),
+                        later.mOverrideGroupKeys.get(change.getKey()));
+            }
+        }
+
+        void clear() {
+            mChanges.clear();
+            mOverrideGroupKeys.clear();
+        }
+
+        boolean isEmpty() {
+            return mChanges.isEmpty();
+        }
+
+        int size() {
+            return mChanges.size();
+        }
+
+        Set<String> getKeys() {
+            return mChanges.keySet();
+        }
+
+        /**
+         * Returns the {@code CHANGED_*} flags of the notification, or 0 if it did not change.
+         */
+        int getChanges(String key) {
+            Integer changes = mChanges.get(key);
+            return changes == null ? 0 : changes;
+        }
+
+        /**
+         * Returns the latest override group key of the notification.
+         */
+        @Nullable
+        String getOverrideGroupKey(String key) {
+            return mOverrideGroupKeys.get(key);
+        }
+    }
+}
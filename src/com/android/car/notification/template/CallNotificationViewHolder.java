@@ -49,10 +49,15 @@ public class CallNotificationViewHolder extends CarNotificationBaseViewHolder {
     @Override
     public void bind(StatusBarNotification statusBarNotification, boolean isInGroup,
             boolean isHeadsUp) {
+        if (isAlreadyBound(statusBarNotification, isInGroup, isHeadsUp,
+                /* isRestricted= */ false)) {
+            return;
+        }
         super.bind(statusBarNotification, isInGroup, isHeadsUp);
         bindBody(statusBarNotification);
         mHeaderView.bind(statusBarNotification, isInGroup);
         mActionsView.bind(mClickHandlerFactory, statusBarNotification);
+        markBound(statusBarNotification, isInGroup, isHeadsUp, /* isRestricted= */ false);
     }
 
     /**
@@ -28,7 +28,9 @@ import androidx.cardview.widget.CardView;
 import androidx.recyclerview.widget.RecyclerView;
 
 import com.android.car.notification.NotificationClickHandlerFactory;
+import com.android.car.notification.NotificationFingerprintCache;
 import com.android.car.notification.NotificationUtils;
+import com.android.car.notification.PreprocessingManager;
 import com.android.car.notification.R;
 import com.android.car.notification.ThemesUtil;
 
@@ -36,6 +38,11 @@ import com.android.car.notification.ThemesUtil;
  * The base view holder class that all template view holders should extend.
  */
 public abstract class CarNotificationBaseViewHolder extends RecyclerView.ViewHolder {
+    private static final int BIND_MODE_IN_GROUP = 1;
+    private static final int BIND_MODE_HEADS_UP = 1 << 1;
+    private static final int BIND_MODE_RESTRICTED = 1 << 2;
+    private static final int BIND_MODE_IN_CALL = 1 << 3;
+
     private final Context mContext;
     private final NotificationClickHandlerFactory mClickHandlerFactory;
 
@@ -81,6 +88,15 @@ public abstract class CarNotificationBaseViewHolder extends RecyclerView.ViewHol
      **/
     private boolean mInitializedColors;
 
+    /**
+     * Identifies the content and mode of the last completed binding, so that binding a
+     * notification that is already shown the same way can be skipped. {@code null} when the view
+     * holder is not bound.
+     **/
+    @Nullable
+    private StatusBarNotification mBoundNotification;
+    private int mBoundMode;
+
     CarNotificationBaseViewHolder(
             View itemView, NotificationClickHandlerFactory clickHandlerFactory) {
         super(itemView);
@@ -120,18 +136,74 @@ public abstract class CarNotificationBaseViewHolder extends RecyclerView.ViewHol
 
         if (isInGroup) {
             mInnerView.setBackgroundColor(mDefaultBackgroundColor);
-            mInnerView.setOnClickListener(
-                    mClickHandlerFactory.getClickHandler(mStatusBarNotification));
-        } else {
-            mCardView.setOnClickListener(
-                    mClickHandlerFactory.getClickHandler(mStatusBarNotification));
         }
+        bindClickHandlers(isInGroup);
 
         bindCardView(mCardView, isInGroup);
         bindHeader(mHeaderView, isInGroup);
         bindBody(mBodyView, isInGroup);
     }
 
+    private void bindClickHandlers(boolean isInGroup) {
+        View clickableView = isInGroup ? mInnerView : mCardView;
+        clickableView.setOnClickListener(
+                mClickHandlerFactory.getClickHandler(mStatusBarNotification));
+    }
+
+    /**
+     * Returns true if the view holder already shows a notification with the same key and visible
+     * content as {@code statusBarNotification}, bound in the same mode. Rebinding it would not
+     * change anything on screen, so only the click handlers are updated to the new version.
+     *
+     * <p> Child view holders should check this before calling {@link #bind} and call
+     * {@link #markBound} once they finished binding.
+     */
+    boolean isAlreadyBound(StatusBarNotification statusBarNotification, boolean isInGroup,
+            boolean isHeadsUp, boolean isRestricted) {
+        if (mBoundNotification == null
+                || !mBoundNotification.getKey().equals(statusBarNotification.getKey())
+                || mBoundMode != getBindMode(isInGroup, isHeadsUp, isRestricted)
+                || mBoundNotification.getNotification().when
+                        != statusBarNotification.getNotification().when
+                || !NotificationFingerprintCache.hasSameContent(
+                        mBoundNotification, statusBarNotification)) {
+            return false;
+        }
+        mBoundNotification = statusBarNotification;
+        mStatusBarNotification = statusBarNotification;
+        bindClickHandlers(isInGroup);
+        if (mActionsView != null) {
+            mActionsView.bind(mClickHandlerFactory, statusBarNotification);
+        }
+        return true;
+    }
+
+    /**
+     * Remembers that {@code statusBarNotification} has been bound in the given mode.
+     */
+    void markBound(StatusBarNotification statusBarNotification, boolean isInGroup,
+            boolean isHeadsUp, boolean isRestricted) {
+        mBoundNotification = statusBarNotification;
+        mBoundMode = getBindMode(isInGroup, isHeadsUp, isRestricted);
+    }
+
+    private int getBindMode(boolean isInGroup, boolean isHeadsUp, boolean isRestricted) {
+        int mode = 0;
+        if (isInGroup) {
+            mode |= BIND_MODE_IN_GROUP;
+        }
+        if (isHeadsUp) {
+            mode |= BIND_MODE_HEADS_UP;
+        }
+        if (isRestricted) {
+            mode |= BIND_MODE_RESTRICTED;
+        }
+        if (PreprocessingManager.getInstance(mContext).isInCall()) {
+            mode |= BIND_MODE_IN_CALL;
+        }
+        return mode;
+    }
+
     /**
      * Binds a {@link StatusBarNotification} to a notification template's card.
      *
@@ -238,6 +310,7 @@ public abstract class CarNotificationBaseViewHolder extends RecyclerView.ViewHol
     @CallSuper
     void reset() {
         mStatusBarNotification = null;
+        mBoundNotification = null;
         mBackgroundColor = mDefaultBackgroundColor;
         mInitializedColors = false;
 
@@ -262,6 +335,14 @@ public abstract class CarNotificationBaseViewHolder extends RecyclerView.ViewHol
         }
     }
 
+    /**
+     * Called when this view holder is recycled to release what is held for the bound notification,
+     * such as pending icon loads.
+     */
+    public void onRecycled() {
+        reset();
+    }
+
     /**
      * Returns the current {@link StatusBarNotification} that this view holder is holding.
      * Note that any child class that is not calling {@link #bind} has to override this method.
@@ -43,6 +43,7 @@ public class CarNotificationBodyView extends RelativeLayout {
     private final int mDefaultPrimaryTextColor;
     @ColorInt
     private final int mDefaultSecondaryTextColor;
+    private final NotificationIconLoader mIconLoader;
     private boolean mShowBigIcon;
     private TextView mTitleView;
     private TextView mContentView;
@@ -73,6 +74,7 @@ public class CarNotificationBodyView extends RelativeLayout {
                 ThemesUtil.getAttrColor(getContext(), android.R.attr.textColorPrimary);
         mDefaultSecondaryTextColor =
                 ThemesUtil.getAttrColor(getContext(), android.R.attr.textColorSecondary);
+        mIconLoader = NotificationIconLoader.getInstance(getContext());
         inflate(getContext(), R.layout.car_notification_body_view, /* root= */ this);
     }
 
@@ -113,7 +115,7 @@ public class CarNotificationBodyView extends RelativeLayout {
 
         if (icon != null && mShowBigIcon) {
             mIconView.setVisibility(View.VISIBLE);
-            mIconView.setImageIcon(icon);
+            mIconLoader.loadIcon(mIconView, icon);
         }
     }
 
@@ -151,6 +153,7 @@ public class CarNotificationBodyView extends RelativeLayout {
         mTitleView.setVisibility(View.GONE);
         mContentView.setVisibility(View.GONE);
         mIconView.setVisibility(View.GONE);
+        mIconLoader.cancel(mIconView);
         setPrimaryTextColor(mDefaultPrimaryTextColor);
         setSecondaryTextColor(mDefaultSecondaryTextColor);
     }
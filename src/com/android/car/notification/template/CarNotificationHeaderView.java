@@ -17,17 +17,13 @@ package com.android.car.notification.template;
 
 import android.annotation.ColorInt;
 import android.app.Notification;
-import android.car.userlib.CarUserManagerHelper;
 import android.content.Context;
-import android.content.pm.ApplicationInfo;
-import android.content.pm.PackageManager;
 import android.content.res.TypedArray;
 import android.graphics.drawable.Drawable;
 import android.os.Bundle;
 import android.service.notification.StatusBarNotification;
 import android.text.TextUtils;
 import android.util.AttributeSet;
-import android.util.Log;
 import android.view.View;
 import android.widget.DateTimeView;
 import android.widget.ImageView;
@@ -36,6 +32,7 @@ import android.widget.TextView;
 
 import androidx.annotation.Nullable;
 
+import com.android.car.notification.PackageInfoCache;
 import com.android.car.notification.R;
 
 /**
@@ -43,10 +40,7 @@ import com.android.car.notification.R;
  */
 public class CarNotificationHeaderView extends LinearLayout {
 
-    private static final String TAG = "car_notification_header";
-
-    private final PackageManager mPackageManager;
-    private final CarUserManagerHelper mCarUserManagerHelper;
+    private final PackageInfoCache mPackageInfoCache;
     private final int mDefaultTextColor;
     private final String mSeparatorText;
 
@@ -76,8 +70,7 @@ public class CarNotificationHeaderView extends LinearLayout {
     }
 
     {
-        mPackageManager = getContext().getPackageManager();
-        mCarUserManagerHelper = new CarUserManagerHelper(getContext());
+        mPackageInfoCache = PackageInfoCache.getInstance(getContext());
         mDefaultTextColor = getContext().getColor(R.color.primary_text_color);
         mSeparatorText = getContext().getString(R.string.header_text_separator);
         inflate(getContext(), R.layout.car_notification_header_view, this);
@@ -116,11 +109,9 @@ public class CarNotificationHeaderView extends LinearLayout {
 
         Notification notification = statusBarNotification.getNotification();
 
-        Context packageContext = statusBarNotification.getPackageContext(getContext());
-
         // app icon
         mIconView.setVisibility(View.VISIBLE);
-        Drawable drawable = notification.getSmallIcon().loadDrawable(packageContext);
+        Drawable drawable = mPackageInfoCache.getSmallIcon(getContext(), statusBarNotification);
         mIconView.setImageDrawable(drawable);
 
         StringBuilder stringBuilder = new StringBuilder();
@@ -205,14 +196,6 @@ public class CarNotificationHeaderView extends LinearLayout {
      */
     @Nullable
     private String loadHeaderAppName(String packageName) {
-        ApplicationInfo info;
-        try {
-            info = mPackageManager.getApplicationInfoAsUser(packageName.trim(), /* flags= */ 0,
-                    mCarUserManagerHelper.getCurrentForegroundUserId());
-        } catch (PackageManager.NameNotFoundException e) {
-            Log.e(TAG, "Error fetching app name in car notification header" + e);
-            return null;
-        }
-        return String.valueOf(mPackageManager.getApplicationLabel(info));
+        return mPackageInfoCache.getAppLabel(getContext(), packageName);
     }
 }
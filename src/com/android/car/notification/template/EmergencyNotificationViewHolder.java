@@ -61,6 +61,10 @@ public class EmergencyNotificationViewHolder extends CarNotificationBaseViewHold
     @Override
     public void bind(StatusBarNotification statusBarNotification, boolean isInGroup,
             boolean isHeadsUp) {
+        if (isAlreadyBound(statusBarNotification, isInGroup, isHeadsUp,
+                /* isRestricted= */ false)) {
+            return;
+        }
         super.bind(statusBarNotification, isInGroup, isHeadsUp);
 
         Notification notification = statusBarNotification.getNotification();
@@ -74,5 +78,6 @@ public class EmergencyNotificationViewHolder extends CarNotificationBaseViewHold
         CharSequence text = extraData.getCharSequence(Notification.EXTRA_TEXT);
         Icon icon = notification.getLargeIcon();
         mBodyView.bind(title, text, icon);
+        markBound(statusBarNotification, isInGroup, isHeadsUp, /* isRestricted= */ false);
     }
 }
@@ -50,6 +50,7 @@ public class MessageNotificationViewHolder extends CarNotificationBaseViewHolder
     private final TextView mMessageView;
     private final TextView mUnshownCountView;
     private final ImageButton mAvatarView;
+    private final NotificationIconLoader mIconLoader;
     private NotificationClickHandlerFactory mClickHandlerFactory;
 
     public MessageNotificationViewHolder(
@@ -69,6 +70,7 @@ public class MessageNotificationViewHolder extends CarNotificationBaseViewHolder
         mBodyView = view.findViewById(R.id.notification_body);
         mUnshownCountView = view.findViewById(R.id.message_count);
         mAvatarView = view.findViewById(R.id.notification_body_icon);
+        mIconLoader = NotificationIconLoader.getInstance(mContext);
         mClickHandlerFactory = clickHandlerFactory;
     }
 
@@ -79,10 +81,15 @@ public class MessageNotificationViewHolder extends CarNotificationBaseViewHolder
     @Override
     public void bind(StatusBarNotification statusBarNotification, boolean isInGroup,
             boolean isHeadsUp) {
+        if (isAlreadyBound(statusBarNotification, isInGroup, isHeadsUp,
+                /* isRestricted= */ false)) {
+            return;
+        }
         super.bind(statusBarNotification, isInGroup, isHeadsUp);
         bindBody(statusBarNotification, isInGroup, /* isRestricted= */ false, isHeadsUp);
         mHeaderView.bind(statusBarNotification, isInGroup);
         mActionsView.bind(mClickHandlerFactory, statusBarNotification);
+        markBound(statusBarNotification, isInGroup, isHeadsUp, /* isRestricted= */ false);
     }
 
     /**
@@ -91,10 +98,15 @@ public class MessageNotificationViewHolder extends CarNotificationBaseViewHolder
      */
     public void bindRestricted(StatusBarNotification statusBarNotification, boolean isInGroup,
             boolean isHeadsUp) {
+        if (isAlreadyBound(statusBarNotification, isInGroup, isHeadsUp,
+                /* isRestricted= */ true)) {
+            return;
+        }
         super.bind(statusBarNotification, isInGroup, isHeadsUp);
         bindBody(statusBarNotification, isInGroup, /* isRestricted= */ true, isHeadsUp);
         mHeaderView.bind(statusBarNotification, isInGroup);
         mActionsView.bind(mClickHandlerFactory, statusBarNotification);
+        markBound(statusBarNotification, isInGroup, isHeadsUp, /* isRestricted= */ true);
     }
 
     /**
@@ -170,7 +182,7 @@ public class MessageNotificationViewHolder extends CarNotificationBaseViewHolder
 
         if (avatar != null) {
             mAvatarView.setVisibility(View.VISIBLE);
-            mAvatarView.setImageIcon(avatar);
+            mIconLoader.loadIcon(mAvatarView, avatar);
         }
 
         int unshownCount = messageCount - 1;
@@ -200,6 +212,7 @@ public class MessageNotificationViewHolder extends CarNotificationBaseViewHolder
         mMessageView.setText(null);
 
         mAvatarView.setVisibility(View.GONE);
+        mIconLoader.cancel(mAvatarView);
         mAvatarView.setImageIcon(null);
 
         mUnshownCountView.setVisibility(View.GONE);
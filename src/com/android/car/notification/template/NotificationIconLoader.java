@@ -0,0 +1,334 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.car.notification.template;
+
+import android.annotation.Nullable;
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.drawable.BitmapDrawable;
+import android.graphics.drawable.Drawable;
+import android.graphics.drawable.Icon;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+import android.util.LruCache;
+import android.view.ViewGroup;
+import android.widget.ImageView;
+
+import com.android.car.notification.ContentHasher;
+import com.android.car.notification.R;
+import com.android.internal.annotations.VisibleForTesting;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Map;
+import java.util.Objects;
+import java.util.WeakHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+
+/**
+ * Loads notification {@link Icon}s such as avatars and large icons into {@link ImageView}s.
+ *
+ * <p> Icons are decoded on a background executor and downsampled to the size of the target view.
+ * Tinted icons are loaded by the icon itself, at full size, so that they keep their tint.
+ * Decoded bitmaps are kept in a memory cache bounded by their byte size, so that rebinding a view
+ * holder for an icon that was shown before does not decode it again. A pending load is cancelled
+ * when a new icon is loaded into the same view or when the view is {@link #cancel cancelled}, for
+ * example when its view holder is recycled.
+ *
+ * <p> This class must be used from the main thread.
+ */
+class NotificationIconLoader {
+    private static final String TAG = "NotificationIconLoader";
+
+    private static final int DECODE_THREAD_COUNT = 2;
+    // Fraction of the maximum heap size that the cached bitmaps may use.
+    private static final int CACHE_HEAP_FRACTION = 16;
+
+    private static NotificationIconLoader sInstance;
+
+    private final Context mContext;
+    private final int mDefaultIconSize;
+    private final Handler mMainThreadHandler = new Handler(Looper.getMainLooper());
+    private final LruCache<IconKey, Bitmap> mBitmapCache =
+            new LruCache<IconKey, Bitmap>(
+                    (int) (Runtime.getRuntime().maxMemory() / CACHE_HEAP_FRACTION)) {
+                @Override
+                protected int sizeOf(IconKey key, Bitmap bitmap) {
+                    return bitmap.getAllocationByteCount();
+                }
+            };
+    private final Map<ImageView, LoadTask> mPendingLoads = new WeakHashMap<>();
+
+    private Executor mDecodeExecutor = Executors.newFixedThreadPool(DECODE_THREAD_COUNT);
+
+    private NotificationIconLoader(Context context) {
+        mContext = context;
+        mDefaultIconSize = context.getResources().getDimensionPixelSize(
+                R.dimen.notification_touch_target_size);
+    }
+
+    static NotificationIconLoader getInstance(Context context) {
+        if (sInstance == null) {
+            sInstance = new NotificationIconLoader(context.getApplicationContext());
+        }
+        return sInstance;
+    }
+
+    /**
+     * Loads the icon into the view, replacing any icon that is loaded or being loaded into it.
+     *
+     * <p> The icon is set immediately if it has been decoded for the size of the view before.
+     * Otherwise the view keeps showing its current drawable until the decoding finishes, so that
+     * an icon that is loaded again does not blink.
+     */
+    void loadIcon(ImageView view, @Nullable Icon icon) {
+        cancel(view);
+        if (icon == null) {
+            view.setImageDrawable(null);
+            return;
+        }
+
+        int size = getTargetSize(view);
+        IconKey key = IconKey.of(icon, size);
+        Bitmap cached = key == null ? null : mBitmapCache.get(key);
+        if (cached != null) {
+            view.setImageBitmap(cached);
+            return;
+        }
+
+        LoadTask task = new LoadTask(view, icon, key, size);
+        mPendingLoads.put(view, task);
+        mDecodeExecutor.execute(task);
+    }
+
+    /**
+     * Cancels the pending load into the view, if any.
+     */
+    void cancel(ImageView view) {
+        LoadTask task = mPendingLoads.remove(view);
+        if (task != null) {
+            task.mCancelled = true;
+        }
+    }
+
+    @VisibleForTesting
+    void setDecodeExecutor(Executor executor) {
+        mDecodeExecutor = executor;
+    }
+
+    @VisibleForTesting
+    void clearCache() {
+        mBitmapCache.evictAll();
+    }
+
+    private int getTargetSize(ImageView view) {
+        ViewGroup.LayoutParams layoutParams = view.getLayoutParams();
+        int size = Math.max(view.getWidth(), view.getHeight());
+        if (size <= 0 && layoutParams != null) {
+            size = Math.max(layoutParams.width, layoutParams.height);
+        }
+        return size > 0 ? size : mDefaultIconSize;
+    }
+
+    /**
+     * Decodes the icon on the calling thread, downsampling bitmaps larger than the given size.
+     */
+    @Nullable
+    private Drawable decode(Icon icon, int size) {
+        if (icon.hasTint()) {
+            // only the icon can apply its tint list and blend mode to the drawable
+            return icon.loadDrawable(mContext);
+        }
+        switch (icon.getType()) {
+            case Icon.TYPE_URI:
+                return toDrawable(decodeUri(icon, size));
+            case Icon.TYPE_DATA:
+                return toDrawable(decodeData(icon, size));
+            default:
+                Drawable drawable = icon.loadDrawable(mContext);
+                if (drawable instanceof BitmapDrawable) {
+                    return toDrawable(scaleDown(((BitmapDrawable) drawable).getBitmap(), size));
+                }
+                return drawable;
+        }
+    }
+
+    @Nullable
+    private Bitmap decodeUri(Icon icon, int size) {
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        try (InputStream in = mContext.getContentResolver().openInputStream(icon.getUri())) {
+            BitmapFactory.decodeStream(in, /* outPadding= */ null, options);
+        } catch (IOException | SecurityException e) {
+            Log.w(TAG, "Unable to load icon: " + icon.getUri(), e);
+            return null;
+        }
+
+        options.inSampleSize = calculateSampleSize(options, size);
+        options.inJustDecodeBounds = false;
+        try (InputStream in = mContext.getContentResolver().openInputStream(icon.getUri())) {
+            return BitmapFactory.decodeStream(in, /* outPadding= */ null, options);
+        } catch (IOException | SecurityException e) {
+            Log.w(TAG, "Unable to load icon: " + icon.getUri(), e);
+            return null;
+        }
+    }
+
+    @Nullable
+    private Bitmap decodeData(Icon icon, int size) {
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        BitmapFactory.decodeByteArray(
+                icon.getDataBytes(), icon.getDataOffset(), icon.getDataLength(), options);
+
+        options.inSampleSize = calculateSampleSize(options, size);
+        options.inJustDecodeBounds = false;
+        return BitmapFactory.decodeByteArray(
+                icon.getDataBytes(), icon.getDataOffset(), icon.getDataLength(), options);
+    }
+
+    @Nullable
+    private Drawable toDrawable(@Nullable Bitmap bitmap) {
+        return bitmap == null ? null : new BitmapDrawable(mContext.getResources(), bitmap);
+    }
+
+    /**
+     * Returns the largest power of two sample size that keeps both dimensions of the decoded
+     * bitmap at least as large as the given size.
+     */
+    @VisibleForTesting
+    static int calculateSampleSize(BitmapFactory.Options options, int size) {
+        int sampleSize = 1;
+        int smallerSide = Math.min(options.outWidth, options.outHeight);
+        while (smallerSide / (sampleSize * 2) >= size) {
+            sampleSize *= 2;
+        }
+        return sampleSize;
+    }
+
+    private static Bitmap scaleDown(Bitmap bitmap, int size) {
+        int smallerSide = Math.min(bitmap.getWidth(), bitmap.getHeight());
+        if (smallerSide <= size) {
+            return bitmap;
+        }
+        float scale = (float) size / smallerSide;
+        return Bitmap.createScaledBitmap(bitmap, Math.round(bitmap.getWidth() * scale),
+                Math.round(bitmap.getHeight() * scale), /* filter= */ true);
+    }
+
+    private class LoadTask implements Runnable {
+        private final ImageView mView;
+        private final Icon mIcon;
+        @Nullable
+        private final IconKey mKey;
+        private final int mSize;
+        private volatile boolean mCancelled;
+
+        LoadTask(ImageView view, Icon icon, @Nullable IconKey key, int size) {
+            mView = view;
+            mIcon = icon;
+            mKey = key;
+            mSize = size;
+        }
+
+        @Override
+        public void run() {
+            if (mCancelled) {
+                return;
+            }
+            Drawable drawable = decode(mIcon, mSize);
+            mMainThreadHandler.post(() -> onDecoded(drawable));
+        }
+
+        private void onDecoded(@Nullable Drawable drawable) {
+            if (mKey != null && drawable instanceof BitmapDrawable) {
+                mBitmapCache.put(mKey, ((BitmapDrawable) drawable).getBitmap());
+            }
+            if (mCancelled || mPendingLoads.get(mView) != this) {
+                return;
+            }
+            mPendingLoads.remove(mView);
+            mView.setImageDrawable(drawable);
+        }
+    }
+
+    /**
+     * Identifies the source of an icon and the size it is decoded for. Data icons are identified
+     * by a hash of their bytes, which are unparceled into a new array every time the notification
+     * is posted.
+     *
+     * <p> Bitmap icons are not cached: they are already decoded, the bitmap of a reposted
+     * notification is a new instance, and hashing its pixels costs about as much as scaling it.
+     */
+    private static class IconKey {
+        private final int mType;
+        private final Object mSource;
+        private final int mResId;
+        private final int mSize;
+
+        private IconKey(int type, Object source, int resId, int size) {
+            mType = type;
+            mSource = source;
+            mResId = resId;
+            mSize = size;
+        }
+
+        @Nullable
+        static IconKey of(Icon icon, int size) {
+            if (icon.hasTint()) {
+                // the cache only keeps bitmaps, which do not carry the tint
+                return null;
+            }
+            switch (icon.getType()) {
+                case Icon.TYPE_RESOURCE:
+                    return new IconKey(icon.getType(), icon.getResPackage(), icon.getResId(), size);
+                case Icon.TYPE_URI:
+                    return new IconKey(icon.getType(), icon.getUriString(), /* resId= */ 0, size);
+                case Icon.TYPE_DATA:
+                    long dataHash = new ContentHasher()
+                            .putBytes(icon.getDataBytes(), icon.getDataOffset(),
+                                    icon.getDataLength())
+                            .hash();
+                    return new IconKey(icon.getType(), dataHash, icon.getDataLength(), size);
+                default:
+                    return null;
+            }
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof IconKey)) {
+                return false;
+            }
+            IconKey other = (IconKey) o;
+            return mType == other.mType
+                    && mResId == other.mResId
+                    && mSize == other.mSize
+                    && Objects.equals(mSource, other.mSource);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(mType, mSource, mResId, mSize);
+        }
+    }
+}
@@ -97,6 +97,9 @@ public class CarHeadsUpNotificationManagerTest {
     private static final String CONTENT_TITLE = "CONTENT_TITLE";
     private static final String OVERRIDE_GROUP_KEY = "OVERRIDE_GROUP_KEY";
     private static final long POST_TIME = 12345l;
+    // Longer than the minimum display time and the exit animation, shorter than the duration of
+    // heads-up notifications.
+    private static final long HIDE_DELAY_MS = 3000;
     private static final UserHandle USER_HANDLE = new UserHandle(12);
 
     private StatusBarNotification mNotification1;
@@ -191,6 +194,7 @@ public class CarHeadsUpNotificationManagerTest {
      */
     @After
     public void resetShadow() {
+        PackageInfoCache.getInstance(mContext).clear();
         mManager = null;
         mContext = null;
         ShadowCarAssistUtils.reset();
@@ -260,6 +264,168 @@ public class CarHeadsUpNotificationManagerTest {
         assertThat(mManager.getActiveHeadsUpNotifications().size()).isEqualTo(2);
     }
 
+    @Test
+    public void maybeShowHeadsUp_screenFull_queuesHeadsUp() {
+        when(mRankingMapMock.getRanking(any(), any())).thenReturn(true);
+        when(mRankingMock.getImportance()).thenReturn(NotificationManager.IMPORTANCE_HIGH);
+        StatusBarNotification notification3 = new StatusBarNotification(PKG_1, OP_PKG,
+                ID + 1, TAG, UID, INITIAL_PID, mNotification1.getNotification(), USER_HANDLE,
+                OVERRIDE_GROUP_KEY, POST_TIME);
+
+        setPackageInfo(PKG_1);
+        setPackageInfo(PKG_2);
+        mManager.maybeShowHeadsUp(mNotification1, mRankingMapMock, mActiveNotifications);
+        mManager.maybeShowHeadsUp(mNotification2, mRankingMapMock, mActiveNotifications);
+        mManager.maybeShowHeadsUp(notification3, mRankingMapMock, mActiveNotifications);
+
+        assertThat(mManager.getActiveHeadsUpNotifications().size()).isEqualTo(2);
+        assertThat(mManager.getActiveHeadsUpNotifications()).doesNotContainKey(
+                notification3.getKey());
+        assertThat(mActiveNotifications).containsKey(notification3.getKey());
+    }
+
+    @Test
+    public void maybeShowHeadsUp_screenFull_showsQueuedHeadsUpWhenOneIsHidden() {
+        when(mRankingMapMock.getRanking(any(), any())).thenReturn(true);
+        when(mRankingMock.getImportance()).thenReturn(NotificationManager.IMPORTANCE_HIGH);
+        StatusBarNotification first =
+                createHeadsUpNotification(1, Notification.CATEGORY_CALL, POST_TIME);
+        StatusBarNotification second =
+                createHeadsUpNotification(2, Notification.CATEGORY_CALL, POST_TIME + 1);
+        StatusBarNotification queued =
+                createHeadsUpNotification(3, Notification.CATEGORY_NAVIGATION, POST_TIME + 2);
+
+        setPackageInfo(PKG_1);
+        mManager.maybeShowHeadsUp(first, mRankingMapMock, mActiveNotifications);
+        mManager.maybeShowHeadsUp(second, mRankingMapMock, mActiveNotifications);
+        mManager.maybeShowHeadsUp(queued, mRankingMapMock, mActiveNotifications);
+        assertThat(mManager.isHeadsUpQueued(queued.getKey())).isTrue();
+
+        mManager.maybeRemoveHeadsUp(first);
+        ShadowLooper.idleMainLooper(HIDE_DELAY_MS);
+
+        assertThat(mManager.isHeadsUpQueued(queued.getKey())).isFalse();
+        assertThat(mManager.getActiveHeadsUpNotifications().keySet())
+                .containsExactly(second.getKey(), queued.getKey());
+    }
+
+    @Test
+    public void maybeShowHeadsUp_higherRankedWhileScreenFull_preemptsLowestRanked() {
+        when(mRankingMapMock.getRanking(any(), any())).thenReturn(true);
+        when(mRankingMock.getImportance()).thenReturn(NotificationManager.IMPORTANCE_HIGH);
+        StatusBarNotification earlier =
+                createHeadsUpNotification(1, Notification.CATEGORY_NAVIGATION, POST_TIME);
+        StatusBarNotification later =
+                createHeadsUpNotification(2, Notification.CATEGORY_NAVIGATION, POST_TIME + 1);
+        StatusBarNotification call =
+                createHeadsUpNotification(3, Notification.CATEGORY_CALL, POST_TIME + 2);
+
+        setPackageInfo(PKG_1);
+        mManager.maybeShowHeadsUp(earlier, mRankingMapMock, mActiveNotifications);
+        mManager.maybeShowHeadsUp(later, mRankingMapMock, mActiveNotifications);
+        mManager.maybeShowHeadsUp(call, mRankingMapMock, mActiveNotifications);
+
+        assertThat(mManager.getActiveHeadsUpNotifications().get(later.getKey()).isAnimatingOut)
+                .isTrue();
+        assertThat(mManager.getActiveHeadsUpNotifications().get(earlier.getKey()).isAnimatingOut)
+                .isFalse();
+
+        ShadowLooper.idleMainLooper(HIDE_DELAY_MS);
+
+        assertThat(mManager.getActiveHeadsUpNotifications().keySet())
+                .containsExactly(earlier.getKey(), call.getKey());
+    }
+
+    @Test
+    public void maybeShowHeadsUp_updateOfPreemptedHeadsUp_showsUpdateWhenRoomIsFreed() {
+        when(mRankingMapMock.getRanking(any(), any())).thenReturn(true);
+        when(mRankingMock.getImportance()).thenReturn(NotificationManager.IMPORTANCE_HIGH);
+        StatusBarNotification earlier =
+                createHeadsUpNotification(1, Notification.CATEGORY_NAVIGATION, POST_TIME);
+        StatusBarNotification later =
+                createHeadsUpNotification(2, Notification.CATEGORY_NAVIGATION, POST_TIME + 1);
+        StatusBarNotification call =
+                createHeadsUpNotification(3, Notification.CATEGORY_CALL, POST_TIME + 2);
+        StatusBarNotification update =
+                createHeadsUpNotification(2, Notification.CATEGORY_NAVIGATION, POST_TIME + 3);
+
+        setPackageInfo(PKG_1);
+        mManager.maybeShowHeadsUp(earlier, mRankingMapMock, mActiveNotifications);
+        mManager.maybeShowHeadsUp(later, mRankingMapMock, mActiveNotifications);
+        mManager.maybeShowHeadsUp(call, mRankingMapMock, mActiveNotifications);
+        mManager.maybeShowHeadsUp(update, mRankingMapMock, mActiveNotifications);
+
+        // the update waits for the preempted card, and then for the call that outranks it
+        assertThat(mManager.isHeadsUpQueued(update.getKey())).isTrue();
+        ShadowLooper.idleMainLooper(HIDE_DELAY_MS);
+        assertThat(mManager.isHeadsUpQueued(update.getKey())).isTrue();
+
+        mManager.maybeRemoveHeadsUp(earlier);
+        ShadowLooper.idleMainLooper(HIDE_DELAY_MS);
+
+        HeadsUpEntry entry = mManager.getActiveHeadsUpNotifications().get(update.getKey());
+        assertThat(entry.getStatusBarNotification()).isSameAs(update);
+        assertThat(entry.isAnimatingOut).isFalse();
+    }
+
+    @Test
+    public void updateHeadsUp_alertingUpdateWhileAnimatingOut_showsUpdateAfterwards() {
+        when(mRankingMapMock.getRanking(any(), any())).thenReturn(true);
+        when(mRankingMock.getImportance()).thenReturn(NotificationManager.IMPORTANCE_HIGH);
+        StatusBarNotification notification =
+                createHeadsUpNotification(1, Notification.CATEGORY_NAVIGATION, POST_TIME);
+        StatusBarNotification update =
+                createHeadsUpNotification(1, Notification.CATEGORY_NAVIGATION, POST_TIME + 1);
+
+        setPackageInfo(PKG_1);
+        mManager.updateHeadsUp(notification, mRankingMapMock, mActiveNotifications,
+                /* shouldShowHeadsUp= */ true);
+        mManager.updateHeadsUp(notification, mRankingMapMock, mActiveNotifications,
+                /* shouldShowHeadsUp= */ false);
+        assertThat(mManager.getActiveHeadsUpNotifications().get(notification.getKey())
+                .isAnimatingOut).isTrue();
+
+        mManager.updateHeadsUp(update, mRankingMapMock, mActiveNotifications,
+                /* shouldShowHeadsUp= */ true);
+        ShadowLooper.idleMainLooper(HIDE_DELAY_MS);
+
+        HeadsUpEntry entry = mManager.getActiveHeadsUpNotifications().get(update.getKey());
+        assertThat(entry.getStatusBarNotification()).isSameAs(update);
+        assertThat(entry.isAnimatingOut).isFalse();
+    }
+
+    @Test
+    public void maybeShowHeadsUp_queueFull_dropsLowestRanked() {
+        when(mRankingMapMock.getRanking(any(), any())).thenReturn(true);
+        when(mRankingMock.getImportance()).thenReturn(NotificationManager.IMPORTANCE_HIGH);
+        int maxShown = mContext.getResources().getInteger(
+                R.integer.headsup_max_shown_notifications);
+        int maxQueued = mContext.getResources().getInteger(
+                R.integer.headsup_max_queued_notifications);
+
+        setPackageInfo(PKG_1);
+        int id = 0;
+        for (int i = 0; i < maxShown; i++, id++) {
+            mManager.maybeShowHeadsUp(
+                    createHeadsUpNotification(id, Notification.CATEGORY_CALL, POST_TIME),
+                    mRankingMapMock, mActiveNotifications);
+        }
+        StatusBarNotification lowest = null;
+        for (int i = 0; i < maxQueued; i++, id++) {
+            lowest = createHeadsUpNotification(id, Notification.CATEGORY_NAVIGATION,
+                    POST_TIME + id);
+            mManager.maybeShowHeadsUp(lowest, mRankingMapMock, mActiveNotifications);
+        }
+        // posted earlier than all queued navigation notifications, so it ranks higher
+        StatusBarNotification higher =
+                createHeadsUpNotification(id, Notification.CATEGORY_NAVIGATION, POST_TIME);
+        mManager.maybeShowHeadsUp(higher, mRankingMapMock, mActiveNotifications);
+
+        assertThat(mManager.isHeadsUpQueued(higher.getKey())).isTrue();
+        assertThat(mManager.isHeadsUpQueued(lowest.getKey())).isFalse();
+        assertThat(mManager.getActiveHeadsUpNotifications()).hasSize(maxShown);
+    }
+
     @Test
     public void getActiveHeadsUpNotifications_sameNotifications_shouldReturnOne() {
         when(mRankingMapMock.getRanking(any(), any())).thenReturn(true);
@@ -454,6 +620,43 @@ public class CarHeadsUpNotificationManagerTest {
         assertThat(notificationView).isNull();
     }
 
+    @Test
+    public void prepareHeadsUp_isNotImportant_returnsFalse() {
+        when(mRankingMapMock.getRanking(any(), any())).thenReturn(true);
+        when(mRankingMock.getImportance()).thenReturn(NotificationManager.IMPORTANCE_DEFAULT);
+
+        setPackageInfo(PKG_2);
+
+        assertThat(mManager.prepareHeadsUp(mNotification2, mRankingMapMock)).isFalse();
+        assertThat(mManager.getActiveHeadsUpNotifications()).isEmpty();
+    }
+
+    @Test
+    public void updateHeadsUp_notShown_addsToActiveNotificationsWithoutHeadsUp() {
+        mManager.updateHeadsUp(mNotification1, mRankingMapMock, mActiveNotifications,
+                /* shouldShowHeadsUp= */ false);
+
+        assertThat(mActiveNotifications).containsKey(mNotification1.getKey());
+        assertThat(mManager.getActiveHeadsUpNotifications()).isEmpty();
+    }
+
+    @Test
+    public void updateHeadsUp_shown_showsHeadsUp() {
+        when(mRankingMapMock.getRanking(any(), any())).thenReturn(true);
+        when(mRankingMock.getImportance()).thenReturn(NotificationManager.IMPORTANCE_HIGH);
+
+        setPackageInfo(PKG_1);
+        boolean shouldShowHeadsUp = mManager.prepareHeadsUp(mNotification1, mRankingMapMock);
+        mManager.updateHeadsUp(mNotification1, mRankingMapMock, mActiveNotifications,
+                shouldShowHeadsUp);
+        View notificationView = getNotificationView(
+                mManager.getActiveHeadsUpNotifications().get(mNotification1.getKey()));
+
+        assertThat(shouldShowHeadsUp).isTrue();
+        assertThat(notificationView).isNotNull();
+        assertThat(mActiveNotifications).containsKey(mNotification1.getKey());
+    }
+
     private void initializeWithFactory() {
         mManager = new CarHeadsUpNotificationManager(mContext, mClickHandlerFactory,
                 mNotificationDataManager) {
@@ -464,6 +667,17 @@ public class CarHeadsUpNotificationManagerTest {
         };
     }
 
+    private StatusBarNotification createHeadsUpNotification(int id, String category,
+            long postTime) {
+        Notification notification = new Notification.Builder(mContext, CHANNEL_ID)
+                .setContentTitle(CONTENT_TITLE)
+                .setCategory(category)
+                .setSmallIcon(android.R.drawable.sym_def_app_icon)
+                .build();
+        return new StatusBarNotification(PKG_1, OP_PKG, id, TAG, UID, INITIAL_PID, notification,
+                USER_HANDLE, OVERRIDE_GROUP_KEY, postTime);
+    }
+
     private View getNotificationView(HeadsUpEntry currentNotification) {
         return currentNotification == null ? null : currentNotification.getNotificationView();
     }
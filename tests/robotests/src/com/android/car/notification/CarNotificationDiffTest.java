@@ -230,36 +230,36 @@ public class CarNotificationDiffTest {
      */
     @Test
     public void sameItems_shouldReturnTrue() {
-        CarNotificationDiff carNotificationDiff = new CarNotificationDiff(mContext,
-                mNotificationGroupList1, mNotificationGroupList1);
+        CarNotificationDiff carNotificationDiff = new CarNotificationDiff(mNotificationGroupList1,
+                mNotificationGroupList1);
         assertThat(carNotificationDiff.areItemsTheSame(0, 0)).isTrue();
     }
 
     @Test
     public void areContentsTheSame_shouldReturnTrue() {
-        CarNotificationDiff carNotificationDiff = new CarNotificationDiff(mContext,
-                mNotificationGroupList1, mNotificationGroupList1);
+        CarNotificationDiff carNotificationDiff = new CarNotificationDiff(mNotificationGroupList1,
+                mNotificationGroupList1);
         assertThat(carNotificationDiff.areContentsTheSame(0, 0)).isTrue();
     }
 
     @Test
     public void areContentsTheSame_shouldReturnFalse() {
-        CarNotificationDiff carNotificationDiff = new CarNotificationDiff(mContext,
-                mNotificationGroupList1, mNotificationGroupList3);
+        CarNotificationDiff carNotificationDiff = new CarNotificationDiff(mNotificationGroupList1,
+                mNotificationGroupList3);
         assertThat(carNotificationDiff.areContentsTheSame(0, 0)).isFalse();
     }
 
     @Test
     public void getOldListSize_shouldReturnOne() {
-        CarNotificationDiff carNotificationDiff = new CarNotificationDiff(mContext,
-                mNotificationGroupList1, mNotificationGroupList3);
+        CarNotificationDiff carNotificationDiff = new CarNotificationDiff(mNotificationGroupList1,
+                mNotificationGroupList3);
         assertThat(carNotificationDiff.getOldListSize()).isEqualTo(1);
     }
 
     @Test
     public void getNewListSize_shouldReturnOne() {
-        CarNotificationDiff carNotificationDiff = new CarNotificationDiff(mContext,
-                mNotificationGroupList1, mNotificationGroupList2);
+        CarNotificationDiff carNotificationDiff = new CarNotificationDiff(mNotificationGroupList1,
+                mNotificationGroupList2);
         assertThat(carNotificationDiff.getNewListSize()).isEqualTo(1);
     }
 
@@ -297,8 +297,8 @@ public class CarNotificationDiffTest {
         newNotificationGroupList.add(newNotificationGroup);
 
 
-        CarNotificationDiff carNotificationDiff = new CarNotificationDiff(mContext,
-                oldNotificationGroupList, newNotificationGroupList);
+        CarNotificationDiff carNotificationDiff = new CarNotificationDiff(oldNotificationGroupList,
+                newNotificationGroupList);
         assertThat(carNotificationDiff.areContentsTheSame(0, 0)).isTrue();
     }
 
@@ -341,8 +341,8 @@ public class CarNotificationDiffTest {
         newNotificationGroupList.add(newNotificationGroup);
 
 
-        CarNotificationDiff carNotificationDiff = new CarNotificationDiff(mContext,
-                oldNotificationGroupList, newNotificationGroupList);
+        CarNotificationDiff carNotificationDiff = new CarNotificationDiff(oldNotificationGroupList,
+                newNotificationGroupList);
         assertThat(carNotificationDiff.areContentsTheSame(0, 0)).isFalse();
     }
 
@@ -384,8 +384,8 @@ public class CarNotificationDiffTest {
         newNotificationGroupList.add(newNotificationGroup);
 
 
-        CarNotificationDiff carNotificationDiff = new CarNotificationDiff(mContext,
-                oldNotificationGroupList, newNotificationGroupList);
+        CarNotificationDiff carNotificationDiff = new CarNotificationDiff(oldNotificationGroupList,
+                newNotificationGroupList);
         assertThat(carNotificationDiff.areContentsTheSame(0, 0)).isTrue();
     }
 
@@ -427,8 +427,8 @@ public class CarNotificationDiffTest {
         newNotificationGroupList.add(newNotificationGroup);
 
 
-        CarNotificationDiff carNotificationDiff = new CarNotificationDiff(mContext,
-                oldNotificationGroupList, newNotificationGroupList);
+        CarNotificationDiff carNotificationDiff = new CarNotificationDiff(oldNotificationGroupList,
+                newNotificationGroupList);
         assertThat(carNotificationDiff.areContentsTheSame(0, 0)).isFalse();
     }
 
@@ -470,8 +470,50 @@ public class CarNotificationDiffTest {
         newNotificationGroupList.add(newNotificationGroup);
 
 
-        CarNotificationDiff carNotificationDiff = new CarNotificationDiff(mContext,
-                oldNotificationGroupList, newNotificationGroupList);
+        CarNotificationDiff carNotificationDiff = new CarNotificationDiff(oldNotificationGroupList,
+                newNotificationGroupList);
+        assertThat(carNotificationDiff.areContentsTheSame(0, 0)).isFalse();
+    }
+
+    @Test
+    public void areContentsTheSame_sameStringHashDiffExtras_shouldReturnFalse() {
+        // "Aa" and "BB" have the same String hash code but must still get different fingerprints.
+        Bundle bundle_1 = new Bundle();
+        bundle_1.putString("test", "Aa");
+        Notification.Builder oldNotification = new Notification.Builder(mContext,
+                CHANNEL_ID)
+                .setContentTitle(CONTENT_TITLE)
+                .setExtras(bundle_1)
+                .setSmallIcon(android.R.drawable.sym_def_app_icon);
+        Bundle bundle_2 = new Bundle();
+        bundle_2.putString("test", "BB");
+        Notification.Builder newNotification = new Notification.Builder(mContext,
+                CHANNEL_ID)
+                .setContentTitle(CONTENT_TITLE)
+                .setExtras(bundle_2)
+                .setSmallIcon(android.R.drawable.sym_def_app_icon);
+        StatusBarNotification oldStatusBarNotification = new StatusBarNotification(PKG_1, OP_PKG,
+                ID, TAG, UID, INITIAL_PID, oldNotification.build(), USER_HANDLE,
+                OVERRIDE_GROUP_KEY, POST_TIME);
+        StatusBarNotification newStatusBarNotification = new StatusBarNotification(PKG_1, OP_PKG,
+                ID, TAG, UID, INITIAL_PID, newNotification.build(), USER_HANDLE,
+                OVERRIDE_GROUP_KEY, POST_TIME);
+
+        NotificationGroup oldNotificationGroup = new NotificationGroup();
+        oldNotificationGroup.addNotification(oldStatusBarNotification);
+        List<NotificationGroup> oldNotificationGroupList = new ArrayList<>();
+        oldNotificationGroupList.add(oldNotificationGroup);
+
+        NotificationGroup newNotificationGroup = new NotificationGroup();
+        newNotificationGroup.addNotification(newStatusBarNotification);
+        List<NotificationGroup> newNotificationGroupList = new ArrayList<>();
+        newNotificationGroupList.add(newNotificationGroup);
+
+        assertThat(NotificationFingerprintCache.computeFingerprint(newStatusBarNotification))
+                .isNotEqualTo(NotificationFingerprintCache.computeFingerprint(
+                        oldStatusBarNotification));
+        CarNotificationDiff carNotificationDiff = new CarNotificationDiff(oldNotificationGroupList,
+                newNotificationGroupList);
         assertThat(carNotificationDiff.areContentsTheSame(0, 0)).isFalse();
     }
 }
@@ -0,0 +1,136 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.car.notification;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.ArgumentMatchers.notNull;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+import android.app.Notification;
+import android.content.Context;
+import android.os.UserHandle;
+import android.service.notification.StatusBarNotification;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.shadows.ShadowLooper;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@RunWith(RobolectricTestRunner.class)
+public class CarNotificationListDifferTest {
+
+    private static final String PKG = "package_1";
+    private static final String OP_PKG = "OpPackage";
+    private static final String TAG = "Tag";
+    private static final int UID = 2;
+    private static final int INITIAL_PID = 3;
+    private static final String CHANNEL_ID = "CHANNEL_ID";
+    private static final String CONTENT_TITLE = "CONTENT_TITLE";
+    private static final long POST_TIME = 12345l;
+    private static final UserHandle USER_HANDLE = new UserHandle(12);
+
+    private Context mContext;
+    private List<Runnable> mPendingDiffs;
+    private CarNotificationListDiffer mDiffer;
+
+    @Mock
+    private CarNotificationListDiffer.Callback mCallback;
+
+    @Before
+    public void setup() {
+        MockitoAnnotations.initMocks(this);
+        mContext = RuntimeEnvironment.application;
+        mPendingDiffs = new ArrayList<>();
+        mDiffer = new CarNotificationListDiffer(mCallback);
+        mDiffer.setDiffExecutor(mPendingDiffs::add);
+    }
+
+    @Test
+    public void submitList_currentListEmpty_commitsWithoutDiff() {
+        List<NotificationGroup> list = createList(1);
+
+        mDiffer.submitList(list);
+
+        assertThat(mDiffer.getCurrentList()).isSameAs(list);
+        assertThat(mPendingDiffs).isEmpty();
+        verify(mCallback).onListCommitted(any(), eq(list), isNull());
+    }
+
+    @Test
+    public void submitList_diffCompleted_commitsNewList() {
+        List<NotificationGroup> oldList = createList(1);
+        List<NotificationGroup> newList = createList(2);
+        mDiffer.submitList(oldList);
+
+        mDiffer.submitList(newList);
+        assertThat(mDiffer.getCurrentList()).isSameAs(oldList);
+        runPendingDiffs();
+
+        assertThat(mDiffer.getCurrentList()).isSameAs(newList);
+        verify(mCallback).onListCommitted(eq(oldList), eq(newList), notNull());
+    }
+
+    @Test
+    public void submitList_newerListSubmitted_discardsOutdatedDiff() {
+        List<NotificationGroup> oldList = createList(1);
+        List<NotificationGroup> outdatedList = createList(2);
+        List<NotificationGroup> newList = createList(3);
+        mDiffer.submitList(oldList);
+
+        mDiffer.submitList(outdatedList);
+        mDiffer.submitList(newList);
+        runPendingDiffs();
+
+        assertThat(mDiffer.getCurrentList()).isSameAs(newList);
+        verify(mCallback, never()).onListCommitted(any(), eq(outdatedList), any());
+        verify(mCallback).onListCommitted(eq(oldList), eq(newList), notNull());
+    }
+
+    private void runPendingDiffs() {
+        for (Runnable diff : mPendingDiffs) {
+            diff.run();
+        }
+        mPendingDiffs.clear();
+        ShadowLooper.runUiThreadTasksIncludingDelayedTasks();
+    }
+
+    private List<NotificationGroup> createList(int size) {
+        List<NotificationGroup> list = new ArrayList<>();
+        for (int id = 0; id < size; id++) {
+            Notification notification = new Notification.Builder(mContext, CHANNEL_ID)
+                    .setContentTitle(CONTENT_TITLE)
+                    .setSmallIcon(android.R.drawable.sym_def_app_icon)
+                    .build();
+            list.add(new NotificationGroup(new StatusBarNotification(PKG, OP_PKG, id, TAG, UID,
+                    INITIAL_PID, notification, USER_HANDLE, /* overrideGroupKey= */ null,
+                    POST_TIME)));
+        }
+        return list;
+    }
+}
@@ -19,6 +19,9 @@ package com.android.car.notification;
 import static com.google.common.truth.Truth.assertThat;
 
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.mockito.internal.verification.VerificationModeFactory.times;
@@ -51,9 +54,11 @@ import org.robolectric.RobolectricTestRunner;
 import org.robolectric.RuntimeEnvironment;
 import org.robolectric.annotation.Config;
 import org.robolectric.shadow.api.Shadow;
+import org.robolectric.shadows.ShadowLooper;
 import org.robolectric.shadows.ShadowPackageManager;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 @RunWith(RobolectricTestRunner.class)
@@ -683,6 +688,29 @@ public class CarNotificationViewAdapterTest {
         assertThat(itemCount).isEqualTo(2);
     }
 
+    @Test
+    public void setNotifications_newNotification_onlyInsertsNewItem() {
+        initializeWithFactory(false);
+        NotificationGroup existingGroup = new NotificationGroup(createNotification(ID));
+        List<NotificationGroup> oldList = new ArrayList<>();
+        oldList.add(existingGroup);
+        mCarNotificationViewAdapter.setNotifications(
+                oldList, /* setRecyclerViewListHeaderAndFooter= */ false);
+        RecyclerView.AdapterDataObserver observer = mock(RecyclerView.AdapterDataObserver.class);
+        mCarNotificationViewAdapter.registerAdapterDataObserver(observer);
+        mCarNotificationViewAdapter.setDiffExecutor(Runnable::run);
+
+        List<NotificationGroup> newList = new ArrayList<>(oldList);
+        newList.add(new NotificationGroup(createNotification(ID + 1)));
+        mCarNotificationViewAdapter.setNotifications(
+                newList, /* setRecyclerViewListHeaderAndFooter= */ false);
+        ShadowLooper.runUiThreadTasksIncludingDelayedTasks();
+
+        verify(observer).onItemRangeInserted(1, 1);
+        verify(observer, never()).onChanged();
+        verify(observer, never()).onItemRangeChanged(anyInt(), anyInt(), any());
+    }
+
     @Test
     public void setCarUxRestrictions_shouldSetCarUxRestrictions() {
         initializeWithFactory(true);
@@ -748,6 +776,100 @@ public class CarNotificationViewAdapterTest {
         assertThat(itemId).isEqualTo(notificationGroup.getSingleNotification().getKey().hashCode());
     }
 
+    @Test
+    public void setNotifications_expandedGroupStillGrouped_keepsExpansionState() {
+        initializeWithFactory(false);
+        mCarNotificationViewAdapter.setDiffExecutor(Runnable::run);
+        NotificationGroup notificationGroup = createGroup(/* childCount= */ 2);
+        mCarNotificationViewAdapter.setNotifications(Collections.singletonList(notificationGroup),
+                /* setRecyclerViewListHeaderAndFooter= */ false);
+        mCarNotificationViewAdapter.setExpanded(notificationGroup.getGroupKey(), true);
+
+        mCarNotificationViewAdapter.setNotifications(
+                Collections.singletonList(createGroup(/* childCount= */ 3)),
+                /* setRecyclerViewListHeaderAndFooter= */ false);
+        ShadowLooper.runUiThreadTasksIncludingDelayedTasks();
+
+        assertThat(mCarNotificationViewAdapter.isExpanded(notificationGroup.getGroupKey()))
+                .isTrue();
+    }
+
+    @Test
+    public void setNotifications_expandedGroupNoLongerGrouped_forgetsExpansionState() {
+        initializeWithFactory(false);
+        mCarNotificationViewAdapter.setDiffExecutor(Runnable::run);
+        NotificationGroup notificationGroup = createGroup(/* childCount= */ 2);
+        mCarNotificationViewAdapter.setNotifications(Collections.singletonList(notificationGroup),
+                /* setRecyclerViewListHeaderAndFooter= */ false);
+        mCarNotificationViewAdapter.setExpanded(notificationGroup.getGroupKey(), true);
+
+        mCarNotificationViewAdapter.setNotifications(
+                Collections.singletonList(createGroup(/* childCount= */ 1)),
+                /* setRecyclerViewListHeaderAndFooter= */ false);
+        ShadowLooper.runUiThreadTasksIncludingDelayedTasks();
+
+        assertThat(mCarNotificationViewAdapter.isExpanded(notificationGroup.getGroupKey()))
+                .isFalse();
+    }
+
+    @Test
+    public void setNotifications_withHeaderAndFooter_wrapsNotifications() {
+        initializeWithFactory(false);
+
+        mCarNotificationViewAdapter.setNotifications(
+                mNotificationGroupList1, /* setRecyclerViewListHeaderAndFooter= */ true);
+
+        assertThat(mCarNotificationViewAdapter.getItemCount()).isEqualTo(4);
+        assertThat(mCarNotificationViewAdapter.getItemViewType(0))
+                .isEqualTo(NotificationViewType.HEADER);
+        assertThat(mCarNotificationViewAdapter.getItemViewType(3))
+                .isEqualTo(NotificationViewType.FOOTER);
+    }
+
+    @Test
+    public void groupViewHolder_reboundToDifferentGroup_showsNewChildrenImmediately() {
+        initializeWithFactory(false);
+        GroupNotificationViewHolder viewHolder =
+                (GroupNotificationViewHolder) mCarNotificationViewAdapter.onCreateViewHolder(
+                        null, NotificationViewType.GROUP_EXPANDED);
+        viewHolder.bind(createGroup("group_1", /* firstId= */ 10, /* childCount= */ 2),
+                mCarNotificationViewAdapter, /* isExpanded= */ true);
+        NotificationGroup newGroup =
+                createGroup("group_2", /* firstId= */ 20, /* childCount= */ 3);
+
+        viewHolder.bind(newGroup, mCarNotificationViewAdapter, /* isExpanded= */ true);
+
+        // the recycled view must not show the children of the old group until a diff completes
+        RecyclerView childListView = viewHolder.itemView.findViewById(R.id.notification_list);
+        RecyclerView.Adapter childAdapter = childListView.getAdapter();
+        assertThat(childAdapter.getItemCount()).isEqualTo(3);
+        for (int i = 0; i < 3; i++) {
+            assertThat(childAdapter.getItemId(i)).isEqualTo(
+                    newGroup.getChildNotifications().get(i).getKey().hashCode());
+        }
+    }
+
+    private NotificationGroup createGroup(int childCount) {
+        NotificationGroup notificationGroup = new NotificationGroup();
+        notificationGroup.setGroupSummaryNotification(mNotification1);
+        for (int i = 0; i < childCount; i++) {
+            notificationGroup.addNotification(mNotification1);
+        }
+        return notificationGroup;
+    }
+
+    private NotificationGroup createGroup(String groupKey, int firstId, int childCount) {
+        NotificationGroup notificationGroup = new NotificationGroup();
+        for (int id = firstId; id < firstId + childCount; id++) {
+            notificationGroup.addNotification(new StatusBarNotification(PKG_1, OP_PKG,
+                    id, TAG, UID, INITIAL_PID, mNotificationBuilder1.build(), USER_HANDLE,
+                    groupKey, POST_TIME));
+        }
+        notificationGroup.setGroupSummaryNotification(
+                notificationGroup.getChildNotifications().get(0));
+        return notificationGroup;
+    }
+
     private StatusBarNotification getNotificationWithCategory(String category) {
         Notification.Builder nb = new Notification.Builder(mContext,
                 CHANNEL_ID)
@@ -760,6 +882,11 @@ public class CarNotificationViewAdapterTest {
                 OVERRIDE_GROUP_KEY, POST_TIME);
     }
 
+    private StatusBarNotification createNotification(int id) {
+        return new StatusBarNotification(PKG_1, OP_PKG,
+                id, TAG, UID, INITIAL_PID, mNotificationBuilder1.build(), USER_HANDLE,
+                /* overrideGroupKey= */ null, POST_TIME);
+    }
 
     private void initializeWithFactory(boolean isGroup) {
         mCarNotificationViewAdapter = new CarNotificationViewAdapter(mContext, isGroup);
@@ -0,0 +1,49 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.car.notification;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+@RunWith(RobolectricTestRunner.class)
+public class ContentHasherTest {
+
+    @Test
+    public void hash_sameContent_returnsSameHash() {
+        assertThat(new ContentHasher().putString("Aa").putInt(1).hash())
+                .isEqualTo(new ContentHasher().putString("Aa").putInt(1).hash());
+    }
+
+    @Test
+    public void putString_sameStringHashCode_returnsDifferentHash() {
+        assertThat(new ContentHasher().putString("Aa").hash())
+                .isNotEqualTo(new ContentHasher().putString("BB").hash());
+    }
+
+    @Test
+    public void putBytes_differentLength_returnsDifferentHash() {
+        byte[] bytes = new byte[] {1, 0, 0};
+
+        assertThat(new ContentHasher().putBytes(bytes, /* offset= */ 0, /* length= */ 2).hash())
+                .isNotEqualTo(
+                        new ContentHasher().putBytes(bytes, /* offset= */ 0, /* length= */ 3)
+                                .hash());
+    }
+}
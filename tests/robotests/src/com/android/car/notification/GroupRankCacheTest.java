@@ -0,0 +1,131 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.car.notification;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import android.app.Notification;
+import android.content.Context;
+import android.os.UserHandle;
+import android.service.notification.NotificationListenerService.RankingMap;
+import android.service.notification.StatusBarNotification;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+@RunWith(RobolectricTestRunner.class)
+public class GroupRankCacheTest {
+
+    private static final String PKG = "package_1";
+    private static final String OP_PKG = "OpPackage";
+    private static final String TAG = "Tag";
+    private static final int UID = 2;
+    private static final int INITIAL_PID = 3;
+    private static final String CHANNEL_ID = "CHANNEL_ID";
+    private static final long POST_TIME = 12345l;
+    private static final UserHandle USER_HANDLE = new UserHandle(12);
+    private static final int MAX_SIZE = 2;
+
+    private Context mContext;
+    private GroupRankCache mRankCache;
+
+    @Mock
+    private RankingMap mRankingMap;
+    @Mock
+    private RankingMap mOtherRankingMap;
+
+    @Before
+    public void setup() {
+        MockitoAnnotations.initMocks(this);
+        mContext = RuntimeEnvironment.application;
+        mRankCache = new GroupRankCache(MAX_SIZE);
+    }
+
+    @Test
+    public void getRank_sameRankingMap_readsRankOnce() {
+        NotificationGroup group = createGroup(1);
+
+        mRankCache.getRank(group, mRankingMap, /* newRankingMap= */ null);
+        mRankCache.getRank(group, mRankingMap, /* newRankingMap= */ null);
+
+        verify(mRankingMap, times(1)).getRanking(eq(getKey(group)), any());
+    }
+
+    @Test
+    public void getRank_otherRankingMap_resetsCache() {
+        NotificationGroup group = createGroup(1);
+        mRankCache.getRank(group, mRankingMap, /* newRankingMap= */ null);
+
+        mRankCache.getRank(group, mOtherRankingMap, /* newRankingMap= */ null);
+
+        verify(mOtherRankingMap).getRanking(eq(getKey(group)), any());
+        assertThat(mRankCache.size()).isEqualTo(1);
+    }
+
+    @Test
+    public void getRank_unknownToSessionRankingMap_readsNewRankingMap() {
+        NotificationGroup group = createGroup(1);
+
+        mRankCache.getRank(group, mRankingMap, mOtherRankingMap);
+
+        verify(mOtherRankingMap).getRanking(eq(getKey(group)), any());
+    }
+
+    @Test
+    public void getRank_moreGroupsThanMaxSize_keepsMaxSizeRanks() {
+        for (int id = 0; id < MAX_SIZE + 1; id++) {
+            mRankCache.getRank(createGroup(id), mRankingMap, /* newRankingMap= */ null);
+        }
+
+        assertThat(mRankCache.size()).isEqualTo(MAX_SIZE);
+    }
+
+    @Test
+    public void remove_readsRankAgain() {
+        NotificationGroup group = createGroup(1);
+        mRankCache.getRank(group, mRankingMap, /* newRankingMap= */ null);
+
+        mRankCache.remove(group.getGroupKey());
+        mRankCache.getRank(group, mRankingMap, /* newRankingMap= */ null);
+
+        verify(mRankingMap, times(2)).getRanking(eq(getKey(group)), any());
+    }
+
+    private String getKey(NotificationGroup group) {
+        return group.getNotificationForSorting().getKey();
+    }
+
+    private NotificationGroup createGroup(int id) {
+        Notification notification = new Notification.Builder(mContext, CHANNEL_ID)
+                .setSmallIcon(android.R.drawable.sym_def_app_icon)
+                .build();
+        StatusBarNotification statusBarNotification = new StatusBarNotification(PKG, OP_PKG, id,
+                TAG, UID, INITIAL_PID, notification, USER_HANDLE, /* overrideGroupKey= */ null,
+                POST_TIME);
+        return new NotificationGroup(statusBarNotification);
+    }
+}
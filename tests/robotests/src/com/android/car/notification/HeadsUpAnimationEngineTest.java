@@ -0,0 +1,99 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.car.notification;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+import android.animation.Animator;
+import android.content.Context;
+import android.view.View;
+import android.widget.FrameLayout;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.shadows.ShadowLooper;
+
+@RunWith(RobolectricTestRunner.class)
+public class HeadsUpAnimationEngineTest {
+
+    private static final long ENTER_DURATION = 200;
+    private static final long ALPHA_ENTER_DURATION = 100;
+    private static final long EXIT_DURATION = 150;
+
+    private Context mContext;
+    private HeadsUpAnimationEngine mEngine;
+    private View mView;
+
+    @Before
+    public void setup() {
+        mContext = RuntimeEnvironment.application;
+        mEngine = new HeadsUpAnimationEngine(mContext, ENTER_DURATION, ALPHA_ENTER_DURATION,
+                EXIT_DURATION);
+        mView = new FrameLayout(mContext);
+    }
+
+    @Test
+    public void animateIn_endsVisibleAtTop() {
+        Animator.AnimatorListener listener = mock(Animator.AnimatorListener.class);
+
+        mEngine.animateIn(mView, listener);
+        ShadowLooper.runUiThreadTasksIncludingDelayedTasks();
+
+        assertThat(mView.getY()).isEqualTo(0f);
+        assertThat(mView.getAlpha()).isEqualTo(1f);
+        verify(listener).onAnimationEnd(any());
+    }
+
+    @Test
+    public void animateOut_reusesAnimatorsOfCard() {
+        mEngine.animateIn(mView, /* listener= */ null);
+        Object animators = mView.getTag(R.id.headsup_card_animators);
+
+        mEngine.animateOut(mView, /* listener= */ null);
+
+        assertThat(animators).isNotNull();
+        assertThat(mView.getTag(R.id.headsup_card_animators)).isSameAs(animators);
+    }
+
+    @Test
+    public void animateOut_replacesListenerOfPreviousAnimation() {
+        Animator.AnimatorListener enterListener = mock(Animator.AnimatorListener.class);
+        Animator.AnimatorListener exitListener = mock(Animator.AnimatorListener.class);
+
+        mEngine.animateIn(mView, enterListener);
+        mEngine.animateOut(mView, exitListener);
+        ShadowLooper.runUiThreadTasksIncludingDelayedTasks();
+
+        verify(enterListener).onAnimationCancel(any());
+        verify(enterListener).onAnimationEnd(any());
+        verify(exitListener).onAnimationEnd(any());
+    }
+
+    @Test
+    public void cancel_noAnimators_doesNothing() {
+        mEngine.cancel(mView);
+
+        assertThat(mView.getTag(R.id.headsup_card_animators)).isNull();
+    }
+}
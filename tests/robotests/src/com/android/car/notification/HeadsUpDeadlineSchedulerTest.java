@@ -0,0 +1,145 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.car.notification;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import android.app.Notification;
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.UserHandle;
+import android.service.notification.StatusBarNotification;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.shadows.ShadowLooper;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@RunWith(RobolectricTestRunner.class)
+public class HeadsUpDeadlineSchedulerTest {
+
+    private static final String PKG = "package_1";
+    private static final String OP_PKG = "OpPackage";
+    private static final String TAG = "Tag";
+    private static final int UID = 2;
+    private static final int INITIAL_PID = 3;
+    private static final String CHANNEL_ID = "CHANNEL_ID";
+    private static final long POST_TIME = 12345l;
+    private static final UserHandle USER_HANDLE = new UserHandle(12);
+
+    private Context mContext;
+    private HeadsUpDeadlineScheduler mScheduler;
+    private List<HeadsUpEntry> mExpired;
+
+    @Before
+    public void setup() {
+        mContext = RuntimeEnvironment.application;
+        mExpired = new ArrayList<>();
+        mScheduler = new HeadsUpDeadlineScheduler(new Handler(Looper.getMainLooper()),
+                mExpired::add);
+    }
+
+    @Test
+    public void schedule_firesDeadlinesInOrder() {
+        HeadsUpEntry late = createEntry(1);
+        HeadsUpEntry early = createEntry(2);
+        HeadsUpEntry middle = createEntry(3);
+        mScheduler.schedule(late, 300);
+        mScheduler.schedule(early, 100);
+        mScheduler.schedule(middle, 200);
+
+        ShadowLooper.idleMainLooper(300);
+
+        assertThat(mExpired).containsExactly(early, middle, late).inOrder();
+        assertThat(mScheduler.size()).isEqualTo(0);
+    }
+
+    @Test
+    public void schedule_beforeDeadline_doesNotFire() {
+        HeadsUpEntry entry = createEntry(1);
+        mScheduler.schedule(entry, 100);
+
+        ShadowLooper.idleMainLooper(99);
+
+        assertThat(mExpired).isEmpty();
+        assertThat(mScheduler.isScheduled(entry)).isTrue();
+    }
+
+    @Test
+    public void schedule_again_replacesDeadline() {
+        HeadsUpEntry entry = createEntry(1);
+        mScheduler.schedule(entry, 100);
+        mScheduler.schedule(entry, 500);
+
+        ShadowLooper.idleMainLooper(100);
+
+        assertThat(mExpired).isEmpty();
+        assertThat(mScheduler.size()).isEqualTo(1);
+
+        ShadowLooper.idleMainLooper(400);
+
+        assertThat(mExpired).containsExactly(entry);
+    }
+
+    @Test
+    public void schedule_earlier_firesEarlier() {
+        HeadsUpEntry entry = createEntry(1);
+        mScheduler.schedule(entry, 500);
+        mScheduler.schedule(entry, 100);
+
+        ShadowLooper.idleMainLooper(100);
+
+        assertThat(mExpired).containsExactly(entry);
+    }
+
+    @Test
+    public void cancel_doesNotFire() {
+        HeadsUpEntry first = createEntry(1);
+        HeadsUpEntry second = createEntry(2);
+        mScheduler.schedule(first, 100);
+        mScheduler.schedule(second, 200);
+
+        mScheduler.cancel(first);
+        ShadowLooper.idleMainLooper(200);
+
+        assertThat(mExpired).containsExactly(second);
+        assertThat(mScheduler.isScheduled(first)).isFalse();
+    }
+
+    @Test
+    public void cancel_notScheduled_doesNothing() {
+        HeadsUpEntry entry = createEntry(1);
+
+        mScheduler.cancel(entry);
+
+        assertThat(mScheduler.size()).isEqualTo(0);
+    }
+
+    private HeadsUpEntry createEntry(int id) {
+        Notification notification = new Notification.Builder(mContext, CHANNEL_ID)
+                .setSmallIcon(android.R.drawable.sym_def_app_icon)
+                .build();
+        return new HeadsUpEntry(new StatusBarNotification(PKG, OP_PKG, id, TAG, UID, INITIAL_PID,
+                notification, USER_HANDLE, /* overrideGroupKey= */ null, POST_TIME));
+    }
+}
@@ -0,0 +1,153 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.car.notification;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.concurrent.TimeUnit;
+
+@RunWith(RobolectricTestRunner.class)
+public class HeadsUpLatencyTrackerTest {
+
+    private static final String KEY_1 = "KEY_1";
+    private static final String KEY_2 = "KEY_2";
+
+    private long mNowNanos;
+    private HeadsUpLatencyTracker mTracker;
+
+    @Before
+    public void setup() {
+        mNowNanos = 0;
+        mTracker = new HeadsUpLatencyTracker(() -> mNowNanos);
+    }
+
+    @Test
+    public void onShown_recordsLatencySinceIngestPerStage() {
+        mTracker.onPosted(KEY_1);
+        advanceMillis(3);
+        mTracker.onStage(KEY_1, HeadsUpLatencyTracker.STAGE_DECIDE);
+        mTracker.onViewTypeChosen(KEY_1, NotificationViewType.MESSAGE_HEADSUP);
+        advanceMillis(10);
+        mTracker.onStage(KEY_1, HeadsUpLatencyTracker.STAGE_BIND);
+        mTracker.onShown(KEY_1);
+
+        HeadsUpLatencyTracker.Histogram decide = mTracker.getHistogram(
+                NotificationViewType.MESSAGE_HEADSUP, HeadsUpLatencyTracker.STAGE_DECIDE);
+        HeadsUpLatencyTracker.Histogram bind = mTracker.getHistogram(
+                NotificationViewType.MESSAGE_HEADSUP, HeadsUpLatencyTracker.STAGE_BIND);
+        assertThat(decide.getCount()).isEqualTo(1);
+        assertThat(decide.getMeanMillis()).isWithin(0.01).of(3);
+        assertThat(decide.getPercentile(50)).isEqualTo(4);
+        assertThat(bind.getCount()).isEqualTo(1);
+        assertThat(bind.getMeanMillis()).isWithin(0.01).of(13);
+        assertThat(bind.getPercentile(50)).isEqualTo(16);
+    }
+
+    @Test
+    public void onShown_stageNotReached_isNotRecorded() {
+        mTracker.onPosted(KEY_1);
+        mTracker.onViewTypeChosen(KEY_1, NotificationViewType.BASIC_HEADSUP);
+        mTracker.onStage(KEY_1, HeadsUpLatencyTracker.STAGE_LAYOUT);
+        mTracker.onShown(KEY_1);
+
+        assertThat(mTracker.getHistogram(NotificationViewType.BASIC_HEADSUP,
+                HeadsUpLatencyTracker.STAGE_ANIMATION_END).getCount()).isEqualTo(0);
+        assertThat(mTracker.getHistogram(NotificationViewType.BASIC_HEADSUP,
+                HeadsUpLatencyTracker.STAGE_LAYOUT).getCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void onCancelled_isNotRecorded() {
+        mTracker.onPosted(KEY_1);
+        mTracker.onViewTypeChosen(KEY_1, NotificationViewType.CALL);
+        mTracker.onStage(KEY_1, HeadsUpLatencyTracker.STAGE_DECIDE);
+        mTracker.onCancelled(KEY_1);
+        mTracker.onShown(KEY_1);
+
+        assertThat(mTracker.getHistogram(NotificationViewType.CALL,
+                HeadsUpLatencyTracker.STAGE_DECIDE).getCount()).isEqualTo(0);
+    }
+
+    @Test
+    public void onPosted_again_restartsTrace() {
+        mTracker.onPosted(KEY_1);
+        advanceMillis(500);
+        mTracker.onPosted(KEY_1);
+        advanceMillis(1);
+        mTracker.onStage(KEY_1, HeadsUpLatencyTracker.STAGE_LAYOUT);
+        mTracker.onShown(KEY_1);
+
+        assertThat(mTracker.getHistogram(NotificationViewType.BASIC_HEADSUP,
+                HeadsUpLatencyTracker.STAGE_LAYOUT).getMeanMillis()).isWithin(0.01).of(1);
+    }
+
+    @Test
+    public void getHistogram_keepsTemplateTypesApart() {
+        mTracker.onPosted(KEY_1);
+        mTracker.onViewTypeChosen(KEY_1, NotificationViewType.CALL);
+        mTracker.onStage(KEY_1, HeadsUpLatencyTracker.STAGE_BIND);
+        mTracker.onShown(KEY_1);
+        mTracker.onPosted(KEY_2);
+        mTracker.onViewTypeChosen(KEY_2, NotificationViewType.NAVIGATION);
+        mTracker.onStage(KEY_2, HeadsUpLatencyTracker.STAGE_BIND);
+        mTracker.onShown(KEY_2);
+
+        assertThat(mTracker.getHistogram(NotificationViewType.CALL,
+                HeadsUpLatencyTracker.STAGE_BIND).getCount()).isEqualTo(1);
+        assertThat(mTracker.getHistogram(NotificationViewType.NAVIGATION,
+                HeadsUpLatencyTracker.STAGE_BIND).getCount()).isEqualTo(1);
+        assertThat(mTracker.getHistogram(NotificationViewType.BASIC_HEADSUP,
+                HeadsUpLatencyTracker.STAGE_BIND).getCount()).isEqualTo(0);
+    }
+
+    @Test
+    public void getPercentile_slowLatency_hasNoUpperBound() {
+        mTracker.onPosted(KEY_1);
+        advanceMillis(5000);
+        mTracker.onStage(KEY_1, HeadsUpLatencyTracker.STAGE_LAYOUT);
+        mTracker.onShown(KEY_1);
+
+        assertThat(mTracker.getHistogram(NotificationViewType.BASIC_HEADSUP,
+                HeadsUpLatencyTracker.STAGE_LAYOUT).getPercentile(99)).isEqualTo(Long.MAX_VALUE);
+    }
+
+    @Test
+    public void dump_printsRecordedStages() {
+        mTracker.onPosted(KEY_1);
+        mTracker.onViewTypeChosen(KEY_1, NotificationViewType.CALL);
+        advanceMillis(2);
+        mTracker.onStage(KEY_1, HeadsUpLatencyTracker.STAGE_BIND);
+        mTracker.onShown(KEY_1);
+
+        StringWriter writer = new StringWriter();
+        mTracker.dump(new PrintWriter(writer));
+
+        assertThat(writer.toString()).contains("viewType " + NotificationViewType.CALL);
+        assertThat(writer.toString()).contains("bind: count=1");
+    }
+
+    private void advanceMillis(long millis) {
+        mNowNanos += TimeUnit.MILLISECONDS.toNanos(millis);
+    }
+}
@@ -0,0 +1,214 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.car.notification;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import android.app.Notification;
+import android.app.NotificationManager;
+import android.content.Context;
+import android.os.UserHandle;
+import android.service.notification.NotificationListenerService.RankingMap;
+import android.service.notification.StatusBarNotification;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@RunWith(RobolectricTestRunner.class)
+public class HeadsUpSchedulerTest {
+
+    private static final String PKG = "package_1";
+    private static final String OP_PKG = "OpPackage";
+    private static final String TAG = "Tag";
+    private static final int UID = 2;
+    private static final int INITIAL_PID = 3;
+    private static final String CHANNEL_ID = "CHANNEL_ID";
+    private static final long POST_TIME = 12345l;
+    private static final UserHandle USER_HANDLE = new UserHandle(12);
+    private static final int MAX_SHOWN = 1;
+    private static final int MAX_QUEUED = 2;
+    private static final long MAX_WAIT_MILLIS = 1000;
+    private static final long NOW = 5000;
+
+    private Context mContext;
+    private HeadsUpScheduler mScheduler;
+    private List<HeadsUpScheduler.Request> mDropped;
+
+    @Mock
+    private RankingMap mRankingMap;
+
+    @Before
+    public void setup() {
+        MockitoAnnotations.initMocks(this);
+        mContext = RuntimeEnvironment.application;
+        mScheduler = new HeadsUpScheduler(MAX_SHOWN, MAX_QUEUED, MAX_WAIT_MILLIS);
+        mDropped = new ArrayList<>();
+    }
+
+    @Test
+    public void tryShow_roomOnScreen_returnsTrue() {
+        assertThat(mScheduler.tryShow(createRequest(1, Notification.CATEGORY_MESSAGE))).isTrue();
+        assertThat(mScheduler.getShownCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void tryShow_screenFull_returnsFalse() {
+        mScheduler.tryShow(createRequest(1, Notification.CATEGORY_MESSAGE));
+
+        assertThat(mScheduler.tryShow(createRequest(2, Notification.CATEGORY_MESSAGE))).isFalse();
+    }
+
+    @Test
+    public void tryShow_updateOfShownNotification_returnsTrue() {
+        mScheduler.tryShow(createRequest(1, Notification.CATEGORY_MESSAGE));
+
+        assertThat(mScheduler.tryShow(createRequest(1, Notification.CATEGORY_MESSAGE))).isTrue();
+        assertThat(mScheduler.getShownCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void tryShow_updateOfPreemptedNotification_returnsFalse() {
+        mScheduler.tryShow(createRequest(1, Notification.CATEGORY_MESSAGE));
+        mScheduler.getPreempted(createRequest(2, Notification.CATEGORY_CAR_EMERGENCY));
+
+        assertThat(mScheduler.tryShow(createRequest(1, Notification.CATEGORY_MESSAGE))).isFalse();
+    }
+
+    @Test
+    public void showNext_updateOfPreemptedNotification_showsUpdateAfterHidden() {
+        mScheduler.tryShow(createRequest(1, Notification.CATEGORY_MESSAGE));
+        mScheduler.getPreempted(createRequest(2, Notification.CATEGORY_NAVIGATION));
+        HeadsUpScheduler.Request update = createRequest(1, Notification.CATEGORY_MESSAGE);
+        mScheduler.enqueue(update);
+
+        mScheduler.onHidden(update.getKey());
+
+        assertThat(mScheduler.showNext(NOW, mDropped::add)).isSameAs(update);
+    }
+
+    @Test
+    public void showNext_showsHighestRankedCategoryFirst() {
+        mScheduler.tryShow(createRequest(1, Notification.CATEGORY_MESSAGE));
+        mScheduler.enqueue(createRequest(2, Notification.CATEGORY_NAVIGATION));
+        mScheduler.enqueue(createRequest(3, Notification.CATEGORY_CAR_EMERGENCY));
+
+        mScheduler.onHidden(createRequest(1, Notification.CATEGORY_MESSAGE).getKey());
+        HeadsUpScheduler.Request next = mScheduler.showNext(NOW, mDropped::add);
+
+        assertThat(next.getStatusBarNotification().getId()).isEqualTo(3);
+        assertThat(mScheduler.getQueuedCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void showNext_screenFull_returnsNull() {
+        mScheduler.tryShow(createRequest(1, Notification.CATEGORY_MESSAGE));
+        mScheduler.enqueue(createRequest(2, Notification.CATEGORY_CALL));
+
+        assertThat(mScheduler.showNext(NOW, mDropped::add)).isNull();
+    }
+
+    @Test
+    public void showNext_waitedTooLong_dropsRequest() {
+        mScheduler.enqueue(createRequest(1, Notification.CATEGORY_CALL,
+                NotificationManager.IMPORTANCE_HIGH, NOW - MAX_WAIT_MILLIS - 1));
+
+        assertThat(mScheduler.showNext(NOW, mDropped::add)).isNull();
+        assertThat(mDropped).hasSize(1);
+    }
+
+    @Test
+    public void compare_sameCategory_higherImportanceFirst() {
+        HeadsUpScheduler.Request high = createRequest(1, Notification.CATEGORY_MESSAGE,
+                NotificationManager.IMPORTANCE_MAX, NOW);
+        HeadsUpScheduler.Request low = createRequest(2, Notification.CATEGORY_MESSAGE,
+                NotificationManager.IMPORTANCE_HIGH, NOW);
+
+        assertThat(HeadsUpScheduler.PRIORITY_ORDER.compare(high, low)).isLessThan(0);
+    }
+
+    @Test
+    public void enqueue_queueFull_dropsLowestRanked() {
+        mScheduler.enqueue(createRequest(1, Notification.CATEGORY_CALL));
+        mScheduler.enqueue(createRequest(2, null));
+        HeadsUpScheduler.Request dropped =
+                mScheduler.enqueue(createRequest(3, Notification.CATEGORY_MESSAGE));
+
+        assertThat(dropped.getStatusBarNotification().getId()).isEqualTo(2);
+        assertThat(mScheduler.getQueuedCount()).isEqualTo(MAX_QUEUED);
+    }
+
+    @Test
+    public void enqueue_sameNotification_replacesQueuedRequest() {
+        mScheduler.enqueue(createRequest(1, Notification.CATEGORY_CALL));
+        mScheduler.enqueue(createRequest(1, Notification.CATEGORY_CALL));
+
+        assertThat(mScheduler.getQueuedCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void getPreempted_higherRankedRequest_returnsShownRequestOnce() {
+        mScheduler.tryShow(createRequest(1, Notification.CATEGORY_MESSAGE));
+        HeadsUpScheduler.Request emergency =
+                createRequest(2, Notification.CATEGORY_CAR_EMERGENCY);
+
+        HeadsUpScheduler.Request preempted = mScheduler.getPreempted(emergency);
+
+        assertThat(preempted.getStatusBarNotification().getId()).isEqualTo(1);
+        assertThat(mScheduler.getPreempted(emergency)).isNull();
+    }
+
+    @Test
+    public void getPreempted_lowerRankedRequest_returnsNull() {
+        mScheduler.tryShow(createRequest(1, Notification.CATEGORY_CALL));
+
+        assertThat(mScheduler.getPreempted(createRequest(2, Notification.CATEGORY_MESSAGE)))
+                .isNull();
+    }
+
+    @Test
+    public void removeQueued_removesRequest() {
+        mScheduler.enqueue(createRequest(1, Notification.CATEGORY_CALL));
+
+        assertThat(mScheduler.removeQueued(createRequest(1, null).getKey())).isNotNull();
+        assertThat(mScheduler.getQueuedCount()).isEqualTo(0);
+    }
+
+    private HeadsUpScheduler.Request createRequest(int id, String category) {
+        return createRequest(id, category, NotificationManager.IMPORTANCE_HIGH, NOW);
+    }
+
+    private HeadsUpScheduler.Request createRequest(int id, String category, int importance,
+            long enqueueTime) {
+        Notification notification = new Notification.Builder(mContext, CHANNEL_ID)
+                .setCategory(category)
+                .setSmallIcon(android.R.drawable.sym_def_app_icon)
+                .build();
+        StatusBarNotification statusBarNotification = new StatusBarNotification(PKG, OP_PKG, id,
+                TAG, UID, INITIAL_PID, notification, USER_HANDLE, /* overrideGroupKey= */ null,
+                POST_TIME);
+        return new HeadsUpScheduler.Request(statusBarNotification, mRankingMap, importance,
+                enqueueTime);
+    }
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.car.notification;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import android.content.Context;
+import android.view.LayoutInflater;
+import android.widget.FrameLayout;
+
+import com.android.car.notification.template.CallNotificationViewHolder;
+import com.android.car.notification.template.CarNotificationBaseViewHolder;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+@RunWith(RobolectricTestRunner.class)
+public class HeadsUpViewPoolTest {
+
+    private static final int MAX_POOLED_VIEWS_PER_TYPE = 1;
+
+    private Context mContext;
+    private HeadsUpViewPool mHeadsUpViewPool;
+
+    @Mock
+    private NotificationClickHandlerFactory mClickHandlerFactory;
+
+    @Before
+    public void setup() {
+        MockitoAnnotations.initMocks(this);
+        mContext = RuntimeEnvironment.application;
+        mHeadsUpViewPool = new HeadsUpViewPool(LayoutInflater.from(mContext),
+                mClickHandlerFactory, MAX_POOLED_VIEWS_PER_TYPE);
+    }
+
+    @Test
+    public void acquire_emptyPool_createsViewHolderOfType() {
+        CarNotificationBaseViewHolder viewHolder =
+                mHeadsUpViewPool.acquire(NotificationViewType.CALL);
+
+        assertThat(viewHolder).isInstanceOf(CallNotificationViewHolder.class);
+        assertThat(viewHolder.itemView).isNotNull();
+    }
+
+    @Test
+    public void acquire_releasedViewHolder_reusesViewHolder() {
+        CarNotificationBaseViewHolder viewHolder =
+                mHeadsUpViewPool.acquire(NotificationViewType.BASIC_HEADSUP);
+        mHeadsUpViewPool.release(NotificationViewType.BASIC_HEADSUP, viewHolder);
+
+        assertThat(mHeadsUpViewPool.acquire(NotificationViewType.BASIC_HEADSUP))
+                .isSameAs(viewHolder);
+        assertThat(mHeadsUpViewPool.getPooledViewCount(NotificationViewType.BASIC_HEADSUP))
+                .isEqualTo(0);
+    }
+
+    @Test
+    public void acquire_otherType_doesNotReuseViewHolder() {
+        CarNotificationBaseViewHolder viewHolder =
+                mHeadsUpViewPool.acquire(NotificationViewType.BASIC_HEADSUP);
+        mHeadsUpViewPool.release(NotificationViewType.BASIC_HEADSUP, viewHolder);
+
+        assertThat(mHeadsUpViewPool.acquire(NotificationViewType.CALL)).isNotSameAs(viewHolder);
+    }
+
+    @Test
+    public void release_poolFull_dropsViewHolder() {
+        mHeadsUpViewPool.release(NotificationViewType.BASIC_HEADSUP,
+                mHeadsUpViewPool.acquire(NotificationViewType.BASIC_HEADSUP));
+        mHeadsUpViewPool.release(NotificationViewType.BASIC_HEADSUP,
+                mHeadsUpViewPool.acquire(NotificationViewType.CAR_WARNING_HEADSUP));
+
+        assertThat(mHeadsUpViewPool.getPooledViewCount(NotificationViewType.BASIC_HEADSUP))
+                .isEqualTo(MAX_POOLED_VIEWS_PER_TYPE);
+    }
+
+    @Test
+    public void release_viewStillAttached_doesNotPoolViewHolder() {
+        CarNotificationBaseViewHolder viewHolder =
+                mHeadsUpViewPool.acquire(NotificationViewType.BASIC_HEADSUP);
+        new FrameLayout(mContext).addView(viewHolder.itemView);
+
+        mHeadsUpViewPool.release(NotificationViewType.BASIC_HEADSUP, viewHolder);
+
+        assertThat(mHeadsUpViewPool.getPooledViewCount(NotificationViewType.BASIC_HEADSUP))
+                .isEqualTo(0);
+    }
+}
@@ -0,0 +1,192 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.car.notification;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import android.app.Notification;
+import android.app.Person;
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.Color;
+import android.graphics.Typeface;
+import android.graphics.drawable.Icon;
+import android.os.UserHandle;
+import android.service.notification.StatusBarNotification;
+import android.text.SpannableString;
+import android.text.Spanned;
+import android.text.style.StyleSpan;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+@RunWith(RobolectricTestRunner.class)
+public class NotificationFingerprintCacheTest {
+
+    private static final String PKG = "package_1";
+    private static final String OP_PKG = "OpPackage";
+    private static final int ID = 1;
+    private static final String TAG = "Tag";
+    private static final int UID = 2;
+    private static final int INITIAL_PID = 3;
+    private static final String CHANNEL_ID = "CHANNEL_ID";
+    private static final String CONTENT_TITLE = "CONTENT_TITLE";
+    private static final String OTHER_CONTENT_TITLE = "OTHER_CONTENT_TITLE";
+    private static final long POST_TIME = 12345l;
+    private static final UserHandle USER_HANDLE = new UserHandle(12);
+    private static final int ICON_SIZE = 10;
+
+    private Context mContext;
+
+    @Before
+    public void setup() {
+        mContext = RuntimeEnvironment.application;
+        NotificationFingerprintCache.clear();
+    }
+
+    @After
+    public void tearDown() {
+        NotificationFingerprintCache.clear();
+    }
+
+    @Test
+    public void getFingerprint_sameContent_returnsSameFingerprint() {
+        StatusBarNotification notification1 = createNotification(CONTENT_TITLE, POST_TIME);
+        StatusBarNotification notification2 = createNotification(CONTENT_TITLE, POST_TIME + 1);
+
+        assertThat(NotificationFingerprintCache.getFingerprint(notification1))
+                .isEqualTo(NotificationFingerprintCache.getFingerprint(notification2));
+    }
+
+    @Test
+    public void getFingerprint_differentExtras_returnsDifferentFingerprint() {
+        StatusBarNotification notification1 = createNotification(CONTENT_TITLE, POST_TIME);
+        StatusBarNotification notification2 = createNotification(OTHER_CONTENT_TITLE, POST_TIME);
+
+        assertThat(NotificationFingerprintCache.getFingerprint(notification1))
+                .isNotEqualTo(NotificationFingerprintCache.getFingerprint(notification2));
+    }
+
+    @Test
+    public void getFingerprint_updatedNotification_keepsBothVersionsCached() {
+        StatusBarNotification olderNotification = createNotification(CONTENT_TITLE, POST_TIME);
+        StatusBarNotification newerNotification =
+                createNotification(OTHER_CONTENT_TITLE, POST_TIME + 1);
+
+        NotificationFingerprintCache.getFingerprint(olderNotification);
+        NotificationFingerprintCache.getFingerprint(newerNotification);
+
+        assertThat(NotificationFingerprintCache.isCached(olderNotification)).isTrue();
+        assertThat(NotificationFingerprintCache.isCached(newerNotification)).isTrue();
+    }
+
+    @Test
+    public void getFingerprint_cached_returnsComputedFingerprint() {
+        StatusBarNotification notification = createNotification(CONTENT_TITLE, POST_TIME);
+        NotificationFingerprintCache.getFingerprint(notification);
+
+        assertThat(NotificationFingerprintCache.getFingerprint(notification))
+                .isEqualTo(NotificationFingerprintCache.computeFingerprint(notification));
+    }
+
+    @Test
+    public void computeFingerprint_messagesRebuilt_returnsSameFingerprint() {
+        StatusBarNotification notification1 = createMessagingNotification(CONTENT_TITLE);
+        StatusBarNotification notification2 = createMessagingNotification(CONTENT_TITLE);
+
+        assertThat(NotificationFingerprintCache.computeFingerprint(notification1))
+                .isEqualTo(NotificationFingerprintCache.computeFingerprint(notification2));
+    }
+
+    @Test
+    public void computeFingerprint_differentMessages_returnsDifferentFingerprint() {
+        StatusBarNotification notification1 = createMessagingNotification(CONTENT_TITLE);
+        StatusBarNotification notification2 = createMessagingNotification(OTHER_CONTENT_TITLE);
+
+        assertThat(NotificationFingerprintCache.computeFingerprint(notification1))
+                .isNotEqualTo(NotificationFingerprintCache.computeFingerprint(notification2));
+    }
+
+    @Test
+    public void computeFingerprint_largeIconRecreated_returnsSameFingerprint() {
+        StatusBarNotification notification1 = createNotification(
+                Icon.createWithResource(mContext, android.R.drawable.sym_def_app_icon));
+        StatusBarNotification notification2 = createNotification(
+                Icon.createWithResource(mContext, android.R.drawable.sym_def_app_icon));
+
+        assertThat(NotificationFingerprintCache.computeFingerprint(notification1))
+                .isEqualTo(NotificationFingerprintCache.computeFingerprint(notification2));
+    }
+
+    @Test
+    public void computeFingerprint_sameSizeDifferentPixels_returnsDifferentFingerprint() {
+        Bitmap bitmap1 = Bitmap.createBitmap(ICON_SIZE, ICON_SIZE, Bitmap.Config.ARGB_8888);
+        Bitmap bitmap2 = Bitmap.createBitmap(ICON_SIZE, ICON_SIZE, Bitmap.Config.ARGB_8888);
+        bitmap2.setPixel(/* x= */ 1, /* y= */ 1, Color.RED);
+        StatusBarNotification notification1 = createNotification(Icon.createWithBitmap(bitmap1));
+        StatusBarNotification notification2 = createNotification(Icon.createWithBitmap(bitmap2));
+
+        assertThat(NotificationFingerprintCache.computeFingerprint(notification1))
+                .isNotEqualTo(NotificationFingerprintCache.computeFingerprint(notification2));
+    }
+
+    @Test
+    public void computeFingerprint_differentSpans_returnsDifferentFingerprint() {
+        SpannableString boldTitle = new SpannableString(CONTENT_TITLE);
+        boldTitle.setSpan(new StyleSpan(Typeface.BOLD), /* start= */ 0, CONTENT_TITLE.length(),
+                Spanned.SPAN_EXCLUSIVE_EXCLUSIVE);
+        StatusBarNotification notification1 = createNotification(CONTENT_TITLE, POST_TIME);
+        StatusBarNotification notification2 = createNotification(boldTitle, POST_TIME);
+
+        assertThat(NotificationFingerprintCache.computeFingerprint(notification1))
+                .isNotEqualTo(NotificationFingerprintCache.computeFingerprint(notification2));
+    }
+
+    private StatusBarNotification createMessagingNotification(String text) {
+        Person sender = new Person.Builder().setName(CONTENT_TITLE).build();
+        Notification notification = new Notification.Builder(mContext, CHANNEL_ID)
+                .setStyle(new Notification.MessagingStyle(sender)
+                        .addMessage(text, POST_TIME, sender))
+                .setSmallIcon(android.R.drawable.sym_def_app_icon)
+                .build();
+        return new StatusBarNotification(PKG, OP_PKG, ID, TAG, UID, INITIAL_PID, notification,
+                USER_HANDLE, /* overrideGroupKey= */ null, POST_TIME);
+    }
+
+    private StatusBarNotification createNotification(Icon largeIcon) {
+        Notification notification = new Notification.Builder(mContext, CHANNEL_ID)
+                .setContentTitle(CONTENT_TITLE)
+                .setLargeIcon(largeIcon)
+                .setSmallIcon(android.R.drawable.sym_def_app_icon)
+                .build();
+        return new StatusBarNotification(PKG, OP_PKG, ID, TAG, UID, INITIAL_PID, notification,
+                USER_HANDLE, /* overrideGroupKey= */ null, POST_TIME);
+    }
+
+    private StatusBarNotification createNotification(CharSequence title, long postTime) {
+        Notification notification = new Notification.Builder(mContext, CHANNEL_ID)
+                .setContentTitle(title)
+                .setSmallIcon(android.R.drawable.sym_def_app_icon)
+                .build();
+        return new StatusBarNotification(PKG, OP_PKG, ID, TAG, UID, INITIAL_PID, notification,
+                USER_HANDLE, /* overrideGroupKey= */ null, postTime);
+    }
+}
@@ -177,4 +177,37 @@ public class NotificationGroupTest {
         assertThat(mNotificationGroup.getSingleNotification()).isNull();
     }
 
+
+    @Test
+    public void getViewType_messageCategory_returnsMessage() {
+        StatusBarNotification notification = new StatusBarNotification(PKG_1, OP_PKG,
+                ID, TAG, UID, INITIAL_PID,
+                mNotificationBuilder.setCategory(Notification.CATEGORY_MESSAGE).build(),
+                USER_HANDLE, OVERRIDE_GROUP_KEY, POST_TIME);
+        mNotificationGroup.addNotification(notification);
+
+        assertThat(mNotificationGroup.getViewType()).isEqualTo(NotificationViewType.MESSAGE);
+    }
+
+    @Test
+    public void getViewType_groupChanged_resolvesViewTypeAgain() {
+        mNotificationGroup.addNotification(mNOTIFICATION1);
+        assertThat(mNotificationGroup.getViewType()).isEqualTo(NotificationViewType.BASIC);
+
+        mNotificationGroup.setGroupSummaryNotification(mNOTIFICATION1);
+        mNotificationGroup.addNotification(mNOTIFICATION1);
+
+        assertThat(mNotificationGroup.getViewType())
+                .isEqualTo(NotificationViewType.GROUP_COLLAPSED);
+    }
+
+    @Test
+    public void getViewType_childTitlesSet_returnsGroupSummary() {
+        mNotificationGroup.setGroupSummaryNotification(mNOTIFICATION1);
+        assertThat(mNotificationGroup.getViewType()).isEqualTo(NotificationViewType.BASIC);
+
+        mNotificationGroup.setChildTitles(new ArrayList<>());
+
+        assertThat(mNotificationGroup.getViewType()).isEqualTo(NotificationViewType.GROUP_SUMMARY);
+    }
 }
@@ -0,0 +1,170 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.car.notification;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import android.app.Notification;
+import android.content.Context;
+import android.os.UserHandle;
+import android.service.notification.StatusBarNotification;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import java.util.Map;
+
+@RunWith(RobolectricTestRunner.class)
+public class NotificationStoreTest {
+
+    private static final String PKG_1 = "package_1";
+    private static final String PKG_2 = "package_2";
+    private static final String OP_PKG = "OpPackage";
+    private static final String TAG = "Tag";
+    private static final int UID = 2;
+    private static final int INITIAL_PID = 3;
+    private static final String CHANNEL_ID = "CHANNEL_ID";
+    private static final String OVERRIDE_GROUP_KEY = "OVERRIDE_GROUP_KEY";
+    private static final long POST_TIME = 12345l;
+    private static final UserHandle USER_HANDLE = new UserHandle(12);
+    private static final UserHandle OTHER_USER_HANDLE = new UserHandle(13);
+
+    private Context mContext;
+    private NotificationStore mStore;
+
+    @Before
+    public void setup() {
+        mContext = RuntimeEnvironment.application;
+        mStore = new NotificationStore();
+    }
+
+    @Test
+    public void put_indexesByUserPackageAndCategory() {
+        StatusBarNotification notification = createNotification(PKG_1, 1,
+                Notification.CATEGORY_CALL, USER_HANDLE);
+
+        mStore.put(notification.getKey(), notification);
+
+        assertThat(mStore.getNotificationsForUser(USER_HANDLE.getIdentifier()))
+                .containsExactly(notification.getKey(), notification);
+        assertThat(mStore.getNotificationsForPackage(PKG_1))
+                .containsExactly(notification.getKey(), notification);
+        assertThat(mStore.getNotificationsInCategory(Notification.CATEGORY_CALL))
+                .containsExactly(notification.getKey(), notification);
+        assertThat(mStore.getNotificationsInGroup(notification.getGroupKey()))
+                .containsExactly(notification.getKey(), notification);
+    }
+
+    @Test
+    public void remove_removesFromIndexes() {
+        StatusBarNotification notification = createNotification(PKG_1, 1,
+                Notification.CATEGORY_CALL, USER_HANDLE);
+        mStore.put(notification.getKey(), notification);
+
+        mStore.remove(notification.getKey());
+
+        assertThat(mStore).isEmpty();
+        assertThat(mStore.getNotificationsForUser(USER_HANDLE.getIdentifier())).isEmpty();
+        assertThat(mStore.getNotificationsForPackage(PKG_1)).isEmpty();
+        assertThat(mStore.getNotificationsInCategory(Notification.CATEGORY_CALL)).isEmpty();
+    }
+
+    @Test
+    public void getNotificationsForUsers_returnsNotificationsOfBothUsers() {
+        StatusBarNotification notification1 = createNotification(PKG_1, 1,
+                /* category= */ null, USER_HANDLE);
+        StatusBarNotification notification2 = createNotification(PKG_2, 2,
+                /* category= */ null, UserHandle.ALL);
+        StatusBarNotification notification3 = createNotification(PKG_2, 3,
+                /* category= */ null, OTHER_USER_HANDLE);
+        mStore.put(notification1.getKey(), notification1);
+        mStore.put(notification2.getKey(), notification2);
+        mStore.put(notification3.getKey(), notification3);
+
+        Map<String, StatusBarNotification> notifications = mStore.getNotificationsForUsers(
+                USER_HANDLE.getIdentifier(), UserHandle.USER_ALL);
+
+        assertThat(notifications).hasSize(2);
+        assertThat(notifications).containsEntry(notification1.getKey(), notification1);
+        assertThat(notifications).containsEntry(notification2.getKey(), notification2);
+        assertThat(notifications.values()).containsExactly(notification1, notification2);
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void getNotificationsForUser_isReadOnly() {
+        StatusBarNotification notification = createNotification(PKG_1, 1,
+                /* category= */ null, USER_HANDLE);
+        mStore.put(notification.getKey(), notification);
+
+        mStore.getNotificationsForUser(USER_HANDLE.getIdentifier()).remove(notification.getKey());
+    }
+
+    @Test
+    public void setOverrideGroupKey_movesNotificationToNewGroup() {
+        StatusBarNotification notification = createNotification(PKG_1, 1,
+                /* category= */ null, USER_HANDLE);
+        mStore.put(notification.getKey(), notification);
+        String oldGroupKey = notification.getGroupKey();
+
+        mStore.setOverrideGroupKey(notification.getKey(), OVERRIDE_GROUP_KEY);
+
+        assertThat(mStore.getNotificationsInGroup(oldGroupKey)).isEmpty();
+        assertThat(mStore.getNotificationsInGroup(notification.getGroupKey()))
+                .containsExactly(notification.getKey(), notification);
+    }
+
+    @Test
+    public void getSnapshot_afterChange_keepsOldSnapshotUnchanged() {
+        StatusBarNotification notification1 = createNotification(PKG_1, 1,
+                /* category= */ null, USER_HANDLE);
+        StatusBarNotification notification2 = createNotification(PKG_1, 2,
+                /* category= */ null, USER_HANDLE);
+        mStore.put(notification1.getKey(), notification1);
+        NotificationStore.Snapshot snapshot = mStore.getSnapshot();
+
+        mStore.put(notification2.getKey(), notification2);
+        mStore.remove(notification1.getKey());
+
+        assertThat(snapshot.getNotifications())
+                .containsExactly(notification1.getKey(), notification1);
+        assertThat(mStore.getSnapshot().getNotifications())
+                .containsExactly(notification2.getKey(), notification2);
+        assertThat(mStore.getSnapshot().getGeneration()).isGreaterThan(snapshot.getGeneration());
+    }
+
+    @Test
+    public void remove_unknownKey_keepsGeneration() {
+        long generation = mStore.getSnapshot().getGeneration();
+
+        mStore.remove("UNKNOWN_KEY");
+
+        assertThat(mStore.getSnapshot().getGeneration()).isEqualTo(generation);
+    }
+
+    private StatusBarNotification createNotification(String packageName, int id,
+            String category, UserHandle userHandle) {
+        Notification notification = new Notification.Builder(mContext, CHANNEL_ID)
+                .setCategory(category)
+                .setSmallIcon(android.R.drawable.sym_def_app_icon)
+                .build();
+        return new StatusBarNotification(packageName, OP_PKG, id, TAG, UID, INITIAL_PID,
+                notification, userHandle, /* overrideGroupKey= */ null, POST_TIME);
+    }
+}
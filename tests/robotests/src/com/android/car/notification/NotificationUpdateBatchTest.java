@@ -0,0 +1,109 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.car.notification;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import android.app.Notification;
+import android.content.Context;
+import android.os.UserHandle;
+import android.service.notification.StatusBarNotification;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import java.util.List;
+
+@RunWith(RobolectricTestRunner.class)
+public class NotificationUpdateBatchTest {
+
+    private static final String PKG = "package_1";
+    private static final String OP_PKG = "OpPackage";
+    private static final String TAG = "Tag";
+    private static final int UID = 2;
+    private static final int INITIAL_PID = 3;
+    private static final String CHANNEL_ID = "CHANNEL_ID";
+    private static final long POST_TIME = 12345l;
+    private static final UserHandle USER_HANDLE = new UserHandle(12);
+
+    private Context mContext;
+    private NotificationUpdateBatch mBatch;
+
+    @Before
+    public void setup() {
+        mContext = RuntimeEnvironment.application;
+        mBatch = new NotificationUpdateBatch();
+    }
+
+    @Test
+    public void add_sameNotification_keepsLatestEvent() {
+        StatusBarNotification posted = createNotification(1);
+        StatusBarNotification removed = createNotification(1);
+
+        mBatch.add(CarNotificationListener.NOTIFY_NOTIFICATION_POSTED, posted,
+                /* isFiltered= */ false);
+        mBatch.add(CarNotificationListener.NOTIFY_NOTIFICATION_REMOVED, removed,
+                /* isFiltered= */ false);
+        List<NotificationUpdateBatch.Update> updates = mBatch.drain();
+
+        assertThat(updates).hasSize(1);
+        assertThat(updates.get(0).getUpdateType())
+                .isEqualTo(CarNotificationListener.NOTIFY_NOTIFICATION_REMOVED);
+        assertThat(updates.get(0).getStatusBarNotification()).isSameAs(removed);
+    }
+
+    @Test
+    public void drain_keepsOrderOfLatestEvents() {
+        StatusBarNotification notification1 = createNotification(1);
+        StatusBarNotification notification2 = createNotification(2);
+
+        mBatch.add(CarNotificationListener.NOTIFY_NOTIFICATION_POSTED, notification1,
+                /* isFiltered= */ false);
+        mBatch.add(CarNotificationListener.NOTIFY_NOTIFICATION_POSTED, notification2,
+                /* isFiltered= */ false);
+        mBatch.add(CarNotificationListener.NOTIFY_NOTIFICATION_POSTED, notification1,
+                /* isFiltered= */ true);
+        List<NotificationUpdateBatch.Update> updates = mBatch.drain();
+
+        assertThat(updates).hasSize(2);
+        assertThat(updates.get(0).getStatusBarNotification()).isSameAs(notification2);
+        assertThat(updates.get(1).getStatusBarNotification()).isSameAs(notification1);
+        assertThat(updates.get(1).isFiltered()).isTrue();
+    }
+
+    @Test
+    public void drain_clearsBatch() {
+        mBatch.add(CarNotificationListener.NOTIFY_NOTIFICATION_POSTED, createNotification(1),
+                /* isFiltered= */ false);
+
+        mBatch.drain();
+
+        assertThat(mBatch.isEmpty()).isTrue();
+        assertThat(mBatch.drain()).isEmpty();
+    }
+
+    private StatusBarNotification createNotification(int id) {
+        Notification notification = new Notification.Builder(mContext, CHANNEL_ID)
+                .setSmallIcon(android.R.drawable.sym_def_app_icon)
+                .build();
+        return new StatusBarNotification(PKG, OP_PKG, id, TAG, UID, INITIAL_PID, notification,
+                USER_HANDLE, /* overrideGroupKey= */ null, POST_TIME);
+    }
+}
@@ -0,0 +1,160 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.car.notification;
+
+import static android.content.pm.ApplicationInfo.FLAG_INSTALLED;
+import static android.content.pm.ApplicationInfo.FLAG_SYSTEM;
+import static android.content.pm.ApplicationInfo.PRIVATE_FLAG_PRIVILEGED;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import android.app.Notification;
+import android.content.Context;
+import android.content.Intent;
+import android.content.pm.ApplicationInfo;
+import android.content.pm.PackageInfo;
+import android.graphics.drawable.Drawable;
+import android.net.Uri;
+import android.os.UserHandle;
+import android.service.notification.StatusBarNotification;
+
+import com.android.car.notification.testutils.ShadowApplicationPackageManager;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(shadows = {ShadowApplicationPackageManager.class})
+public class PackageInfoCacheTest {
+
+    private static final String PKG = "package_1";
+    private static final String OTHER_PKG = "package_2";
+    private static final String CHANNEL_ID = "CHANNEL_ID";
+    private static final String TAG = "Tag";
+    private static final int ID = 1;
+    private static final int UID = 2;
+    private static final int INITIAL_PID = 3;
+    private static final long POST_TIME = 12345l;
+    private static final UserHandle USER_HANDLE = new UserHandle(12);
+
+    private Context mContext;
+    private PackageInfoCache mPackageInfoCache;
+
+    @Before
+    public void setup() {
+        mContext = RuntimeEnvironment.application;
+        mPackageInfoCache = PackageInfoCache.getInstance(mContext);
+        mPackageInfoCache.clear();
+    }
+
+    @After
+    public void tearDown() {
+        mPackageInfoCache.clear();
+        ShadowApplicationPackageManager.reset();
+    }
+
+    @Test
+    public void isSystemApp_packageInfoChangedWithoutBroadcast_returnsCachedValue() {
+        ShadowApplicationPackageManager.setPackageInfo(createPackageInfo(PKG, FLAG_SYSTEM));
+        assertThat(mPackageInfoCache.isSystemApp(mContext, PKG)).isTrue();
+
+        ShadowApplicationPackageManager.setPackageInfo(createPackageInfo(PKG, /* flags= */ 0));
+
+        assertThat(mPackageInfoCache.isSystemApp(mContext, PKG)).isTrue();
+    }
+
+    @Test
+    public void isSystemApp_packageNotFound_returnsFalse() {
+        assertThat(mPackageInfoCache.isSystemApp(mContext, PKG)).isFalse();
+    }
+
+    @Test
+    public void isSystemApp_packageReplaced_reloadsPackageInfo() {
+        ShadowApplicationPackageManager.setPackageInfo(createPackageInfo(PKG, FLAG_SYSTEM));
+        assertThat(mPackageInfoCache.isSystemApp(mContext, PKG)).isTrue();
+
+        ShadowApplicationPackageManager.setPackageInfo(createPackageInfo(PKG, /* flags= */ 0));
+        sendPackageBroadcast(Intent.ACTION_PACKAGE_REPLACED, PKG);
+
+        assertThat(mPackageInfoCache.isSystemApp(mContext, PKG)).isFalse();
+    }
+
+    @Test
+    public void isSystemApp_otherPackageReplaced_keepsCachedValue() {
+        ShadowApplicationPackageManager.setPackageInfo(createPackageInfo(PKG, FLAG_SYSTEM));
+        assertThat(mPackageInfoCache.isSystemApp(mContext, PKG)).isTrue();
+
+        ShadowApplicationPackageManager.setPackageInfo(createPackageInfo(PKG, /* flags= */ 0));
+        sendPackageBroadcast(Intent.ACTION_PACKAGE_REPLACED, OTHER_PKG);
+
+        assertThat(mPackageInfoCache.isSystemApp(mContext, PKG)).isTrue();
+    }
+
+    @Test
+    public void isPrivilegedApp_userSwitched_reloadsPackageInfo() {
+        ShadowApplicationPackageManager.setPackageInfo(createPackageInfo(PKG, FLAG_SYSTEM));
+        assertThat(mPackageInfoCache.isPrivilegedApp(mContext, PKG)).isFalse();
+
+        PackageInfo packageInfo = createPackageInfo(PKG, FLAG_SYSTEM);
+        packageInfo.applicationInfo.privateFlags = PRIVATE_FLAG_PRIVILEGED;
+        ShadowApplicationPackageManager.setPackageInfo(packageInfo);
+        Intent intent = new Intent(Intent.ACTION_USER_SWITCHED);
+        intent.putExtra(Intent.EXTRA_USER_HANDLE, /* value= */ 10);
+        mPackageInfoCache.mIntentReceiver.onReceive(mContext, intent);
+
+        assertThat(mPackageInfoCache.isPrivilegedApp(mContext, PKG)).isTrue();
+    }
+
+    @Test
+    public void getSmallIcon_sameIcon_sharesDecodedIcon() {
+        StatusBarNotification notification = createNotification();
+
+        Drawable first = mPackageInfoCache.getSmallIcon(mContext, notification);
+        Drawable second = mPackageInfoCache.getSmallIcon(mContext, createNotification());
+
+        assertThat(first).isNotSameAs(second);
+        assertThat(second.getConstantState()).isSameAs(first.getConstantState());
+    }
+
+    private StatusBarNotification createNotification() {
+        Notification notification = new Notification.Builder(mContext, CHANNEL_ID)
+                .setSmallIcon(android.R.drawable.sym_def_app_icon)
+                .build();
+        return new StatusBarNotification(mContext.getPackageName(), mContext.getPackageName(),
+                ID, TAG, UID, INITIAL_PID, notification, USER_HANDLE,
+                /* overrideGroupKey= */ null, POST_TIME);
+    }
+
+    private void sendPackageBroadcast(String action, String packageName) {
+        Intent intent = new Intent(action, Uri.fromParts("package", packageName, null));
+        mPackageInfoCache.mIntentReceiver.onReceive(mContext, intent);
+    }
+
+    private PackageInfo createPackageInfo(String packageName, int flags) {
+        PackageInfo packageInfo = new PackageInfo();
+        packageInfo.packageName = packageName;
+        packageInfo.applicationInfo = new ApplicationInfo();
+        packageInfo.applicationInfo.packageName = packageName;
+        packageInfo.applicationInfo.flags = flags | FLAG_INSTALLED;
+        return packageInfo;
+    }
+}
@@ -26,6 +26,7 @@ import android.app.Notification;
 import android.content.Context;
 import android.content.Intent;
 import android.os.UserHandle;
+import android.service.notification.NotificationListenerService.RankingMap;
 import android.service.notification.StatusBarNotification;
 import android.telephony.TelephonyManager;
 
@@ -40,7 +41,9 @@ import org.robolectric.RobolectricTestRunner;
 import org.robolectric.RuntimeEnvironment;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 @RunWith(RobolectricTestRunner.class)
 public class PreprocessingManagerTest {
@@ -56,8 +59,10 @@ public class PreprocessingManagerTest {
     private static final String CHANNEL_ID = "CHANNEL_ID";
     private static final String CONTENT_TITLE = "CONTENT_TITLE";
     private static final String OVERRIDE_GROUP_KEY = "OVERRIDE_GROUP_KEY";
+    private static final String GROUP_KEY = "GROUP_KEY";
     private static final long POST_TIME = 12345l;
     private static final UserHandle USER_HANDLE = new UserHandle(12);
+    private static final long CHILD_WHEN = 54321l;
 
     private PreprocessingManager mPreprocessingManager;
 
@@ -65,6 +70,8 @@ public class PreprocessingManagerTest {
     private PreprocessingManager.CallStateListener mCallStateListener1;
     @Mock
     private PreprocessingManager.CallStateListener mCallStateListener2;
+    @Mock
+    private RankingMap mRankingMap;
 
     @Before
     public void setupBaseActivityAndLayout() {
@@ -86,6 +93,32 @@ public class PreprocessingManagerTest {
         assertThat(groupResult.size() == 0).isTrue();
     }
 
+    @Test
+    public void group_callNotificationsInSameGroup_shouldNotBeGrouped() {
+        List<StatusBarNotification> list = new ArrayList<>();
+        list.add(createCallNotification(1));
+        list.add(createCallNotification(2));
+
+        List<NotificationGroup> groupResult = mPreprocessingManager.group(list);
+
+        assertThat(groupResult).hasSize(2);
+        assertThat(groupResult.get(0).isGroup()).isFalse();
+        assertThat(groupResult.get(1).isGroup()).isFalse();
+    }
+
+    @Test
+    public void group_childrenWithoutSummary_shouldBeRestoredIntoSingleNotifications() {
+        List<StatusBarNotification> list = new ArrayList<>();
+        list.add(createNotification(1, GROUP_KEY, /* isSummary= */ false));
+        list.add(createNotification(2, GROUP_KEY, /* isSummary= */ false));
+
+        List<NotificationGroup> groupResult = mPreprocessingManager.group(list);
+
+        assertThat(groupResult).hasSize(2);
+        assertThat(groupResult.get(0).getChildCount()).isEqualTo(1);
+        assertThat(groupResult.get(1).getChildCount()).isEqualTo(1);
+    }
+
     @Test
     public void addCallStateListener_preCall_triggerChanges() {
         InOrder listenerInOrder = Mockito.inOrder(mCallStateListener1);
@@ -178,6 +211,267 @@ public class PreprocessingManagerTest {
         listenerInOrder2.verify(mCallStateListener2).onCallStateChanged(false);
     }
 
+    @Test
+    public void init_returnsProcessedNotifications() {
+        StatusBarNotification summary = createNotification(1, GROUP_KEY, true);
+        StatusBarNotification child1 = createNotification(2, GROUP_KEY, false);
+        StatusBarNotification child2 = createNotification(3, GROUP_KEY, false);
+        StatusBarNotification single = createNotification(4, /* group= */ null, false);
+
+        List<NotificationGroup> result = initWith(summary, child1, child2, single);
+
+        assertThat(result).hasSize(2);
+        assertThat(findGroupOf(result, single)).isNotNull();
+        // a removal of an unknown notification returns the current list without changing it
+        assertThat(mPreprocessingManager.updateNotifications(
+                /* showLessImportantNotifications= */ false,
+                createNotification(Integer.MAX_VALUE, /* group= */ null, false),
+                CarNotificationListener.NOTIFY_NOTIFICATION_REMOVED, mRankingMap))
+                .containsExactlyElementsIn(result).inOrder();
+    }
+
+    @Test
+    public void updateNotifications_removal_onlyRemovesAffectedGroup() {
+        StatusBarNotification notification1 = createNotification(1, /* group= */ null, false);
+        StatusBarNotification notification2 = createNotification(2, /* group= */ null, false);
+        List<NotificationGroup> initialGroups = initWith(notification1, notification2);
+        NotificationGroup remainingGroup = findGroupOf(initialGroups, notification2);
+
+        List<NotificationGroup> result = mPreprocessingManager.updateNotifications(
+                /* showLessImportantNotifications= */ false, notification1,
+                CarNotificationListener.NOTIFY_NOTIFICATION_REMOVED, mRankingMap);
+
+        assertThat(result).hasSize(1);
+        assertThat(result.get(0)).isSameAs(remainingGroup);
+    }
+
+    @Test
+    public void updateNotifications_update_replacesGroupInPlace() {
+        StatusBarNotification notification1 = createNotification(1, /* group= */ null, false);
+        StatusBarNotification notification2 = createNotification(2, /* group= */ null, false);
+        List<NotificationGroup> initialGroups = initWith(notification1, notification2);
+        int updatedIndex = initialGroups.indexOf(findGroupOf(initialGroups, notification1));
+        NotificationGroup untouchedGroup = findGroupOf(initialGroups, notification2);
+
+        StatusBarNotification update = createNotification(1, /* group= */ null, false);
+        List<NotificationGroup> result = mPreprocessingManager.updateNotifications(
+                /* showLessImportantNotifications= */ false, update,
+                CarNotificationListener.NOTIFY_NOTIFICATION_POSTED, mRankingMap);
+
+        assertThat(result).hasSize(2);
+        assertThat(result.get(updatedIndex).getSingleNotification()).isSameAs(update);
+        assertThat(result).contains(untouchedGroup);
+    }
+
+    @Test
+    public void updateNotifications_summaryRemoved_childrenAreUngrouped() {
+        StatusBarNotification summary = createNotification(1, GROUP_KEY, true);
+        StatusBarNotification child1 = createNotification(2, GROUP_KEY, false);
+        StatusBarNotification child2 = createNotification(3, GROUP_KEY, false);
+        List<NotificationGroup> initialGroups = initWith(summary, child1, child2);
+        assertThat(initialGroups).hasSize(1);
+        assertThat(initialGroups.get(0).isGroup()).isTrue();
+
+        List<NotificationGroup> result = mPreprocessingManager.updateNotifications(
+                /* showLessImportantNotifications= */ false, summary,
+                CarNotificationListener.NOTIFY_NOTIFICATION_REMOVED, mRankingMap);
+
+        assertThat(result).hasSize(2);
+        assertThat(result.get(0).isGroup()).isFalse();
+        assertThat(result.get(1).isGroup()).isFalse();
+    }
+
+    @Test
+    public void updateNotifications_batch_appliesAllUpdates() {
+        StatusBarNotification notification1 = createNotification(1, /* group= */ null, false);
+        StatusBarNotification notification2 = createNotification(2, /* group= */ null, false);
+        List<NotificationGroup> initialGroups = initWith(notification1, notification2);
+        NotificationGroup untouchedGroup = findGroupOf(initialGroups, notification2);
+
+        NotificationUpdateBatch batch = new NotificationUpdateBatch();
+        StatusBarNotification notification3 = createNotification(3, /* group= */ null, false);
+        batch.add(CarNotificationListener.NOTIFY_NOTIFICATION_REMOVED, notification1,
+                /* isFiltered= */ false);
+        batch.add(CarNotificationListener.NOTIFY_NOTIFICATION_POSTED, notification3,
+                /* isFiltered= */ false);
+        List<NotificationGroup> result = mPreprocessingManager.updateNotifications(
+                /* showLessImportantNotifications= */ false, batch.drain(), mRankingMap);
+
+        assertThat(result).hasSize(2);
+        assertThat(result).contains(untouchedGroup);
+        assertThat(findGroupOf(result, notification1)).isNull();
+        assertThat(findGroupOf(result, notification3)).isNotNull();
+    }
+
+    @Test
+    public void updateNotifications_batchWithFilteredNewNotification_skipsIt() {
+        StatusBarNotification notification1 = createNotification(1, /* group= */ null, false);
+        initWith(notification1);
+
+        NotificationUpdateBatch batch = new NotificationUpdateBatch();
+        StatusBarNotification notification2 = createNotification(2, /* group= */ null, false);
+        batch.add(CarNotificationListener.NOTIFY_NOTIFICATION_POSTED, notification2,
+                /* isFiltered= */ true);
+        List<NotificationGroup> result = mPreprocessingManager.updateNotifications(
+                /* showLessImportantNotifications= */ false, batch.drain(), mRankingMap);
+
+        assertThat(result).hasSize(1);
+        assertThat(findGroupOf(result, notification2)).isNull();
+    }
+
+    @Test
+    public void updateRanking_rankChanged_onlyReplacesAffectedGroup() {
+        StatusBarNotification notification1 = createNotification(1, /* group= */ null, false);
+        StatusBarNotification notification2 = createNotification(2, /* group= */ null, false);
+        List<NotificationGroup> initialGroups = initWith(notification1, notification2);
+        NotificationGroup changedGroup = findGroupOf(initialGroups, notification1);
+        NotificationGroup untouchedGroup = findGroupOf(initialGroups, notification2);
+
+        RankingSnapshot.Delta delta = new RankingSnapshot.Delta();
+        delta.add(notification1.getKey(), RankingSnapshot.Delta.CHANGED_RANK,
+                /* overrideGroupKey= */ null);
+        List<NotificationGroup> result = mPreprocessingManager.updateRanking(
+                /* showLessImportantNotifications= */ false, delta, mRankingMap);
+
+        assertThat(result).hasSize(2);
+        assertThat(result).contains(untouchedGroup);
+        assertThat(result).doesNotContain(changedGroup);
+        assertThat(findGroupOf(result, notification1)).isNotNull();
+    }
+
+    @Test
+    public void updateRanking_unknownNotification_keepsList() {
+        StatusBarNotification notification1 = createNotification(1, /* group= */ null, false);
+        List<NotificationGroup> initialGroups = initWith(notification1);
+
+        RankingSnapshot.Delta delta = new RankingSnapshot.Delta();
+        delta.add(createNotification(2, /* group= */ null, false).getKey(),
+                RankingSnapshot.Delta.CHANGED_IMPORTANCE, /* overrideGroupKey= */ null);
+        List<NotificationGroup> result = mPreprocessingManager.updateRanking(
+                /* showLessImportantNotifications= */ false, delta, mRankingMap);
+
+        assertThat(result).containsExactlyElementsIn(initialGroups);
+    }
+
+    @Test
+    public void process_groupChildrenWithSortKeys_sortsChildrenBySortKey() {
+        StatusBarNotification summary = createNotification(1, GROUP_KEY, /* isSummary= */ true);
+        StatusBarNotification laterChild = createNotification(2, GROUP_KEY, "b");
+        StatusBarNotification earlierChild = createNotification(3, GROUP_KEY, "a");
+        Map<String, StatusBarNotification> notificationMap = new HashMap<>();
+        notificationMap.put(summary.getKey(), summary);
+        notificationMap.put(laterChild.getKey(), laterChild);
+        notificationMap.put(earlierChild.getKey(), earlierChild);
+
+        List<NotificationGroup> result = mPreprocessingManager.process(
+                /* showLessImportantNotifications= */ false, notificationMap, mRankingMap);
+
+        assertThat(result).hasSize(1);
+        assertThat(result.get(0).getChildNotifications())
+                .containsExactly(earlierChild, laterChild).inOrder();
+    }
+
+    @Test
+    public void updateNotifications_newSummaryWithoutChildren_insertsSummary() {
+        initWith(createNotification(1, /* group= */ null, false));
+        StatusBarNotification summary = createNotification(2, GROUP_KEY, /* isSummary= */ true);
+
+        List<NotificationGroup> result = mPreprocessingManager.updateNotifications(
+                /* showLessImportantNotifications= */ false, summary,
+                CarNotificationListener.NOTIFY_NOTIFICATION_POSTED, mRankingMap);
+
+        assertThat(result).hasSize(2);
+        assertThat(findGroupOf(result, summary)).isNotNull();
+    }
+
+    @Test
+    public void updateNotifications_newChildOfStandaloneSummary_insertsChildBeforeSummary() {
+        StatusBarNotification summary = createNotification(1, GROUP_KEY, /* isSummary= */ true);
+        NotificationGroup summaryGroup = initWith(summary).get(0);
+        StatusBarNotification child = createNotification(2, GROUP_KEY, /* isSummary= */ false);
+
+        List<NotificationGroup> result = mPreprocessingManager.updateNotifications(
+                /* showLessImportantNotifications= */ false, child,
+                CarNotificationListener.NOTIFY_NOTIFICATION_POSTED, mRankingMap);
+
+        assertThat(result).hasSize(2);
+        assertThat(result.get(0).getSingleNotification()).isSameAs(child);
+        assertThat(result.get(1)).isSameAs(summaryGroup);
+    }
+
+    @Test
+    public void group_childShowsTime_setsTimestampOnCopyOfSummary() {
+        StatusBarNotification summary = createNotification(1, GROUP_KEY, true);
+        summary.getNotification().extras.putBoolean(Notification.EXTRA_SHOW_WHEN, false);
+        StatusBarNotification child = createNotification(2, GROUP_KEY, false);
+        child.getNotification().extras.putBoolean(Notification.EXTRA_SHOW_WHEN, true);
+        child.getNotification().when = CHILD_WHEN;
+        List<StatusBarNotification> list = new ArrayList<>();
+        list.add(summary);
+        list.add(child);
+
+        List<NotificationGroup> groups = mPreprocessingManager.group(list);
+
+        Notification groupSummary = groups.get(0).getGroupSummaryNotification().getNotification();
+        assertThat(groupSummary.showsTime()).isTrue();
+        assertThat(groupSummary.when).isEqualTo(CHILD_WHEN);
+        // the summary may already be diffed in the background and must not be modified
+        assertThat(summary.getNotification().showsTime()).isFalse();
+        assertThat(summary.getNotification().when).isNotEqualTo(CHILD_WHEN);
+    }
+
+    private List<NotificationGroup> initWith(StatusBarNotification... notifications) {
+        Map<String, StatusBarNotification> notificationMap = new HashMap<>();
+        for (StatusBarNotification notification : notifications) {
+            notificationMap.put(notification.getKey(), notification);
+        }
+        return new ArrayList<>(mPreprocessingManager.init(
+                /* showLessImportantNotifications= */ false, notificationMap, mRankingMap));
+    }
+
+    private NotificationGroup findGroupOf(
+            List<NotificationGroup> groups, StatusBarNotification notification) {
+        for (NotificationGroup group : groups) {
+            if (group.getSingleNotification() == notification) {
+                return group;
+            }
+        }
+        return null;
+    }
+
+    private StatusBarNotification createNotification(int id, String group, boolean isSummary) {
+        Notification.Builder builder = new Notification.Builder(mContext, CHANNEL_ID)
+                .setContentTitle(CONTENT_TITLE)
+                .setSmallIcon(android.R.drawable.sym_def_app_icon);
+        if (group != null) {
+            builder.setGroup(group).setGroupSummary(isSummary);
+        }
+        return new StatusBarNotification(PKG, OP_PKG, id, TAG, UID, INITIAL_PID,
+                builder.build(), USER_HANDLE, /* overrideGroupKey= */ null, POST_TIME);
+    }
+
+    private StatusBarNotification createNotification(int id, String group, String sortKey) {
+        Notification notification = new Notification.Builder(mContext, CHANNEL_ID)
+                .setContentTitle(CONTENT_TITLE)
+                .setSmallIcon(android.R.drawable.sym_def_app_icon)
+                .setGroup(group)
+                .setSortKey(sortKey)
+                .build();
+        return new StatusBarNotification(PKG, OP_PKG, id, TAG, UID, INITIAL_PID,
+                notification, USER_HANDLE, /* overrideGroupKey= */ null, POST_TIME);
+    }
+
+    private StatusBarNotification createCallNotification(int id) {
+        Notification notification = new Notification.Builder(mContext, CHANNEL_ID)
+                .setContentTitle(CONTENT_TITLE)
+                .setSmallIcon(android.R.drawable.sym_def_app_icon)
+                .setCategory(Notification.CATEGORY_CALL)
+                .setGroup(GROUP_KEY)
+                .build();
+        return new StatusBarNotification(PKG, OP_PKG, id, TAG, UID, INITIAL_PID,
+                notification, USER_HANDLE, /* overrideGroupKey= */ null, POST_TIME);
+    }
+
     private StatusBarNotification getEmptyAutoGeneratedGroupSummary() {
         Notification notification = new Notification.Builder(mContext, CHANNEL_ID)
                 .setContentTitle(CONTENT_TITLE)
@@ -0,0 +1,108 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.car.notification;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import android.app.NotificationManager;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+@RunWith(RobolectricTestRunner.class)
+public class RankingSnapshotTest {
+
+    private static final String KEY_1 = "KEY_1";
+    private static final String KEY_2 = "KEY_2";
+    private static final String OVERRIDE_GROUP_KEY = "OVERRIDE_GROUP_KEY";
+    private static final String CHANNEL_ID = "CHANNEL_ID";
+    private static final String OTHER_CHANNEL_ID = "OTHER_CHANNEL_ID";
+
+    private RankingSnapshot mOldSnapshot;
+    private RankingSnapshot mNewSnapshot;
+
+    @Before
+    public void setup() {
+        mOldSnapshot = new RankingSnapshot();
+        mNewSnapshot = new RankingSnapshot();
+        mOldSnapshot.update(KEY_1, /* rank= */ 0, NotificationManager.IMPORTANCE_HIGH,
+                /* overrideGroupKey= */ null, CHANNEL_ID);
+        mOldSnapshot.update(KEY_2, /* rank= */ 1, NotificationManager.IMPORTANCE_HIGH,
+                /* overrideGroupKey= */ null, CHANNEL_ID);
+    }
+
+    @Test
+    public void diff_unchanged_returnsEmptyDelta() {
+        mNewSnapshot.update(KEY_1, /* rank= */ 0, NotificationManager.IMPORTANCE_HIGH,
+                /* overrideGroupKey= */ null, CHANNEL_ID);
+        mNewSnapshot.update(KEY_2, /* rank= */ 1, NotificationManager.IMPORTANCE_HIGH,
+                /* overrideGroupKey= */ null, CHANNEL_ID);
+
+        assertThat(mOldSnapshot.diff(mNewSnapshot).isEmpty()).isTrue();
+    }
+
+    @Test
+    public void diff_rankChanged_returnsOnlyChangedKeys() {
+        mNewSnapshot.update(KEY_1, /* rank= */ 1, NotificationManager.IMPORTANCE_HIGH,
+                /* overrideGroupKey= */ null, CHANNEL_ID);
+        mNewSnapshot.update(KEY_2, /* rank= */ 1, NotificationManager.IMPORTANCE_HIGH,
+                /* overrideGroupKey= */ null, CHANNEL_ID);
+
+        RankingSnapshot.Delta delta = mOldSnapshot.diff(mNewSnapshot);
+
+        assertThat(delta.getKeys()).containsExactly(KEY_1);
+        assertThat(delta.getChanges(KEY_1)).isEqualTo(RankingSnapshot.Delta.CHANGED_RANK);
+    }
+
+    @Test
+    public void diff_overrideGroupKeyAndChannelChanged_returnsAllChanges() {
+        mNewSnapshot.update(KEY_1, /* rank= */ 0, NotificationManager.IMPORTANCE_HIGH,
+                OVERRIDE_GROUP_KEY, OTHER_CHANNEL_ID);
+
+        RankingSnapshot.Delta delta = mOldSnapshot.diff(mNewSnapshot);
+
+        assertThat(delta.getChanges(KEY_1)).isEqualTo(
+                RankingSnapshot.Delta.CHANGED_OVERRIDE_GROUP_KEY
+                        | RankingSnapshot.Delta.CHANGED_CHANNEL);
+        assertThat(delta.getOverrideGroupKey(KEY_1)).isEqualTo(OVERRIDE_GROUP_KEY);
+    }
+
+    @Test
+    public void diff_newNotification_isNotReported() {
+        mOldSnapshot.remove(KEY_2);
+        mNewSnapshot.update(KEY_2, /* rank= */ 0, NotificationManager.IMPORTANCE_LOW,
+                /* overrideGroupKey= */ null, CHANNEL_ID);
+
+        assertThat(mOldSnapshot.diff(mNewSnapshot).isEmpty()).isTrue();
+    }
+
+    @Test
+    public void merge_combinesChangesAndKeepsLatestOverrideGroupKey() {
+        RankingSnapshot.Delta delta = new RankingSnapshot.Delta();
+        delta.add(KEY_1, RankingSnapshot.Delta.CHANGED_RANK, /* overrideGroupKey= */ null);
+        RankingSnapshot.Delta later = new RankingSnapshot.Delta();
+        later.add(KEY_1, RankingSnapshot.Delta.CHANGED_OVERRIDE_GROUP_KEY, OVERRIDE_GROUP_KEY);
+
+        delta.merge(later);
+
+        assertThat(delta.getChanges(KEY_1)).isEqualTo(RankingSnapshot.Delta.CHANGED_RANK
+                | RankingSnapshot.Delta.CHANGED_OVERRIDE_GROUP_KEY);
+        assertThat(delta.getOverrideGroupKey(KEY_1)).isEqualTo(OVERRIDE_GROUP_KEY);
+    }
+}
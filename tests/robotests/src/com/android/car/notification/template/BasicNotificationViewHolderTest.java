@@ -0,0 +1,147 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.car.notification.template;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import static org.mockito.Mockito.verify;
+
+import android.app.Notification;
+import android.content.Context;
+import android.os.UserHandle;
+import android.service.notification.StatusBarNotification;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.widget.TextView;
+
+import com.android.car.notification.NotificationClickHandlerFactory;
+import com.android.car.notification.R;
+import com.android.car.notification.testutils.ShadowApplicationPackageManager;
+import com.android.car.notification.testutils.ShadowStatusBarNotification;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(shadows = {ShadowApplicationPackageManager.class, ShadowStatusBarNotification.class})
+public class BasicNotificationViewHolderTest {
+
+    private static final String PKG = "package_1";
+    private static final String OP_PKG = "OpPackage";
+    private static final int ID = 1;
+    private static final String TAG = "Tag";
+    private static final int UID = 2;
+    private static final int INITIAL_PID = 3;
+    private static final String CHANNEL_ID = "CHANNEL_ID";
+    private static final String CONTENT_TITLE = "CONTENT_TITLE";
+    private static final String OTHER_CONTENT_TITLE = "OTHER_CONTENT_TITLE";
+    private static final long POST_TIME = 12345l;
+    private static final UserHandle USER_HANDLE = new UserHandle(12);
+
+    private Context mContext;
+    private BasicNotificationViewHolder mViewHolder;
+    private TextView mTitleView;
+
+    @Mock
+    NotificationClickHandlerFactory mClickHandlerFactoryMock;
+
+    @Before
+    public void setup() {
+        MockitoAnnotations.initMocks(this);
+        mContext = RuntimeEnvironment.application;
+        ShadowStatusBarNotification.setContext(mContext);
+
+        View view = LayoutInflater.from(mContext)
+                .inflate(R.layout.basic_notification_template, /* root= */ null);
+        mViewHolder = new BasicNotificationViewHolder(view, mClickHandlerFactoryMock);
+        mTitleView = view.findViewById(R.id.notification_body_title);
+    }
+
+    @Test
+    public void bind_sameNotificationContent_skipsRebinding() {
+        StatusBarNotification notification = createNotification(CONTENT_TITLE);
+        mViewHolder.bind(notification, /* isInGroup= */ false, /* isHeadsUp= */ false);
+        mTitleView.setText(OTHER_CONTENT_TITLE);
+
+        StatusBarNotification repostedNotification = createNotification(CONTENT_TITLE);
+        mViewHolder.bind(repostedNotification, /* isInGroup= */ false, /* isHeadsUp= */ false);
+
+        assertThat(mTitleView.getText().toString()).isEqualTo(OTHER_CONTENT_TITLE);
+        assertThat(mViewHolder.getStatusBarNotification()).isSameAs(repostedNotification);
+    }
+
+    @Test
+    public void bind_sameNotificationContent_updatesClickHandler() {
+        mViewHolder.bind(createNotification(CONTENT_TITLE), /* isInGroup= */ false,
+                /* isHeadsUp= */ false);
+
+        StatusBarNotification repostedNotification = createNotification(CONTENT_TITLE);
+        mViewHolder.bind(repostedNotification, /* isInGroup= */ false, /* isHeadsUp= */ false);
+
+        verify(mClickHandlerFactoryMock).getClickHandler(repostedNotification);
+    }
+
+    @Test
+    public void bind_differentNotificationContent_rebinds() {
+        mViewHolder.bind(createNotification(CONTENT_TITLE), /* isInGroup= */ false,
+                /* isHeadsUp= */ false);
+
+        mViewHolder.bind(createNotification(OTHER_CONTENT_TITLE), /* isInGroup= */ false,
+                /* isHeadsUp= */ false);
+
+        assertThat(mTitleView.getText().toString()).isEqualTo(OTHER_CONTENT_TITLE);
+    }
+
+    @Test
+    public void bind_differentMode_rebinds() {
+        StatusBarNotification notification = createNotification(CONTENT_TITLE);
+        mViewHolder.bind(notification, /* isInGroup= */ false, /* isHeadsUp= */ false);
+        mTitleView.setText(OTHER_CONTENT_TITLE);
+
+        mViewHolder.bind(notification, /* isInGroup= */ false, /* isHeadsUp= */ true);
+
+        assertThat(mTitleView.getText().toString()).isEqualTo(CONTENT_TITLE);
+    }
+
+    @Test
+    public void bind_afterRecycling_rebinds() {
+        StatusBarNotification notification = createNotification(CONTENT_TITLE);
+        mViewHolder.bind(notification, /* isInGroup= */ false, /* isHeadsUp= */ false);
+        mTitleView.setText(OTHER_CONTENT_TITLE);
+
+        mViewHolder.onRecycled();
+        mViewHolder.bind(notification, /* isInGroup= */ false, /* isHeadsUp= */ false);
+
+        assertThat(mTitleView.getText().toString()).isEqualTo(CONTENT_TITLE);
+    }
+
+    private StatusBarNotification createNotification(String title) {
+        Notification notification = new Notification.Builder(mContext, CHANNEL_ID)
+                .setContentTitle(title)
+                .setSmallIcon(android.R.drawable.sym_def_app_icon)
+                .setWhen(POST_TIME)
+                .build();
+        return new StatusBarNotification(PKG, OP_PKG, ID, TAG, UID, INITIAL_PID, notification,
+                USER_HANDLE, /* overrideGroupKey= */ null, POST_TIME);
+    }
+}
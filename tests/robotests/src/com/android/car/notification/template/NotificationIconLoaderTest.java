@@ -0,0 +1,162 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.car.notification.template;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.Color;
+import android.graphics.drawable.ColorDrawable;
+import android.graphics.drawable.Icon;
+import android.widget.ImageView;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.shadows.ShadowLooper;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+@RunWith(RobolectricTestRunner.class)
+public class NotificationIconLoaderTest {
+
+    private static final int ICON_SIZE = 200;
+
+    private Context mContext;
+    private List<Runnable> mPendingDecodes;
+    private NotificationIconLoader mIconLoader;
+    private Icon mIcon;
+
+    @Before
+    public void setup() {
+        mContext = RuntimeEnvironment.application;
+        mPendingDecodes = new ArrayList<>();
+        mIconLoader = NotificationIconLoader.getInstance(mContext);
+        mIconLoader.setDecodeExecutor(mPendingDecodes::add);
+        mIconLoader.clearCache();
+        mIcon = Icon.createWithBitmap(
+                Bitmap.createBitmap(ICON_SIZE, ICON_SIZE, Bitmap.Config.ARGB_8888));
+    }
+
+    @After
+    public void tearDown() {
+        mIconLoader.clearCache();
+    }
+
+    @Test
+    public void loadIcon_notCached_setsIconAfterDecoding() {
+        ImageView view = new ImageView(mContext);
+
+        mIconLoader.loadIcon(view, mIcon);
+        assertThat(view.getDrawable()).isNull();
+        runPendingDecodes();
+
+        assertThat(view.getDrawable()).isNotNull();
+    }
+
+    @Test
+    public void loadIcon_notCached_keepsCurrentDrawableUntilDecoded() {
+        ImageView view = new ImageView(mContext);
+        ColorDrawable currentDrawable = new ColorDrawable();
+        view.setImageDrawable(currentDrawable);
+
+        mIconLoader.loadIcon(view, mIcon);
+
+        assertThat(view.getDrawable()).isSameAs(currentDrawable);
+    }
+
+    @Test
+    public void loadIcon_cancelledBeforeDecoding_doesNotSetIcon() {
+        ImageView view = new ImageView(mContext);
+
+        mIconLoader.loadIcon(view, mIcon);
+        mIconLoader.cancel(view);
+        runPendingDecodes();
+
+        assertThat(view.getDrawable()).isNull();
+    }
+
+    @Test
+    public void loadIcon_dataDecodedBefore_setsIconImmediately() {
+        byte[] data = compress(mIcon.getBitmap());
+        mIconLoader.loadIcon(new ImageView(mContext),
+                Icon.createWithData(data, /* offset= */ 0, data.length));
+        runPendingDecodes();
+        ImageView view = new ImageView(mContext);
+
+        // a reposted notification unparcels the same data into a new array
+        byte[] repostedData = data.clone();
+        mIconLoader.loadIcon(view,
+                Icon.createWithData(repostedData, /* offset= */ 0, repostedData.length));
+
+        assertThat(mPendingDecodes).isEmpty();
+        assertThat(view.getDrawable()).isNotNull();
+    }
+
+    @Test
+    public void loadIcon_bitmapDecodedBefore_isNotCached() {
+        mIconLoader.loadIcon(new ImageView(mContext), mIcon);
+        runPendingDecodes();
+
+        mIconLoader.loadIcon(new ImageView(mContext), mIcon);
+
+        assertThat(mPendingDecodes).hasSize(1);
+    }
+
+    @Test
+    public void loadIcon_tintedDecodedBefore_decodesWithTintAgain() {
+        Icon icon = Icon.createWithResource(mContext, android.R.drawable.sym_def_app_icon)
+                .setTint(Color.RED);
+        mIconLoader.loadIcon(new ImageView(mContext), icon);
+        runPendingDecodes();
+
+        mIconLoader.loadIcon(new ImageView(mContext), icon);
+
+        assertThat(mPendingDecodes).hasSize(1);
+    }
+
+    @Test
+    public void calculateSampleSize_largeBitmap_keepsSizeAboveTarget() {
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.outWidth = 1000;
+        options.outHeight = 800;
+
+        assertThat(NotificationIconLoader.calculateSampleSize(options, /* size= */ 100))
+                .isEqualTo(8);
+    }
+
+    private static byte[] compress(Bitmap bitmap) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        bitmap.compress(Bitmap.CompressFormat.PNG, /* quality= */ 100, out);
+        return out.toByteArray();
+    }
+
+    private void runPendingDecodes() {
+        for (Runnable decode : mPendingDecodes) {
+            decode.run();
+        }
+        mPendingDecodes.clear();
+        ShadowLooper.runUiThreadTasksIncludingDelayedTasks();
+    }
+}